@@ -0,0 +1,46 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.Auction;
+import server.AuctionServiceImpl;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Cost of AuctionServiceImpl.getAllActiveAuctions as the number of live auctions grows
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ActiveAuctionsBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int auctionCount;
+    
+    private AuctionServiceImpl service;
+    
+    @Setup
+    public void setUp() throws RemoteException {
+        service = BenchmarkSupport.newService();
+        for (int i = 0; i < auctionCount; i++) {
+            service.createAuction("Item " + i, "Benchmark item", "alice", 10.0, 1.0, 24 * 60);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws RemoteException {
+        BenchmarkSupport.close(service);
+    }
+    
+    @Benchmark
+    public List<Auction> getAllActiveAuctions() throws RemoteException {
+        return service.getAllActiveAuctions();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.Auction;
+
+// Cost of Auction.hasExpired, which every listing and bid path calls per auction
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuctionExpiryBenchmark {
+    
+    private Auction auction;
+    
+    @Setup
+    public void setUp() {
+        auction = new Auction(1, "Item", "Benchmark item", "alice", 10.0, 1.0, 24 * 60);
+    }
+    
+    @Benchmark
+    public boolean hasExpired() {
+        return auction.hasExpired();
+    }
+}
\ No newline at end of file
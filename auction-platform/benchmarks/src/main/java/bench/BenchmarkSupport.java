@@ -0,0 +1,52 @@
+package bench;
+
+import server.AuctionServiceImpl;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * Shared setup for the JMH benchmarks
+ * Services run in-process with throwaway archive and settlement directories,
+ * and console output, including the event log writer, goes to a null stream
+ * instead of the terminal
+ */
+final class BenchmarkSupport {
+    
+    private static final PrintStream CONSOLE = System.out;
+    
+    static {
+        // Read by every AuctionServiceImpl constructor; the benchmarks run one service at a time
+        try {
+            System.setProperty("auction.archive.dir",
+                               Files.createTempDirectory("auction-bench").toString());
+            System.setProperty("auction.settlement.dir",
+                               Files.createTempDirectory("auction-bench-settlement").toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private BenchmarkSupport() {
+    }
+    
+    static AuctionServiceImpl newService() throws RemoteException {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return new AuctionServiceImpl();
+    }
+    
+    static void close(AuctionServiceImpl service) throws RemoteException {
+        service.shutdown();
+        try {
+            UnicastRemoteObject.unexportObject(service, true);
+        } catch (NoSuchObjectException e) {
+            // Already unexported
+        }
+        System.setOut(CONSOLE);
+    }
+}
\ No newline at end of file
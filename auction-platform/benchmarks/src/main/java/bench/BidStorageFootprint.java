@@ -0,0 +1,89 @@
+package bench;
+
+import server.Bid;
+import server.BidHistory;
+import server.UserDictionary;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap footprint benchmark comparing List<Bid> storage with BidHistory
+ * Usage: java -Xmx2g bench.BidStorageFootprint [auctions] [bidsPerAuction]
+ */
+public class BidStorageFootprint {
+    
+    private static final int BIDDERS = 1000;
+    
+    public static void main(String[] args) {
+        int auctions = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int bidsPerAuction = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        long totalBids = (long) auctions * bidsPerAuction;
+        
+        System.out.println("Auctions: " + auctions + ", bids per auction: " + bidsPerAuction);
+        
+        long before = usedHeap();
+        List<List<Bid>> objectStore = buildObjectStore(auctions, bidsPerAuction);
+        long objectBytes = usedHeap() - before;
+        report("List<Bid>", objectBytes, totalBids);
+        objectStore = null;
+        
+        before = usedHeap();
+        UserDictionary dictionary = new UserDictionary();
+        List<BidHistory> columnarStore = buildColumnarStore(auctions, bidsPerAuction, dictionary);
+        long columnarBytes = usedHeap() - before;
+        report("BidHistory", columnarBytes, totalBids);
+        
+        System.out.printf("Reduction: %.1fx%n", (double) objectBytes / columnarBytes);
+        
+        // Keep the store reachable until after the measurement
+        if (columnarStore.size() != auctions || dictionary.size() > BIDDERS) {
+            throw new IllegalStateException();
+        }
+    }
+    
+    private static List<List<Bid>> buildObjectStore(int auctions, int bidsPerAuction) {
+        List<List<Bid>> store = new ArrayList<>(auctions);
+        long bidId = 1;
+        for (int a = 0; a < auctions; a++) {
+            List<Bid> bids = new ArrayList<>();
+            for (int b = 0; b < bidsPerAuction; b++) {
+                // Names arrive over RMI as fresh strings for every call
+                bids.add(new Bid(bidId++, a, new String("bidder" + (b % BIDDERS)), 100.0 + b));
+            }
+            store.add(bids);
+        }
+        return store;
+    }
+    
+    private static List<BidHistory> buildColumnarStore(int auctions, int bidsPerAuction, UserDictionary dictionary) {
+        List<BidHistory> store = new ArrayList<>(auctions);
+        long bidId = 1;
+        long now = System.currentTimeMillis();
+        for (int a = 0; a < auctions; a++) {
+            BidHistory history = new BidHistory(a);
+            for (int b = 0; b < bidsPerAuction; b++) {
+                int bidderId = dictionary.intern("bidder" + (b % BIDDERS));
+                history.append(bidId++, now + b, BidHistory.toMinorUnits(100.0 + b), bidderId);
+            }
+            store.add(history);
+        }
+        return store;
+    }
+    
+    private static void report(String label, long bytes, long bids) {
+        System.out.printf("%-12s %,14d bytes  %6.1f bytes/bid%n", label, bytes, (double) bytes / bids);
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.AuctionServiceImpl;
+import server.Bid;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Cost of AuctionServiceImpl.getBidsByUser for a bidder active on many auctions
+ * The measured user places one bid in every fifth round, the other rounds
+ * go to background bidders so the scan has to skip foreign bids
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BidsByUserBenchmark {
+    
+    private static final int AUCTIONS = 200;
+    private static final int BIDDERS = 5;
+    
+    @Param({"10", "100"})
+    public int roundsPerAuction;
+    
+    private AuctionServiceImpl service;
+    
+    @Setup
+    public void setUp() throws RemoteException {
+        service = BenchmarkSupport.newService();
+        service.registerUser("bench-user", "bench@example.com", false);
+        for (int a = 0; a < AUCTIONS; a++) {
+            long auctionId = service.createAuction("Item " + a, "Benchmark item", "alice", 10.0, 1.0, 24 * 60);
+            double amount = 10.0;
+            for (int r = 0; r < roundsPerAuction; r++) {
+                amount += 1.0;
+                String bidder = r % BIDDERS == 0 ? "bench-user" : "background-" + (r % BIDDERS);
+                service.placeBid(auctionId, bidder, amount);
+            }
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws RemoteException {
+        BenchmarkSupport.close(service);
+    }
+    
+    @Benchmark
+    public List<Bid> getBidsByUser() throws RemoteException {
+        return service.getBidsByUser("bench-user");
+    }
+}
\ No newline at end of file
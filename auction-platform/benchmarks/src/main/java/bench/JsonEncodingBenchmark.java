@@ -0,0 +1,53 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.Auction;
+import server.Bid;
+import server.JsonEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cost of the JSON encoding behind the WebServer's auction and bid endpoints
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonEncodingBenchmark {
+    
+    @Param({"10", "100", "1000"})
+    public int size;
+    
+    private List<Auction> auctions;
+    private List<Bid> bids;
+    
+    @Setup
+    public void setUp() {
+        auctions = new ArrayList<>(size);
+        bids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Auction auction = new Auction(i, "Item " + i, "A \"quoted\" benchmark item", "alice",
+                                          10.0, 1.0, 24 * 60);
+            auction.setCurrentHighestBid(10.0 + i);
+            auction.setHighestBidder("bob");
+            auctions.add(auction);
+            bids.add(new Bid(i, 1, "bidder-" + (i % 50), 10.0 + i));
+        }
+    }
+    
+    @Benchmark
+    public String auctionsToJson() {
+        return JsonEncoder.convertAuctionsToJson(auctions);
+    }
+    
+    @Benchmark
+    public String bidsToJson() {
+        return JsonEncoder.convertBidsToJson(bids);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import server.AuctionServiceImpl;
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Throughput of AuctionServiceImpl.placeBid under contention
+ * Every thread bids on one shared auction, or spreads its bids round-robin
+ * over many auctions. Amounts come from a per-auction sequence, so a thread
+ * that loses a race is rejected as too low; rejections are part of the
+ * contended cost and are reported as the accepted/rejected counters
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlaceBidBenchmark {
+    
+    @Param({"1", "1024"})
+    public int auctionCount;
+    
+    private AuctionServiceImpl service;
+    private long[] auctionIds;
+    private AtomicLongArray nextAmount;
+    
+    // Each iteration gets a fresh service so bid histories do not pile up across the run
+    @Setup(Level.Iteration)
+    public void setUp() throws RemoteException {
+        service = BenchmarkSupport.newService();
+        auctionIds = new long[auctionCount];
+        nextAmount = new AtomicLongArray(auctionCount);
+        for (int i = 0; i < auctionCount; i++) {
+            auctionIds[i] = service.createAuction("Item " + i, "Benchmark item", "alice",
+                                                  10.0, 0.01, 24 * 60);
+            nextAmount.set(i, 1100);
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() throws RemoteException {
+        BenchmarkSupport.close(service);
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bidder {
+        String name;
+        int next;
+        public long accepted;
+        public long rejected;
+        
+        @Setup(Level.Iteration)
+        public void setUp(PlaceBidBenchmark benchmark) {
+            name = "bidder-" + Thread.currentThread().getId();
+            next = (int) (Thread.currentThread().getId() % benchmark.auctionCount);
+            accepted = 0;
+            rejected = 0;
+        }
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public long placeBid1Thread(Bidder bidder) {
+        return placeBid(bidder);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public long placeBid4Threads(Bidder bidder) {
+        return placeBid(bidder);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long placeBidMaxThreads(Bidder bidder) {
+        return placeBid(bidder);
+    }
+    
+    private long placeBid(Bidder bidder) {
+        int slot = bidder.next;
+        bidder.next = slot + 1 == auctionCount ? 0 : slot + 1;
+        double amount = nextAmount.getAndIncrement(slot) / 100.0;
+        try {
+            long bidId = service.placeBid(auctionIds[slot], bidder.name, amount);
+            bidder.accepted++;
+            return bidId;
+        } catch (RuntimeException | RemoteException e) {
+            bidder.rejected++;
+            return -1;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import server.RequestDecoder;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Decoding a bid request with RequestDecoder against the split-and-URLDecoder parsing it replaced
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestDecodingBenchmark {
+    
+    private static final String QUERY = "auctionId=1234";
+    
+    private ByteArrayInputStream formBody;
+    private ByteArrayInputStream jsonBody;
+    
+    @Setup
+    public void setUp() {
+        formBody = new ByteArrayInputStream(
+            "auctionId=1234&bidderName=bidder-17&bidAmount=1525.50".getBytes(StandardCharsets.UTF_8));
+        jsonBody = new ByteArrayInputStream(
+            "{\"auctionId\": 1234, \"bidderName\": \"bidder-17\", \"bidAmount\": 1525.50}".getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Benchmark
+    public void bidFormWithSplit(Blackhole blackhole) throws Exception {
+        formBody.reset();
+        Map<String, String> params = splitPairs(readLines(formBody));
+        blackhole.consume(Long.parseLong(params.get("auctionId")));
+        blackhole.consume(params.get("bidderName"));
+        blackhole.consume(Double.parseDouble(params.get("bidAmount")));
+    }
+    
+    @Benchmark
+    public void bidFormWithDecoder(Blackhole blackhole) throws IOException {
+        formBody.reset();
+        RequestDecoder request = RequestDecoder.get().decodeForm(formBody);
+        blackhole.consume(request.getLong("auctionId"));
+        blackhole.consume(request.getString("bidderName"));
+        blackhole.consume(request.getDouble("bidAmount"));
+    }
+    
+    @Benchmark
+    public void bidJsonWithDecoder(Blackhole blackhole) throws IOException {
+        jsonBody.reset();
+        RequestDecoder request = RequestDecoder.get().decodeJson(jsonBody);
+        blackhole.consume(request.getLong("auctionId"));
+        blackhole.consume(request.getString("bidderName"));
+        blackhole.consume(request.getDouble("bidAmount"));
+    }
+    
+    @Benchmark
+    public long bidQueryWithSplit() throws Exception {
+        return Long.parseLong(splitPairs(QUERY).get("auctionId"));
+    }
+    
+    @Benchmark
+    public long bidQueryWithDecoder() {
+        return RequestDecoder.get().decodeQuery(QUERY).getLong("auctionId");
+    }
+    
+    // WebServer's readRequestBody, parseFormData and parseQueryString as they were
+    private static String readLines(ByteArrayInputStream in) throws IOException {
+        StringBuilder body = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            body.append(line);
+        }
+        return body.toString();
+    }
+    
+    private static Map<String, String> splitPairs(String data) throws Exception {
+        Map<String, String> result = new HashMap<>();
+        for (String pair : data.split("&")) {
+            String[] keyValue = pair.split("=");
+            if (keyValue.length == 2) {
+                result.put(URLDecoder.decode(keyValue[0], "UTF-8"), URLDecoder.decode(keyValue[1], "UTF-8"));
+            }
+        }
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.Auction;
+import server.AuctionService;
+import server.AuctionServiceImpl;
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteObject;
+import java.util.List;
+
+/**
+ * AuctionService calls over loopback RMI with each socket setting
+ * The service is exported in-process and called through its stub, so every
+ * call is marshalled and crosses a real TCP connection. placeBid is a small
+ * call and reply; getAllActiveAuctions returns auctionCount auctions
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RmiTransportBenchmark {
+    
+    // jdk: the JDK's own sockets; tuned: RmiSocketFactory defaults; buffers: 256 KB socket buffers;
+    // nagle: TCP_NODELAY off; compressed: frames of 4 KB and more deflated
+    @Param({"jdk", "tuned", "buffers", "nagle", "compressed"})
+    public String sockets;
+    
+    @Param({"2000"})
+    public int auctionCount;
+    
+    private AuctionServiceImpl service;
+    private AuctionService stub;
+    private long auctionId;
+    private double nextAmount;
+    
+    @Setup
+    public void setUp() throws RemoteException {
+        System.setProperty("auction.rmi.socketFactory", Boolean.toString(!"jdk".equals(sockets)));
+        System.setProperty("auction.rmi.tcpNoDelay", Boolean.toString(!"nagle".equals(sockets)));
+        System.setProperty("auction.rmi.sendBufferBytes", "buffers".equals(sockets) ? "262144" : "0");
+        System.setProperty("auction.rmi.receiveBufferBytes", "buffers".equals(sockets) ? "262144" : "0");
+        System.setProperty("auction.rmi.compressAboveBytes", "compressed".equals(sockets) ? "4096" : "0");
+        service = BenchmarkSupport.newService();
+        stub = (AuctionService) RemoteObject.toStub(service);
+        for (int i = 0; i < auctionCount; i++) {
+            stub.createAuction("Item " + i, "Benchmark item number " + i, "alice", 10.0, 0.01, 24 * 60);
+        }
+        auctionId = stub.createAuction("Bid target", "Benchmark item", "alice", 10.0, 0.01, 24 * 60);
+        nextAmount = 11.0;
+    }
+    
+    @TearDown
+    public void tearDown() throws RemoteException {
+        BenchmarkSupport.close(service);
+    }
+    
+    @Benchmark
+    public long placeBid() throws RemoteException {
+        nextAmount += 0.01;
+        return stub.placeBid(auctionId, "bob", nextAmount);
+    }
+    
+    @Benchmark
+    public List<Auction> getAllActiveAuctions() throws RemoteException {
+        return stub.getAllActiveAuctions();
+    }
+}
\ No newline at end of file
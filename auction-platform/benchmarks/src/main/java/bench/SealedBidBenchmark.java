@@ -0,0 +1,133 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import server.AuctionServiceImpl;
+import server.ClearingResult;
+import server.PricingRule;
+import server.SealedBidAuction;
+import server.UserDictionary;
+import java.rmi.RemoteException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sealed-bid submission and batch clearing
+ * The placeBid benchmarks match PlaceBidBenchmark with one shared auction,
+ * except that the auction is sealed-bid and clears every second: bids need
+ * not beat each other, so there is no race to lose and no auction lock.
+ * The clear benchmark ranks and prices one round of random bids under
+ * each pricing rule
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SealedBidBenchmark {
+    
+    private AuctionServiceImpl service;
+    private long auctionId;
+    
+    @Setup(Level.Iteration)
+    public void setUp() throws RemoteException {
+        service = BenchmarkSupport.newService();
+        auctionId = service.createSealedBidAuction("Item", "Benchmark item", "alice",
+                                                   10.0, 10, PricingRule.UNIFORM_PRICE, 1, 24 * 60);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() throws RemoteException {
+        BenchmarkSupport.close(service);
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bidder {
+        String name;
+        long nextAmount;
+        public long accepted;
+        public long rejected;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            name = "bidder-" + Thread.currentThread().getId();
+            nextAmount = 1100;
+            accepted = 0;
+            rejected = 0;
+        }
+    }
+    
+    // A full round of bids, refilled before every clearing
+    @State(Scope.Thread)
+    public static class Round {
+        @Param({"100000", "1000000"})
+        public int bids;
+        
+        @Param({"SECOND_PRICE", "UNIFORM_PRICE"})
+        public PricingRule pricingRule;
+        
+        final UserDictionary dictionary = new UserDictionary();
+        SealedBidAuction auction;
+        
+        @Setup(Level.Trial)
+        public void registerBidders() {
+            for (int i = 0; i < 1000; i++) {
+                dictionary.intern("bidder-" + i);
+            }
+        }
+        
+        @Setup(Level.Invocation)
+        public void fill() {
+            auction = new SealedBidAuction(1, pricingRule, 100, 1000);
+            SplittableRandom random = new SplittableRandom(42);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < bids; i++) {
+                auction.submit(i + 1, 500 + random.nextLong(1_000_000), random.nextInt(1000), now);
+            }
+        }
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public long placeBid1Thread(Bidder bidder) {
+        return placeBid(bidder);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long placeBidMaxThreads(Bidder bidder) {
+        return placeBid(bidder);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ClearingResult clear(Round round) {
+        return round.auction.clear(true, round.dictionary);
+    }
+    
+    private long placeBid(Bidder bidder) {
+        double amount = bidder.nextAmount++ / 100.0;
+        try {
+            long bidId = service.placeBid(auctionId, bidder.name, amount);
+            bidder.accepted++;
+            return bidId;
+        } catch (RuntimeException | RemoteException e) {
+            bidder.rejected++;
+            return -1;
+        }
+    }
+}
\ No newline at end of file
@@ -1,8 +1,16 @@
 package client;
 
 import server.*;
-import java.rmi.Naming;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -12,9 +20,13 @@ import java.util.Scanner;
 public class AuctionClient {
     
     private static final String SERVICE_URL = "rmi://localhost:1099/AuctionService";
+    private static final int BID_PAGE_SIZE = 1000;
     private AuctionService auctionService;
     private Scanner scanner;
     
+    // Bids already fetched per auction; viewing an auction again only fetches newer ones
+    private final Map<Long, List<Bid>> seenBids = new HashMap<>();
+    
     public AuctionClient() {
         scanner = new Scanner(System.in);
     }
@@ -22,7 +34,7 @@ public class AuctionClient {
     public boolean connect() {
         try {
             System.out.println("Connecting to Auction Service...");
-            auctionService = (AuctionService) Naming.lookup(SERVICE_URL);
+            auctionService = PartitionedAuctionService.lookup(SERVICE_URL);
             System.out.println("Successfully connected to auction service!");
             return true;
         } catch (Exception e) {
@@ -182,7 +194,13 @@ public class AuctionClient {
         
         try {
             Auction auction = auctionService.getAuction(auctionId);
-            List<Bid> bids = auctionService.getBidsForAuction(auctionId);
+            List<Bid> bids = seenBids.computeIfAbsent(auctionId, id -> new ArrayList<>());
+            List<Bid> newBids;
+            do {
+                long lastSeenBidId = bids.isEmpty() ? 0 : bids.get(bids.size() - 1).getBidId();
+                newBids = auctionService.getBidsSince(auctionId, lastSeenBidId, BID_PAGE_SIZE);
+                bids.addAll(newBids);
+            } while (newBids.size() == BID_PAGE_SIZE);
             
             System.out.println("\\n=== Auction Details ===");
             System.out.println("ID: " + auction.getAuctionId());
@@ -297,8 +315,40 @@ public class AuctionClient {
         return str.length() > maxLength ? str.substring(0, maxLength - 3) + "..." : str;
     }
     
+    // Streams a file into or out of the service in batches
+    private void runBulk(String operation, Path file, BulkFormat format) {
+        if (!connect()) {
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        try {
+            long count;
+            if ("import".equals(operation)) {
+                try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    count = BulkTransfer.importRecords(format.reader(in), auctionService);
+                }
+            } else {
+                try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    count = BulkTransfer.exportRecords(auctionService, format.writer(out));
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s %d auctions (%s) in %.1f s, %.0f auctions/s%n",
+                              "import".equals(operation) ? "Imported" : "Exported", count, file,
+                              seconds, count / Math.max(seconds, 1e-9));
+        } catch (Exception e) {
+            System.err.println("Bulk " + operation + " failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
     public static void main(String[] args) {
         AuctionClient client = new AuctionClient();
+        // import|export <file> [ndjson|csv]; the format defaults to the file extension
+        if (args.length >= 2 && ("import".equals(args[0]) || "export".equals(args[0]))) {
+            client.runBulk(args[0], Paths.get(args[1]), BulkFormat.fromName(args.length > 2 ? args[2] : args[1]));
+            return;
+        }
         client.runClientInterface();
     }
 }
\ No newline at end of file
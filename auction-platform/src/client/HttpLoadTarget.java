@@ -0,0 +1,95 @@
+package client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Drives the web server's JSON API, the same requests the browser UI sends
+ * Business errors come back as HTTP 200 with "success": false in the body
+ */
+public class HttpLoadTarget implements LoadTarget {
+    
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    
+    public HttpLoadTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                                    .connectTimeout(Duration.ofSeconds(5))
+                                    .build();
+    }
+    
+    @Override
+    public void browse() throws Exception {
+        String body = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auctions")).GET());
+        if (!body.startsWith("[")) {
+            checkSuccess(body);
+        }
+    }
+    
+    @Override
+    public void placeBid(long auctionId, String bidderName, double amount) throws Exception {
+        checkSuccess(post("/api/bids", "auctionId=" + auctionId
+                                       + "&bidderName=" + encode(bidderName)
+                                       + "&bidAmount=" + amount));
+    }
+    
+    @Override
+    public long createAuction(String itemName, String sellerName, double startingPrice,
+                              double bidIncrement, long durationMinutes) throws Exception {
+        String body = post("/api/auctions", "itemName=" + encode(itemName)
+                                            + "&description=" + encode("Load test item")
+                                            + "&sellerName=" + encode(sellerName)
+                                            + "&startingPrice=" + startingPrice
+                                            + "&bidIncrement=" + bidIncrement
+                                            + "&duration=" + durationMinutes);
+        checkSuccess(body);
+        int start = body.indexOf("\"auctionId\":");
+        if (start < 0) {
+            throw new IOException("No auction id in response: " + body);
+        }
+        int end = start + "\"auctionId\":".length();
+        while (end < body.length() && (body.charAt(end) == ' ' || Character.isDigit(body.charAt(end)))) {
+            end++;
+        }
+        return Long.parseLong(body.substring(start + "\"auctionId\":".length(), end).trim());
+    }
+    
+    @Override
+    public void registerUser(String username, String email) throws Exception {
+        checkSuccess(post("/api/users", "username=" + encode(username)
+                                        + "&email=" + encode(email)
+                                        + "&isSeller=false"));
+    }
+    
+    private String post(String path, String form) throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                               .header("Content-Type", "application/x-www-form-urlencoded")
+                               .POST(HttpRequest.BodyPublishers.ofString(form)));
+    }
+    
+    private String send(HttpRequest.Builder request) throws Exception {
+        HttpResponse<String> response = httpClient.send(request.timeout(Duration.ofSeconds(30)).build(),
+                                                        HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+    
+    private static void checkSuccess(String body) throws RejectedException {
+        if (!body.contains("\"success\": true")) {
+            throw new RejectedException(body);
+        }
+    }
+    
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
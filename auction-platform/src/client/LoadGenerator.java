@@ -0,0 +1,358 @@
+package client;
+
+import server.AuctionServer;
+import server.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the auction platform, over RMI or the HTTP API
+ *
+ * Open loop issues requests on a fixed arrival schedule and measures each
+ * response from the moment it was due, so a stalled server is charged for
+ * every request it held up. Closed loop runs a fixed number of users back to
+ * back and back-fills the samples a stalled user could not send. Each step
+ * of a sweep (several rates, or several thread counts) prints its own report
+ * and a final table shows where latency bends upward - the throughput knee
+ *
+ * Usage: java client.LoadGenerator [--target rmi|http] [--mode open|closed]
+ *        [--rate 100,200,400] [--threads 32] [--duration 30] [--warmup 10]
+ *        [--mix browse=50,bid=40,create=5,register=5] [--zipf 0.99]
+ *        [--auctions 100] [--think-ms 0] [--rmi-url url] [--http-url url]
+ */
+public class LoadGenerator {
+    
+    enum Operation { BROWSE, BID, CREATE, REGISTER }
+    
+    enum Outcome { OK, REJECTED, ERROR }
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String SELLER = "load_seller";
+    private static final int BIDDERS = 1000;
+    
+    private final Map<String, String> options;
+    private final String mode;
+    private final List<Double> rates = new ArrayList<>();
+    private final List<Integer> threadCounts = new ArrayList<>();
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final int[] mixWeights = new int[Operation.values().length];
+    private final int mixTotal;
+    private final int auctionCount;
+    private final long thinkNanos;
+    private final ZipfianGenerator hotAuctions;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    
+    private LoadTarget loadTarget;
+    private long[] auctionIds;
+    private AtomicLongArray nextBidCents;
+    
+    // Latencies and outcomes of one step
+    static class StepResult {
+        final String label;
+        final LatencyHistogram[] responseTimes = new LatencyHistogram[Operation.values().length];
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+        final LongAdder unsent = new LongAdder();
+        long elapsedNanos;
+        
+        StepResult(String label) {
+            this.label = label;
+            for (int i = 0; i < responseTimes.length; i++) {
+                responseTimes[i] = new LatencyHistogram();
+            }
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new LongAdder();
+            }
+        }
+        
+        LatencyHistogram allResponseTimes() {
+            LatencyHistogram all = new LatencyHistogram();
+            for (LatencyHistogram histogram : responseTimes) {
+                all.add(histogram);
+            }
+            return all;
+        }
+        
+        long completed() {
+            long total = 0;
+            for (LongAdder outcome : outcomes) {
+                total += outcome.sum();
+            }
+            return total;
+        }
+        
+        double throughput() {
+            return completed() * 1e9 / Math.max(1, elapsedNanos);
+        }
+    }
+    
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.mode = option("mode", "open");
+        for (String rate : option("rate", "100").split(",")) {
+            rates.add(Double.parseDouble(rate.trim()));
+        }
+        for (String threads : option("threads", "32").split(",")) {
+            threadCounts.add(Integer.parseInt(threads.trim()));
+        }
+        this.durationSeconds = Long.parseLong(option("duration", "30"));
+        this.warmupSeconds = Long.parseLong(option("warmup", "10"));
+        this.auctionCount = Integer.parseInt(option("auctions", "100"));
+        this.thinkNanos = Long.parseLong(option("think-ms", "0")) * 1_000_000L;
+        this.hotAuctions = new ZipfianGenerator(auctionCount, Double.parseDouble(option("zipf", "0.99")));
+        
+        int total = 0;
+        for (String entry : option("mix", "browse=50,bid=40,create=5,register=5").split(",")) {
+            String[] keyValue = entry.split("=");
+            Operation operation = Operation.valueOf(keyValue[0].trim().toUpperCase());
+            mixWeights[operation.ordinal()] = Integer.parseInt(keyValue[1].trim());
+            total += mixWeights[operation.ordinal()];
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix must have a positive weight");
+        }
+        this.mixTotal = total;
+    }
+    
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+    
+    public void run() throws Exception {
+        String target = option("target", "rmi");
+        if ("http".equals(target)) {
+            loadTarget = new HttpLoadTarget(option("http-url", "http://localhost:8080"));
+        } else {
+            loadTarget = new RmiLoadTarget(option("rmi-url",
+                "rmi://localhost:" + AuctionServer.RMI_PORT + "/" + AuctionServer.SERVICE_NAME));
+        }
+        System.out.println("Target: " + target + ", mode: " + mode + ", mix: " + option("mix", "default")
+                           + ", auctions: " + auctionCount + ", zipf: " + option("zipf", "0.99"));
+        
+        setUpAuctions();
+        
+        List<StepResult> results = new ArrayList<>();
+        if ("closed".equals(mode)) {
+            runClosedLoop(threadCounts.get(0), warmupSeconds, new StepResult("warmup"));
+            for (int threads : threadCounts) {
+                StepResult result = runClosedLoop(threads, durationSeconds, new StepResult(threads + " threads"));
+                printStep(result);
+                results.add(result);
+            }
+        } else {
+            int threads = threadCounts.get(threadCounts.size() - 1);
+            runOpenLoop(rates.get(0), threads, warmupSeconds, new StepResult("warmup"));
+            for (double rate : rates) {
+                StepResult result = runOpenLoop(rate, threads, durationSeconds,
+                                                new StepResult(String.format("%.0f req/s", rate)));
+                printStep(result);
+                results.add(result);
+            }
+        }
+        printSummary(results);
+    }
+    
+    private void setUpAuctions() throws Exception {
+        System.out.println("Creating " + auctionCount + " auctions...");
+        try {
+            loadTarget.registerUser(SELLER, SELLER + "@example.com");
+        } catch (LoadTarget.RejectedException e) {
+            // Seller left over from an earlier run
+        }
+        auctionIds = new long[auctionCount];
+        nextBidCents = new AtomicLongArray(auctionCount);
+        for (int i = 0; i < auctionCount; i++) {
+            auctionIds[i] = loadTarget.createAuction("Load item " + runId + "-" + i, SELLER, 10.0, 1.0, 24 * 60);
+            nextBidCents.set(i, 1000);
+        }
+    }
+    
+    // Worker k sends requests k, k + threads, ... each at its scheduled time
+    private StepResult runOpenLoop(double rate, int threads, long seconds, StepResult result)
+            throws InterruptedException {
+        long total = (long) (rate * seconds);
+        double intervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        // Give up on requests that would start after twice the step length
+        long deadline = start + 2 * seconds * 1_000_000_000L;
+        
+        runWorkers(threads, worker -> {
+            for (long i = worker; i < total; i += threads) {
+                long intended = start + (long) (i * intervalNanos);
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                if (now > deadline) {
+                    result.unsent.add((total - i + threads - 1) / threads);
+                    return;
+                }
+                Operation operation = nextOperation();
+                Outcome outcome = execute(operation);
+                long end = System.nanoTime();
+                result.outcomes[outcome.ordinal()].increment();
+                result.responseTimes[operation.ordinal()].record(end - intended);
+                result.serviceTime.record(end - now);
+            }
+        });
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+    
+    // Each worker is one user; the expected interval is its own average cycle time
+    private StepResult runClosedLoop(int threads, long seconds, StepResult result) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        
+        runWorkers(threads, worker -> {
+            long cycles = 0;
+            long cycleNanos = 0;
+            while (System.nanoTime() < deadline) {
+                Operation operation = nextOperation();
+                long begin = System.nanoTime();
+                Outcome outcome = execute(operation);
+                long latency = System.nanoTime() - begin;
+                long expectedInterval = cycles == 0 ? 0 : cycleNanos / cycles;
+                result.outcomes[outcome.ordinal()].increment();
+                result.responseTimes[operation.ordinal()].recordWithExpectedInterval(latency, expectedInterval);
+                result.serviceTime.record(latency);
+                if (thinkNanos > 0) {
+                    LockSupport.parkNanos(thinkNanos);
+                }
+                cycles++;
+                cycleNanos += System.nanoTime() - begin;
+            }
+        });
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+    
+    interface Worker {
+        void run(int worker);
+    }
+    
+    private void runWorkers(int threads, Worker body) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            workers[i] = new Thread(() -> body.run(worker), "load-worker-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+    
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(mixTotal);
+        for (Operation operation : Operation.values()) {
+            pick -= mixWeights[operation.ordinal()];
+            if (pick < 0) {
+                return operation;
+            }
+        }
+        return Operation.BROWSE;
+    }
+    
+    private Outcome execute(Operation operation) {
+        try {
+            switch (operation) {
+                case BROWSE:
+                    loadTarget.browse();
+                    break;
+                case BID:
+                    // Bids raise a shared per-auction price, so a request that
+                    // arrives after a later one is rejected as too low
+                    int rank = hotAuctions.next();
+                    double amount = nextBidCents.addAndGet(rank, 100) / 100.0;
+                    String bidder = "load_bidder_" + ThreadLocalRandom.current().nextInt(BIDDERS);
+                    loadTarget.placeBid(auctionIds[rank], bidder, amount);
+                    break;
+                case CREATE:
+                    loadTarget.createAuction("Load item " + runId + "-n" + sequence.incrementAndGet(),
+                                             SELLER, 10.0, 1.0, 60);
+                    break;
+                case REGISTER:
+                    String username = "load_" + runId + "_" + sequence.incrementAndGet();
+                    loadTarget.registerUser(username, username + "@example.com");
+                    break;
+            }
+            return Outcome.OK;
+        } catch (LoadTarget.RejectedException e) {
+            return Outcome.REJECTED;
+        } catch (Exception e) {
+            return Outcome.ERROR;
+        }
+    }
+    
+    private void printStep(StepResult result) {
+        System.out.println();
+        System.out.println("=== " + result.label + " ===");
+        System.out.println(String.format("Throughput: %.1f req/s  ok=%d  rejected=%d  errors=%d  unsent=%d",
+            result.throughput(),
+            result.outcomes[Outcome.OK.ordinal()].sum(),
+            result.outcomes[Outcome.REJECTED.ordinal()].sum(),
+            result.outcomes[Outcome.ERROR.ordinal()].sum(),
+            result.unsent.sum()));
+        System.out.println(String.format("%-22s %9s %9s %9s %9s %9s %9s",
+            "Response time (ms)", "count", "p50", "p90", "p99", "p99.9", "max"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = result.responseTimes[operation.ordinal()];
+            if (histogram.getCount() > 0) {
+                printRow(operation.name().toLowerCase(), histogram);
+            }
+        }
+        printRow("all", result.allResponseTimes());
+        printRow("service time (raw)", result.serviceTime);
+    }
+    
+    private void printRow(String label, LatencyHistogram histogram) {
+        StringBuilder row = new StringBuilder(String.format("%-22s %9d", label, histogram.getCount()));
+        for (double quantile : QUANTILES) {
+            row.append(String.format(" %9.2f", histogram.valueAtQuantile(quantile) / 1e6));
+        }
+        row.append(String.format(" %9.2f", histogram.getMaxNanos() / 1e6));
+        System.out.println(row);
+    }
+    
+    private void printSummary(List<StepResult> results) {
+        System.out.println();
+        System.out.println("=== Summary (corrected response time, ms) ===");
+        System.out.println(String.format("%-14s %12s %9s %9s %9s %9s", "step", "req/s", "p50", "p99", "p99.9", "errors"));
+        for (StepResult result : results) {
+            LatencyHistogram all = result.allResponseTimes();
+            System.out.println(String.format("%-14s %12.1f %9.2f %9.2f %9.2f %9d",
+                result.label, result.throughput(),
+                all.valueAtQuantile(0.5) / 1e6, all.valueAtQuantile(0.99) / 1e6,
+                all.valueAtQuantile(0.999) / 1e6,
+                result.outcomes[Outcome.ERROR.ordinal()].sum() + result.unsent.sum()));
+        }
+    }
+    
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Unexpected argument: " + args[i]);
+                System.exit(1);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        try {
+            new LoadGenerator(options).run();
+        } catch (Exception e) {
+            System.err.println("Load generator failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
\ No newline at end of file
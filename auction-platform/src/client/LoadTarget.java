@@ -0,0 +1,29 @@
+package client;
+
+/**
+ * Operations the load generator drives against a deployment
+ * Implementations throw RejectedException when the service answers with a
+ * business error (bid too low, duplicate user) and any other exception
+ * when the request itself failed
+ */
+public interface LoadTarget {
+    
+    // Lists active auctions, as the auction page does on every refresh
+    void browse() throws Exception;
+    
+    void placeBid(long auctionId, String bidderName, double amount) throws Exception;
+    
+    long createAuction(String itemName, String sellerName, double startingPrice,
+                       double bidIncrement, long durationMinutes) throws Exception;
+    
+    void registerUser(String username, String email) throws Exception;
+    
+    // Service answered, but refused the operation
+    class RejectedException extends Exception {
+        private static final long serialVersionUID = 1L;
+        
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+}
\ No newline at end of file
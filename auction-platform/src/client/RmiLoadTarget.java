@@ -0,0 +1,47 @@
+package client;
+
+import server.AuctionService;
+import server.PartitionedAuctionService;
+
+// Drives the auction service directly over RMI
+public class RmiLoadTarget implements LoadTarget {
+    
+    private final AuctionService auctionService;
+    
+    public RmiLoadTarget(String serviceUrl) throws Exception {
+        this.auctionService = PartitionedAuctionService.lookup(serviceUrl);
+    }
+    
+    @Override
+    public void browse() throws Exception {
+        auctionService.getAllActiveAuctions();
+    }
+    
+    @Override
+    public void placeBid(long auctionId, String bidderName, double amount) throws Exception {
+        try {
+            auctionService.placeBid(auctionId, bidderName, amount);
+        } catch (RuntimeException e) {
+            // Validation failures travel back from the server as runtime exceptions
+            throw new RejectedException(e.getMessage());
+        }
+    }
+    
+    @Override
+    public long createAuction(String itemName, String sellerName, double startingPrice,
+                              double bidIncrement, long durationMinutes) throws Exception {
+        try {
+            return auctionService.createAuction(itemName, "Load test item", sellerName,
+                                                startingPrice, bidIncrement, durationMinutes);
+        } catch (RuntimeException e) {
+            throw new RejectedException(e.getMessage());
+        }
+    }
+    
+    @Override
+    public void registerUser(String username, String email) throws Exception {
+        if (!auctionService.registerUser(username, email, false)) {
+            throw new RejectedException("User " + username + " already exists");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,204 @@
+package server;
+
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client facade that runs AuctionService calls on a bounded pool and returns futures
+ * A page that needs several remote calls can start them all at once and wait
+ * for the slowest instead of their sum. Every call has a timeout. A stub that
+ * fails with a RemoteException is dropped and looked up again for the next
+ * call, and a call that failed before reaching the server is retried once on
+ * the new stub, so a restarted AuctionServer does not need a client restart.
+ * The caller's RequestTiming follows the call onto the pool thread
+ */
+public class AsyncAuctionService implements AutoCloseable {
+    
+    // One remote call on the current stub
+    public interface ServiceCall<T> {
+        T call(AuctionService service) throws RemoteException;
+    }
+    
+    // Finds the service, e.g. PartitionedAuctionService::lookup for a URL
+    public interface Lookup {
+        AuctionService lookup() throws Exception;
+    }
+    
+    private final Lookup lookup;
+    private final ThreadPoolExecutor pool;
+    private final long timeoutMillis;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private AuctionService stub;
+    
+    public AsyncAuctionService(Lookup lookup, int threads, int queueCapacity, long timeoutMillis) {
+        this.lookup = lookup;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                           new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "auction-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+    
+    // Sized from auction.async.threads (16), auction.async.queueCapacity (1000) and auction.async.timeoutMillis (5000)
+    public static AsyncAuctionService fromSystemProperties(Lookup lookup) {
+        return new AsyncAuctionService(lookup,
+                                       Integer.getInteger("auction.async.threads", 16),
+                                       Integer.getInteger("auction.async.queueCapacity", 1000),
+                                       Long.getLong("auction.async.timeoutMillis", 5000));
+    }
+    
+    public <T> CompletableFuture<T> call(ServiceCall<T> call) {
+        return call(call, timeoutMillis);
+    }
+    
+    // A call that does not finish within timeoutMillis fails with a TimeoutException;
+    // the remote call itself cannot be interrupted and runs to completion on its thread
+    public <T> CompletableFuture<T> call(ServiceCall<T> call, long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            pool.execute(RequestTiming.inheriting(() -> run(call, result)));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new RemoteException("Too many AuctionService calls waiting", e));
+            return result;
+        }
+        return result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private <T> void run(ServiceCall<T> call, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // Timed out while queued
+            return;
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                AuctionService service = stub();
+                try {
+                    result.complete(call.call(service));
+                    return;
+                } catch (RemoteException e) {
+                    invalidate(service);
+                    if (attempt > 1 || !neverReachedServer(e) || result.isDone()) {
+                        throw e;
+                    }
+                    retries.increment();
+                }
+            }
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+    
+    // Failures where the call was never dispatched, so trying again cannot apply it twice
+    private static boolean neverReachedServer(RemoteException e) {
+        return e instanceof ConnectException || e instanceof ConnectIOException
+            || e instanceof NoSuchObjectException || e instanceof UnknownHostException;
+    }
+    
+    private synchronized AuctionService stub() throws RemoteException {
+        if (stub == null) {
+            try {
+                stub = lookup.lookup();
+            } catch (RemoteException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RemoteException("AuctionService lookup failed", e);
+            }
+            lookups.increment();
+        }
+        return stub;
+    }
+    
+    // Only drops the stub the failed call used, not one another thread has already replaced it with
+    private synchronized void invalidate(AuctionService failed) {
+        if (stub == failed) {
+            stub = null;
+        }
+    }
+    
+    // Completes when every future has, or as soon as one of them fails
+    public static CompletableFuture<Void> all(CompletableFuture<?>... futures) {
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+        for (CompletableFuture<?> future : futures) {
+            future.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    all.completeExceptionally(failure);
+                }
+            });
+        }
+        return all;
+    }
+    
+    // Fan-out of calls of one type: their results in the order of the futures
+    public static <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        return all(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+    
+    // Waits for a future and rethrows its failure as placeBid and friends would have
+    public static <T> T await(CompletableFuture<T> future) throws RemoteException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for AuctionService", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof TimeoutException) {
+                throw new RemoteException("AuctionService call timed out", cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RemoteException("AuctionService call failed", cause);
+        }
+    }
+    
+    ThreadPoolExecutor getExecutor() {
+        return pool;
+    }
+    
+    // Stub lookups, including the first
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+    
+    public long getRetryCount() {
+        return retries.sum();
+    }
+    
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package server;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 // Auction class representing an auction in the system
@@ -12,12 +13,16 @@ public class Auction implements Serializable {
     private String itemName;
     private String description;
     private String sellerName;
+    private int sellerId = -1;
     private double startingPrice;
     private double currentHighestBid;
     private String highestBidder;
+    private int highestBidderId = -1;
     private double bidIncrement;
     private String startTime;
     private String endTime;
+    private long endTimeMillis;
+    private long closedAtMillis;
     private boolean isActive;
     private long totalBids;
     
@@ -35,8 +40,10 @@ public class Auction implements Serializable {
         this.totalBids = 0;
         
         LocalDateTime now = LocalDateTime.now();
+        LocalDateTime end = now.plusMinutes(durationMinutes);
         this.startTime = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        this.endTime = now.plusMinutes(durationMinutes).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        this.endTime = end.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        this.endTimeMillis = end.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
     
     // Getters and setters
@@ -52,6 +59,10 @@ public class Auction implements Serializable {
     public String getSellerName() { return sellerName; }
     public void setSellerName(String sellerName) { this.sellerName = sellerName; }
     
+    // Dictionary id of the seller, only meaningful inside the service
+    public int getSellerId() { return sellerId; }
+    public void setSellerId(int sellerId) { this.sellerId = sellerId; }
+    
     public double getStartingPrice() { return startingPrice; }
     public void setStartingPrice(double startingPrice) { this.startingPrice = startingPrice; }
     
@@ -61,6 +72,10 @@ public class Auction implements Serializable {
     public String getHighestBidder() { return highestBidder; }
     public void setHighestBidder(String highestBidder) { this.highestBidder = highestBidder; }
     
+    // Dictionary id of the highest bidder, -1 until the first bid
+    public int getHighestBidderId() { return highestBidderId; }
+    public void setHighestBidderId(int highestBidderId) { this.highestBidderId = highestBidderId; }
+    
     public double getBidIncrement() { return bidIncrement; }
     public void setBidIncrement(double bidIncrement) { this.bidIncrement = bidIncrement; }
     
@@ -70,8 +85,20 @@ public class Auction implements Serializable {
     public String getEndTime() { return endTime; }
     public void setEndTime(String endTime) { this.endTime = endTime; }
     
+    public long getEndTimeMillis() { return endTimeMillis; }
+    public void setEndTimeMillis(long endTimeMillis) { this.endTimeMillis = endTimeMillis; }
+    
+    // Time the auction was closed, 0 while it is still active
+    public long getClosedAtMillis() { return closedAtMillis; }
+    public void setClosedAtMillis(long closedAtMillis) { this.closedAtMillis = closedAtMillis; }
+    
     public boolean isActive() { return isActive; }
-    public void setActive(boolean active) { isActive = active; }
+    public void setActive(boolean active) {
+        if (isActive && !active) {
+            closedAtMillis = System.currentTimeMillis();
+        }
+        isActive = active;
+    }
     
     public long getTotalBids() { return totalBids; }
     public void setTotalBids(long totalBids) { this.totalBids = totalBids; }
@@ -0,0 +1,504 @@
+package server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * On-disk archive for closed auctions and their bid histories
+ * Auctions are appended as individually compressed records to segment files,
+ * and an append-only index maps each auction id to its segment and offset.
+ * Recently read auctions are kept in a bounded LRU cache. One archive owns
+ * its directory, locked until close
+ */
+public class AuctionArchive {
+    
+    private static final String INDEX_FILE = "index.dat";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    
+    // Record header: compressed length and raw length
+    private static final int RECORD_HEADER_BYTES = 8;
+    
+    private final Path directory;
+    private final DirectoryLock directoryLock;
+    private final long maxSegmentBytes;
+    private final UserDictionary dictionary;
+    
+    // Location of each archived auction, packed as (segment << 40) | offset
+    private final Map<Long, Long> index = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> readChannels = new ConcurrentHashMap<>();
+    private final Map<Long, ArchivedAuction> cache;
+    
+    // Written under the archive lock
+    private int currentSegment;
+    private FileChannel segmentWriter;
+    private DataOutputStream indexWriter;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    
+    // An archived auction together with its bid history
+    public static class ArchivedAuction {
+        private final Auction auction;
+        private final BidHistory bids;
+        private final List<ClearingResult> clearingResults;
+        
+        public ArchivedAuction(Auction auction, BidHistory bids, List<ClearingResult> clearingResults) {
+            this.auction = auction;
+            this.bids = bids;
+            this.clearingResults = clearingResults;
+        }
+        
+        public Auction getAuction() { return auction; }
+        public BidHistory getBids() { return bids; }
+        
+        // Rounds of a sealed-bid auction, which always has at least its final one; empty otherwise
+        public List<ClearingResult> getClearingResults() { return clearingResults; }
+    }
+    
+    public AuctionArchive(Path directory, long maxSegmentBytes, int cacheSize, UserDictionary dictionary) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.dictionary = dictionary;
+        this.cache = new LinkedHashMap<Long, ArchivedAuction>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ArchivedAuction> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        
+        this.directoryLock = DirectoryLock.acquire(directory);
+        try {
+            loadIndex();
+            openSegment(Math.max(currentSegment, 1));
+            indexWriter = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(directory.resolve(INDEX_FILE).toFile(), true)));
+        } catch (IOException e) {
+            directoryLock.close();
+            throw e;
+        }
+    }
+    
+    public boolean contains(long auctionId) {
+        return index.containsKey(auctionId);
+    }
+    
+    public int size() {
+        return index.size();
+    }
+    
+    // Highest archived auction id, so a restarted server does not reuse ids
+    public long maxAuctionId() {
+        long max = 0;
+        for (long auctionId : index.keySet()) {
+            max = Math.max(max, auctionId);
+        }
+        return max;
+    }
+    
+    // Appends a closed auction, its bids and, for a sealed-bid auction, its clearing rounds to the current segment
+    public synchronized void append(Auction auction, BidHistory bids, List<ClearingResult> clearingResults)
+                                    throws IOException {
+        if (index.containsKey(auction.getAuctionId())) {
+            return; // Already archived
+        }
+        
+        byte[] raw = encode(auction, bids, clearingResults);
+        byte[] compressed = compress(raw);
+        
+        if (segmentWriter.size() > 0 && segmentWriter.size() + compressed.length > maxSegmentBytes) {
+            segmentWriter.close();
+            openSegment(currentSegment + 1);
+        }
+        
+        long offset = segmentWriter.size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + compressed.length);
+        record.putInt(compressed.length).putInt(raw.length).put(compressed).flip();
+        while (record.hasRemaining()) {
+            segmentWriter.write(record);
+        }
+        
+        indexWriter.writeLong(auction.getAuctionId());
+        indexWriter.writeInt(currentSegment);
+        indexWriter.writeLong(offset);
+        indexWriter.flush();
+        
+        index.put(auction.getAuctionId(), location(currentSegment, offset));
+    }
+    
+    // Returns the archived auction, reading it from disk on a cache miss
+    public ArchivedAuction get(long auctionId) throws IOException {
+        synchronized (cache) {
+            ArchivedAuction cached = cache.get(auctionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        Long location = index.get(auctionId);
+        if (location == null) {
+            return null;
+        }
+        
+        ArchivedAuction archived = decode(readRecord(segmentOf(location), offsetOf(location)));
+        synchronized (cache) {
+            cache.put(auctionId, archived);
+        }
+        return archived;
+    }
+    
+    // Streams every segment and sums final prices of sold auctions per seller and day
+    public List<SalesSummary> aggregateSalesBySellerPerDay() throws IOException {
+        Map<String, Map<String, double[]>> totals = new TreeMap<>();
+        Inflater inflater = new Inflater();
+        byte[] compressed = new byte[4096];
+        byte[] raw = new byte[4096];
+        
+        try {
+            for (int segment : listSegments()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                         new FileInputStream(segmentPath(segment).toFile()), 1 << 16))) {
+                    long offset = 0;
+                    while (true) {
+                        int compressedLength;
+                        int rawLength;
+                        try {
+                            compressedLength = in.readInt();
+                            rawLength = in.readInt();
+                            if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+                            if (raw.length < rawLength) raw = new byte[rawLength];
+                            in.readFully(compressed, 0, compressedLength);
+                        } catch (EOFException e) {
+                            break; // End of segment, or a torn final record
+                        }
+                        long recordOffset = offset;
+                        offset += RECORD_HEADER_BYTES + compressedLength;
+                        
+                        inflater.reset();
+                        inflater.setInput(compressed, 0, compressedLength);
+                        inflate(inflater, raw, rawLength);
+                        
+                        // Only the auction header is decoded, bid columns are skipped
+                        DataInputStream record = new DataInputStream(new ByteArrayInputStream(raw, 0, rawLength));
+                        Auction auction = decodeAuction(record);
+                        Long location = index.get(auction.getAuctionId());
+                        if (location == null || location != location(segment, recordOffset)) {
+                            continue; // Written but never indexed
+                        }
+                        if (auction.getTotalBids() == 0) {
+                            continue; // Closed without a sale
+                        }
+                        
+                        long closedAt = auction.getClosedAtMillis() > 0 ? auction.getClosedAtMillis() : auction.getEndTimeMillis();
+                        String day = LocalDate.ofInstant(Instant.ofEpochMilli(closedAt), ZoneId.systemDefault()).toString();
+                        double[] sellerDay = totals.computeIfAbsent(auction.getSellerName(), s -> new TreeMap<>())
+                                                   .computeIfAbsent(day, d -> new double[2]);
+                        sellerDay[0] += 1;
+                        sellerDay[1] += auction.getCurrentHighestBid();
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        
+        List<SalesSummary> summaries = new ArrayList<>();
+        for (Map.Entry<String, Map<String, double[]>> seller : totals.entrySet()) {
+            for (Map.Entry<String, double[]> day : seller.getValue().entrySet()) {
+                summaries.add(new SalesSummary(seller.getKey(), day.getKey(),
+                                               (long) day.getValue()[0], day.getValue()[1]));
+            }
+        }
+        return summaries;
+    }
+    
+    public synchronized void close() throws IOException {
+        indexWriter.close();
+        segmentWriter.close();
+        for (FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+        deflater.end();
+        directoryLock.close();
+    }
+    
+    // Record encoding
+    
+    private byte[] encode(Auction auction, BidHistory bids, List<ClearingResult> clearingResults) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        
+        out.writeLong(auction.getAuctionId());
+        writeString(out, auction.getItemName());
+        writeString(out, auction.getDescription());
+        writeString(out, auction.getSellerName());
+        out.writeDouble(auction.getStartingPrice());
+        out.writeDouble(auction.getCurrentHighestBid());
+        writeString(out, auction.getHighestBidder());
+        out.writeDouble(auction.getBidIncrement());
+        writeString(out, auction.getStartTime());
+        writeString(out, auction.getEndTime());
+        out.writeLong(auction.getEndTimeMillis());
+        out.writeLong(auction.getClosedAtMillis());
+        out.writeLong(auction.getTotalBids());
+        
+        // Bidder names are written once per record and referenced by local index
+        int count = bids.size();
+        Map<Integer, Integer> localIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] bidderLocalIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            int bidderId = bids.bidderIdAt(i);
+            Integer localId = localIds.get(bidderId);
+            if (localId == null) {
+                localId = names.size();
+                localIds.put(bidderId, localId);
+                names.add(dictionary.nameOf(bidderId));
+            }
+            bidderLocalIds[i] = localId;
+        }
+        
+        out.writeInt(names.size());
+        for (String name : names) {
+            writeString(out, name);
+        }
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(bids.bidIdAt(i));
+            out.writeLong(bids.timestampAt(i));
+            out.writeLong(bids.amountAt(i));
+            out.writeInt(bidderLocalIds[i]);
+        }
+        
+        out.writeInt(clearingResults.size());
+        for (ClearingResult result : clearingResults) {
+            out.writeInt(result.getRound());
+            writeString(out, result.getClearedAt());
+            writeString(out, result.getPricingRule().name());
+            out.writeInt(result.getBidCount());
+            out.writeDouble(result.getClearingPrice());
+            out.writeInt(result.getWinningBids().size());
+            for (Bid bid : result.getWinningBids()) {
+                out.writeLong(bid.getBidId());
+                writeString(out, bid.getBidderName());
+                out.writeDouble(bid.getAmount());
+                writeString(out, bid.getTimestamp());
+            }
+        }
+        
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private ArchivedAuction decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        Auction auction = decodeAuction(in);
+        
+        int nameCount = in.readInt();
+        int[] bidderIds = new int[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            bidderIds[i] = dictionary.intern(readString(in));
+        }
+        
+        BidHistory bids = new BidHistory(auction.getAuctionId());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long bidId = in.readLong();
+            long timestamp = in.readLong();
+            long amount = in.readLong();
+            bids.append(bidId, timestamp, amount, bidderIds[in.readInt()]);
+        }
+        
+        // Records archived before clearing results were kept end here
+        List<ClearingResult> clearingResults = new ArrayList<>();
+        int rounds = in.available() > 0 ? in.readInt() : 0;
+        for (int r = 0; r < rounds; r++) {
+            int round = in.readInt();
+            String clearedAt = readString(in);
+            PricingRule pricingRule = PricingRule.valueOf(readString(in));
+            int bidCount = in.readInt();
+            double clearingPrice = in.readDouble();
+            int winners = in.readInt();
+            List<Bid> winningBids = new ArrayList<>(winners);
+            for (int i = 0; i < winners; i++) {
+                long bidId = in.readLong();
+                String bidderName = readString(in);
+                double amount = in.readDouble();
+                winningBids.add(new Bid(bidId, auction.getAuctionId(), bidderName, amount, readString(in)));
+            }
+            clearingResults.add(new ClearingResult(auction.getAuctionId(), round, clearedAt, pricingRule,
+                                                   bidCount, clearingPrice, winningBids));
+        }
+        return new ArchivedAuction(auction, bids, clearingResults);
+    }
+    
+    private Auction decodeAuction(DataInputStream in) throws IOException {
+        long auctionId = in.readLong();
+        String itemName = readString(in);
+        String description = readString(in);
+        String sellerName = readString(in);
+        double startingPrice = in.readDouble();
+        
+        Auction auction = new Auction(auctionId, itemName, description, sellerName, startingPrice, 0, 0);
+        auction.setCurrentHighestBid(in.readDouble());
+        auction.setHighestBidder(readString(in));
+        auction.setBidIncrement(in.readDouble());
+        auction.setStartTime(readString(in));
+        auction.setEndTime(readString(in));
+        auction.setEndTimeMillis(in.readLong());
+        auction.setActive(false);
+        auction.setClosedAtMillis(in.readLong());
+        auction.setTotalBids(in.readLong());
+        return auction;
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+    
+    // Compression
+    
+    private byte[] compress(byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+    
+    private static void inflate(Inflater inflater, byte[] raw, int rawLength) throws IOException {
+        try {
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                read += inflater.inflate(raw, read, rawLength - read);
+            }
+            if (read != rawLength) {
+                throw new IOException("Corrupt archive record");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive record", e);
+        }
+    }
+    
+    // Segment and index files
+    
+    private byte[] readRecord(int segment, long offset) throws IOException {
+        FileChannel channel = readChannels.computeIfAbsent(segment, s -> {
+            try {
+                return FileChannel.open(segmentPath(s), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(channel, header, offset);
+        header.flip();
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+        
+        ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+        readFully(channel, compressed, offset + RECORD_HEADER_BYTES);
+        
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            inflate(inflater, raw, rawLength);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Truncated archive record");
+            }
+        }
+    }
+    
+    private void loadIndex() throws IOException {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            while (true) {
+                long auctionId;
+                int segment;
+                long offset;
+                try {
+                    auctionId = in.readLong();
+                    segment = in.readInt();
+                    offset = in.readLong();
+                } catch (EOFException e) {
+                    break; // End of index, or a torn final entry
+                }
+                index.put(auctionId, location(segment, offset));
+                currentSegment = Math.max(currentSegment, segment);
+            }
+        }
+    }
+    
+    private void openSegment(int segment) throws IOException {
+        currentSegment = segment;
+        segmentWriter = FileChannel.open(segmentPath(segment),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+    
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+    
+    private static long location(int segment, long offset) {
+        return ((long) segment << 40) | offset;
+    }
+    
+    private static int segmentOf(long location) {
+        return (int) (location >>> 40);
+    }
+    
+    private static long offsetOf(long location) {
+        return location & ((1L << 40) - 1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongFunction;
+
+/**
+ * Sorted indexes over active auctions by end time and by current highest bid
+ * Both are concurrent skip lists of (key, auction id) entries, so a range
+ * query costs O(log n + k) and never walks the auction map. Writers update an
+ * auction's entries under its lock. A price change adds the new entry before
+ * it removes the old one, so a reader never misses an auction that is being
+ * bid on. Entries whose key no longer matches the auction are skipped, and
+ * an auction met at both its old and new price is returned once
+ */
+public class AuctionIndex {
+    
+    private static final class Entry implements Comparable<Entry> {
+        final long key;
+        final long auctionId;
+        
+        Entry(long key, long auctionId) {
+            this.key = key;
+            this.auctionId = auctionId;
+        }
+        
+        @Override
+        public int compareTo(Entry other) {
+            int byKey = Long.compare(key, other.key);
+            return byKey != 0 ? byKey : Long.compare(auctionId, other.auctionId);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry && compareTo((Entry) other) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key) * 31 + Long.hashCode(auctionId);
+        }
+    }
+    
+    private final ConcurrentSkipListSet<Entry> byEndTime = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<Entry> byPrice = new ConcurrentSkipListSet<>();
+    
+    // Caller holds the auction lock for this and the other updates
+    public void add(Auction auction) {
+        byEndTime.add(new Entry(auction.getEndTimeMillis(), auction.getAuctionId()));
+        byPrice.add(new Entry(priceKey(auction.getCurrentHighestBid()), auction.getAuctionId()));
+    }
+    
+    public void priceChanged(long auctionId, double oldPrice, double newPrice) {
+        long oldKey = priceKey(oldPrice);
+        long newKey = priceKey(newPrice);
+        if (oldKey != newKey) {
+            byPrice.add(new Entry(newKey, auctionId));
+            byPrice.remove(new Entry(oldKey, auctionId));
+        }
+    }
+    
+    public void remove(Auction auction) {
+        byEndTime.remove(new Entry(auction.getEndTimeMillis(), auction.getAuctionId()));
+        byPrice.remove(new Entry(priceKey(auction.getCurrentHighestBid()), auction.getAuctionId()));
+    }
+    
+    public int size() { return byEndTime.size(); }
+    
+    // Active auctions ending in [fromMillis, beforeMillis), soonest first
+    public List<Auction> endingBetween(long fromMillis, long beforeMillis, int limit, LongFunction<Auction> lookup) {
+        if (fromMillis >= beforeMillis || limit <= 0) {
+            return new ArrayList<>();
+        }
+        NavigableSet<Entry> range = byEndTime.subSet(new Entry(fromMillis, Long.MIN_VALUE), true,
+                                                      new Entry(beforeMillis, Long.MIN_VALUE), false);
+        List<Auction> result = new ArrayList<>(Math.min(limit, 64));
+        for (Entry entry : range) {
+            if (result.size() == limit) {
+                break;
+            }
+            Auction auction = lookup.apply(entry.auctionId);
+            if (auction != null && auction.isActive()) {
+                result.add(auction);
+            }
+        }
+        return result;
+    }
+    
+    // Active auctions whose current highest bid is in [minPrice, maxPrice], cheapest first
+    public List<Auction> inPriceRange(double minPrice, double maxPrice, long nowMillis, int limit,
+                                      LongFunction<Auction> lookup) {
+        long minKey = priceKey(minPrice);
+        long maxKey = priceKey(maxPrice);
+        if (minKey > maxKey || limit <= 0) {
+            return new ArrayList<>();
+        }
+        NavigableSet<Entry> range = byPrice.subSet(new Entry(minKey, Long.MIN_VALUE), true,
+                                                    new Entry(maxKey, Long.MAX_VALUE), true);
+        List<Auction> result = new ArrayList<>(Math.min(limit, 64));
+        Set<Long> seen = new HashSet<>();
+        for (Entry entry : range) {
+            if (result.size() == limit) {
+                break;
+            }
+            Auction auction = lookup.apply(entry.auctionId);
+            // The entry is stale while a bid is moving the auction to its new one
+            if (auction != null && auction.isActive() && auction.getEndTimeMillis() > nowMillis
+                && priceKey(auction.getCurrentHighestBid()) == entry.key && seen.add(entry.auctionId)) {
+                result.add(auction);
+            }
+        }
+        return result;
+    }
+    
+    private static long priceKey(double price) {
+        return BidHistory.toMinorUnits(price);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,233 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local, eventually consistent copy of auctions and bids for serving reads
+ * Follows one or more primaries (one per partition) as a replication
+ * observer: each sends a snapshot and then its ordered mutation stream,
+ * which is applied here without touching the write path. Observers never
+ * count towards a write quorum, so any number of read models can run.
+ *
+ * Closed auctions are dropped after a retention period; the primary still
+ * answers for them from its archive. A restarted primary can reuse auction
+ * and bid ids, so everything that came from its earlier epoch is dropped
+ * before its new snapshot is applied, and ids are only compared within one
+ * epoch
+ */
+public class AuctionReadModel {
+    
+    private static final int HOT_AUCTIONS_TRACKED = Integer.getInteger("auction.hot.tracked", 50);
+    
+    private final Map<Long, Auction> auctions = new ConcurrentHashMap<>();
+    private final Map<Long, BidHistory> auctionBids = new ConcurrentHashMap<>();
+    private final Map<Long, BidRateCounter> bidRates = new ConcurrentHashMap<>();
+    private final HotAuctionRanking hotAuctions = new HotAuctionRanking(HOT_AUCTIONS_TRACKED);
+    private final UserDictionary userDictionary = new UserDictionary();
+    private final List<ReplicationClient> sources = new ArrayList<>();
+    private final List<Source> sourceListeners = new ArrayList<>();
+    private final long retainClosedMillis;
+    
+    // primaries are the host:port replication addresses of every partition's primary
+    public AuctionReadModel(List<String> primaries, long retainClosedMillis) {
+        this.retainClosedMillis = retainClosedMillis;
+        for (String primary : primaries) {
+            String[] hostPort = primary.trim().split(":");
+            Source source = new Source();
+            source.client = new ReplicationClient(hostPort[0], Integer.parseInt(hostPort[1]), false, source);
+            sourceListeners.add(source);
+            sources.add(source.client);
+        }
+    }
+    
+    public void start() {
+        sources.forEach(ReplicationClient::start);
+    }
+    
+    public void stop() {
+        sources.forEach(ReplicationClient::stop);
+    }
+    
+    // Worst staleness over all sources, Long.MAX_VALUE until every one has caught up
+    public long getStalenessMillis() {
+        long staleness = 0;
+        for (ReplicationClient source : sources) {
+            staleness = Math.max(staleness, source.getStalenessMillis());
+        }
+        return staleness;
+    }
+    
+    // Mutations the primaries have announced but this model has not applied yet
+    public long getLag() {
+        long lag = 0;
+        for (ReplicationClient source : sources) {
+            lag += source.getPrimarySeq() - source.getAppliedSeq();
+        }
+        return lag;
+    }
+    
+    public String status() {
+        StringBuilder status = new StringBuilder();
+        for (ReplicationClient source : sources) {
+            status.append(status.length() == 0 ? "" : "; ").append(source.status());
+        }
+        return auctions.size() + " auctions, " + status;
+    }
+    
+    public List<Auction> getActiveAuctions() {
+        long now = System.currentTimeMillis();
+        List<Auction> active = new ArrayList<>();
+        for (Auction auction : auctions.values()) {
+            if (auction.isActive() && auction.getEndTimeMillis() > now) {
+                active.add(auction);
+            } else {
+                // Auctions that ran out of time are never closed by a mutation
+                long endedAt = auction.isActive() ? auction.getEndTimeMillis() : auction.getClosedAtMillis();
+                if (endedAt < now - retainClosedMillis) {
+                    evict(auction.getAuctionId());
+                }
+            }
+        }
+        return active;
+    }
+    
+    // Null if the auction is unknown here; the live copy, updated as mutations arrive
+    public Auction getAuction(long auctionId) {
+        return auctions.get(auctionId);
+    }
+    
+    // Epoch of the primary the auction was replicated from, 0 if the auction is unknown here
+    public long epochOf(long auctionId) {
+        for (Source source : sourceListeners) {
+            if (source.auctionIds.contains(auctionId)) {
+                return source.client.getEpoch();
+            }
+        }
+        return 0;
+    }
+    
+    // Null if the auction is unknown here, e.g. archived before this model started
+    public List<Bid> getBids(long auctionId) {
+        BidHistory bids = auctionBids.get(auctionId);
+        return bids != null ? bids.toBids(userDictionary) : null;
+    }
+    
+    // Null if the auction is unknown here
+    public List<Bid> getBidsSince(long auctionId, long lastSeenBidId, int limit) {
+        BidHistory bids = auctionBids.get(auctionId);
+        return bids != null ? bids.bidsAfter(lastSeenBidId, limit, userDictionary) : null;
+    }
+    
+    public List<HotAuction> getHotAuctions(int limit) {
+        List<HotAuction> result = new ArrayList<>();
+        for (HotAuctionRanking.Entry entry : hotAuctions.top(limit, System.currentTimeMillis())) {
+            Auction auction = auctions.get(entry.getAuctionId());
+            if (auction != null && auction.isActive()) {
+                result.add(new HotAuction(auction, BidRateCounter.toBidsPerMinute(entry.getCount())));
+            }
+        }
+        return result;
+    }
+    
+    private void evict(long auctionId) {
+        for (Source source : sourceListeners) {
+            source.auctionIds.remove(auctionId);
+        }
+        auctions.remove(auctionId);
+        auctionBids.remove(auctionId);
+        BidRateCounter rate = bidRates.remove(auctionId);
+        if (rate != null) {
+            hotAuctions.remove(rate);
+        }
+    }
+    
+    // Mutations from one primary, applied on its replication thread; it knows which
+    // auctions it created, so a restart of that primary only drops its own auctions
+    private class Source implements MutationListener {
+        
+        final Set<Long> auctionIds = ConcurrentHashMap.newKeySet();
+        ReplicationClient client;
+        
+        @Override
+        public void onEpochChanged(long epoch) {
+            for (Long auctionId : auctionIds) {
+                evict(auctionId);
+            }
+        }
+        
+        @Override
+        public void onUserRegistered(Mutation.UserRegistered mutation) {
+            userDictionary.intern(mutation.getUsername());
+        }
+        
+        @Override
+        public void onAuctionCreated(Mutation.AuctionCreated mutation) {
+            if (auctions.containsKey(mutation.getAuctionId())) {
+                return;
+            }
+            auctionIds.add(mutation.getAuctionId());
+            createAuction(mutation);
+        }
+        
+        @Override
+        public void onBidPlaced(Mutation.BidPlaced mutation) {
+            placeBid(mutation);
+        }
+        
+        @Override
+        public void onAuctionClosed(Mutation.AuctionClosed mutation) {
+            closeAuction(mutation);
+        }
+    }
+    
+    private void createAuction(Mutation.AuctionCreated mutation) {
+        long auctionId = mutation.getAuctionId();
+        auctionBids.put(auctionId, new BidHistory(auctionId));
+        bidRates.put(auctionId, new BidRateCounter(auctionId));
+        auctions.put(auctionId, mutation.toAuction());
+    }
+    
+    private void placeBid(Mutation.BidPlaced mutation) {
+        Auction auction = auctions.get(mutation.getAuctionId());
+        if (auction == null) {
+            return;
+        }
+        int bidderId = userDictionary.intern(mutation.getBidderName());
+        synchronized (auction) {
+            BidHistory bids = auctionBids.get(auction.getAuctionId());
+            int size = bids.size();
+            // Bid ids rise within an epoch, and the auction is dropped when the epoch changes
+            if (size > 0 && bids.bidIdAt(size - 1) >= mutation.getBidId()) {
+                return;
+            }
+            bids.append(mutation.getBidId(), mutation.getTimestampMillis(), mutation.getAmountMinor(), bidderId);
+            hotAuctions.recordBid(bidRates.get(auction.getAuctionId()), mutation.getTimestampMillis());
+            auction.setCurrentHighestBid(BidHistory.fromMinorUnits(mutation.getAmountMinor()));
+            auction.setHighestBidder(userDictionary.nameOf(bidderId));
+            auction.setHighestBidderId(bidderId);
+            auction.incrementBidCount();
+        }
+    }
+    
+    private void closeAuction(Mutation.AuctionClosed mutation) {
+        Auction auction = auctions.get(mutation.getAuctionId());
+        if (auction == null) {
+            return;
+        }
+        synchronized (auction) {
+            if (!auction.isActive()) {
+                return;
+            }
+            auction.setActive(false);
+            auction.setClosedAtMillis(mutation.getClosedAtMillis());
+        }
+        BidRateCounter rate = bidRates.get(auction.getAuctionId());
+        if (rate != null) {
+            hotAuctions.remove(rate);
+        }
+    }
+}
\ No newline at end of file
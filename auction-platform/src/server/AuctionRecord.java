@@ -0,0 +1,22 @@
+package server;
+
+import java.io.Serializable;
+import java.util.List;
+
+// An auction together with its bids, as moved by bulk import and export
+public class AuctionRecord implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final Auction auction;
+    private final List<Bid> bids;
+    
+    public AuctionRecord(Auction auction, List<Bid> bids) {
+        this.auction = auction;
+        this.bids = bids;
+    }
+    
+    public Auction getAuction() { return auction; }
+    
+    // In the order they were placed, so each one is higher than the last
+    public List<Bid> getBids() { return bids; }
+}
\ No newline at end of file
@@ -14,24 +14,37 @@ public class AuctionServer {
     public static final String SERVICE_NAME = "AuctionService";
     public static final int RMI_PORT = 1099;
     
+    // Several servers on one host (e.g. a primary and its backups) each need their own registry port
+    private static final int PORT = Integer.getInteger("auction.rmi.port", RMI_PORT);
+    
+    // Default data directory for this node, e.g. archive-1099, so that servers sharing a host
+    // and working directory do not share files; the directories are locked while in use
+    static String nodeDirectory(String base) {
+        return base + "-" + PORT;
+    }
+    
     public static void main(String[] args) {
+        if (args.length == 2 && "promote".equals(args[0])) {
+            promote(args[1]);
+            return;
+        }
         try {
             System.out.println("Starting Auction Server...");
             System.out.println("=========================");
             
             // Create and start RMI registry (similar to CORBA naming service)
             try {
-                Registry registry = LocateRegistry.createRegistry(RMI_PORT);
-                System.out.println("RMI Registry created on port " + RMI_PORT);
+                Registry registry = LocateRegistry.createRegistry(PORT);
+                System.out.println("RMI Registry created on port " + PORT);
             } catch (Exception e) {
-                System.out.println("RMI Registry already running on port " + RMI_PORT);
+                System.out.println("RMI Registry already running on port " + PORT);
             }
             
             // Create the auction service implementation
             AuctionServiceImpl auctionService = new AuctionServiceImpl();
             
             // Bind the service to the registry (similar to CORBA naming service registration)
-            String serviceUrl = "rmi://localhost:" + RMI_PORT + "/" + SERVICE_NAME;
+            String serviceUrl = "rmi://localhost:" + PORT + "/" + SERVICE_NAME;
             Naming.rebind(serviceUrl, auctionService);
             
             // Get server information
@@ -39,8 +52,12 @@ public class AuctionServer {
             
             System.out.println("Auction Service successfully bound to: " + serviceUrl);
             System.out.println("Server Host: " + hostAddress);
-            System.out.println("Server Port: " + RMI_PORT);
+            System.out.println("Server Port: " + PORT);
             System.out.println("Service Name: " + SERVICE_NAME);
+            int exportPort = RmiSocketFactory.exportPort();
+            System.out.println("Export Port: " + (exportPort == 0 ? "any free port" : exportPort));
+            RmiSocketFactory sockets = RmiSocketFactory.fromSystemProperties();
+            System.out.println("RMI Sockets: " + (sockets != null ? sockets : "JDK defaults"));
             System.out.println("");
             System.out.println("Server is ready and waiting for client connections...");
             System.out.println("Press Ctrl+C to shutdown the server");
@@ -56,6 +73,7 @@ public class AuctionServer {
                 try {
                     Naming.unbind(serviceUrl);
                     System.out.println("Service unbound successfully");
+                    auctionService.shutdown();
                 } catch (Exception e) {
                     System.err.println("Error during shutdown: " + e.getMessage());
                 }
@@ -67,11 +85,26 @@ public class AuctionServer {
             synchronized (lock) {
                 lock.wait();
             }
-            
+        
         } catch (Exception e) {
             System.err.println("Auction Server error: " + e.getMessage());
             e.printStackTrace();
             System.exit(1);
         }
     }
+    
+    // Usage: java server.AuctionServer promote rmi://localhost:1100/AuctionService
+    private static void promote(String serviceUrl) {
+        try {
+            AuctionService backup = (AuctionService) Naming.lookup(serviceUrl);
+            if (backup.promoteToPrimary()) {
+                System.out.println(serviceUrl + " is now the primary");
+            } else {
+                System.out.println(serviceUrl + " was already a primary");
+            }
+        } catch (Exception e) {
+            System.err.println("Promotion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
\ No newline at end of file
@@ -26,10 +26,51 @@ public interface AuctionService extends Remote {
     long placeBid(long auctionId, String bidderName, double bidAmount) 
                  throws RemoteException;
     
+    // placeBid that returns a rejection instead of throwing it, with the time spent on the service;
+    // requestId is the caller's correlation id and is logged with the bid
+    TracedBid placeBidTraced(String requestId, long auctionId, String bidderName, double bidAmount)
+                            throws RemoteException;
+    
     List<Bid> getBidsForAuction(long auctionId) throws RemoteException;
     
     Bid getHighestBid(long auctionId) throws RemoteException;
     
+    // Up to limit bids placed after lastSeenBidId (0 for the first), oldest first,
+    // so a detail view only fetches the bids it has not seen
+    List<Bid> getBidsSince(long auctionId, long lastSeenBidId, int limit) throws RemoteException;
+    
+    // Active auctions with the highest recent bid rate, hottest first
+    List<HotAuction> getHotAuctions(int limit) throws RemoteException;
+    
+    // Range queries over active auctions, answered from sorted indexes
+    // Auctions ending from now until endTimeMillis (epoch millis), soonest first
+    List<Auction> getAuctionsEndingBefore(long endTimeMillis, int limit) throws RemoteException;
+    
+    // Auctions whose current highest bid is between minPrice and maxPrice inclusive, cheapest first
+    List<Auction> getAuctionsInPriceRange(double minPrice, double maxPrice, int limit) throws RemoteException;
+    
+    // Bid prices per time bucket; resolutionSeconds is 60, 900, 3600 or 86400,
+    // or 0 for the finest one that still covers every bid
+    PriceSeries getPriceHistory(long auctionId, int resolutionSeconds) throws RemoteException;
+    
+    // Batch-clearing operations
+    // Sealed bids are collected and cleared together every clearingIntervalSeconds
+    // (0 = once, at close); each round sells up to units units
+    long createSealedBidAuction(String itemName, String description, String sellerName,
+                                double reservePrice, int units, PricingRule pricingRule,
+                                long clearingIntervalSeconds, long durationMinutes)
+                                throws RemoteException;
+    
+    List<ClearingResult> getClearingResults(long auctionId) throws RemoteException;
+    
+    // Bulk operations
+    // Imported auctions get new ids; bids keep their bidders, amounts and times.
+    // A batch is validated as a whole before any of it is applied
+    int importAuctions(List<AuctionRecord> records) throws RemoteException;
+    
+    // Up to limit live auctions with ids above afterAuctionId, in id order, with their bids
+    List<AuctionRecord> exportAuctions(long afterAuctionId, int limit) throws RemoteException;
+    
     // User operations
     boolean registerUser(String username, String email, boolean isSeller) throws RemoteException;
     
@@ -50,4 +91,14 @@ public interface AuctionService extends Remote {
     int getTotalBidCount() throws RemoteException;
     
     List<String> getRegisteredUsers() throws RemoteException;
+    
+    // Latency histograms, bid counters and gauges in Prometheus text format
+    String getMetrics() throws RemoteException;
+    
+    // Archive operations
+    List<SalesSummary> getArchivedSalesBySellerPerDay() throws RemoteException;
+    
+    // Replication operations
+    // Turns a backup into the primary; false if it already is one
+    boolean promoteToPrimary() throws RemoteException;
 }
\ No newline at end of file
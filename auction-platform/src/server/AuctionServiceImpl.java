@@ -1,11 +1,19 @@
 package server;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -15,29 +23,211 @@ import java.time.format.DateTimeFormatter;
  */
 public class AuctionServiceImpl extends UnicastRemoteObject implements AuctionService {
     
+    private static final int HOT_AUCTIONS_TRACKED = Integer.getInteger("auction.hot.tracked", 50);
+    
+    // Replication settings; a server with a primary address starts as a backup
+    private static final int REPLICATION_PORT = Integer.getInteger("auction.replication.port", 0);
+    private static final String REPLICATION_PRIMARY = System.getProperty("auction.replication.primary");
+    private static final String REPLICATION_ACKS = System.getProperty("auction.replication.acks", "async");
+    private static final int REPLICATION_REPLICAS = Integer.getInteger("auction.replication.replicas", 1);
+    private static final long REPLICATION_ACK_TIMEOUT_MILLIS = Long.getLong("auction.replication.ackTimeoutMillis", 1000);
+    private static final int REPLICATION_LOG_CAPACITY = Integer.getInteger("auction.replication.logCapacity", 1 << 20);
+    
+    // Partitioning; every node and router is given the same node list and each node its own entry
+    private static final String PARTITION_NODES = System.getProperty("auction.partition.nodes");
+    private static final String PARTITION_SELF = System.getProperty("auction.partition.self");
+    
     // Thread-safe data storage
     private final Map<Long, Auction> auctions = new ConcurrentHashMap<>();
-    private final Map<Long, List<Bid>> auctionBids = new ConcurrentHashMap<>();
-    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<Long, BidHistory> auctionBids = new ConcurrentHashMap<>();
+    
+    // Users, sellers and bidders are referenced internally by dictionary id
+    private final UserDictionary userDictionary = new UserDictionary();
+    
+    // Auction ids per seller id
+    private final Map<Integer, Set<Long>> auctionsBySeller = new ConcurrentHashMap<>();
+    
+    // Sliding-window bid rates per auction and the hottest auctions among them
+    private final Map<Long, BidRateCounter> bidRates = new ConcurrentHashMap<>();
+    private final HotAuctionRanking hotAuctions = new HotAuctionRanking(HOT_AUCTIONS_TRACKED);
+    
+    // Active auctions sorted by end time and by current highest bid
+    private final AuctionIndex auctionIndex = new AuctionIndex();
+    
+    // Downsampled price series per auction, created with its first bid
+    private final Map<Long, PriceHistory> priceHistories = new ConcurrentHashMap<>();
     
     // Atomic counters for ID generation
     private final AtomicLong auctionIdGenerator = new AtomicLong(1);
     private final AtomicLong bidIdGenerator = new AtomicLong(1);
     
+    // Auction ids this node may allocate, null when it owns them all;
+    // bid ids are interleaved, partition i of n taking i + 1, i + 1 + n, ...
+    private final ConsistentHashRing partitionRing;
+    private final int partitionIndex;
+    private final int bidIdStride;
+    
+    // Closed auctions are moved here after the grace period; the auction.archive.* settings are read
+    // per service, like the settlement ones, so services in one JVM (e.g. tests) get their own directory
+    private final long archiveGraceMinutes;
+    private final AuctionArchive archive;
+    private final ScheduledThreadPoolExecutor archiver;
+    
+    // Batch-clearing auctions; every clearing round runs on the single clearing thread
+    private final Map<Long, SealedBidAuction> sealedAuctions = new ConcurrentHashMap<>();
+    private final Map<Long, ScheduledFuture<?>> clearingTasks = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor clearer;
+    
+    // Latency per remote method, bid outcomes and queue gauges
+    private final MetricsRegistry metrics = new MetricsRegistry("auction_service");
+    private final Map<String, LatencyHistogram> latency = new HashMap<>();
+    private final LongAdder bidsAccepted = metrics.counter("bids_total", "Bids by outcome", "result", "accepted");
+    private final LongAdder bidsRejectedNotFound = bidsRejected("not_found");
+    private final LongAdder bidsRejectedInactive = bidsRejected("inactive");
+    private final LongAdder bidsRejectedExpired = bidsRejected("expired");
+    private final LongAdder bidsRejectedTooLow = bidsRejected("too_low");
+    private final LatencyHistogram clearingLatency = metrics.histogram("clearing_seconds",
+        "Time to rank and price one round of sealed bids");
+    
+    // Closed auctions are settled in the background, in the order they closed
+    private final SettlementPipeline settlements;
+    
+    // Request-path events are written by a background thread
+    private final EventLog eventLog;
+    private final EventLog.Event auctionCreatedEvent;
+    private final EventLog.Event auctionClosedEvent;
+    private final EventLog.Event auctionExpiredEvent;
+    private final EventLog.Event auctionsArchivedEvent;
+    private final EventLog.Event archiveFailedEvent;
+    private final EventLog.Event bidPlacedEvent;
+    private final EventLog.Event auctionClearedEvent;
+    private final EventLog.Event clearingFailedEvent;
+    private final EventLog.Event auctionsImportedEvent;
+    private final EventLog.Event userRegisteredEvent;
+    private final EventLog.Event sellerNoticeEvent;
+    private final EventLog.Event buyerNoticeEvent;
+    
+    // Set on a primary with followers, or on a backup until it is promoted
+    private volatile ReplicationServer replicationServer;
+    private volatile ReplicationClient replicationClient;
+    
     // Server start time for status reporting
     private final String serverStartTime;
     
     public AuctionServiceImpl() throws RemoteException {
-        super();
+        this(RmiSocketFactory.fromSystemProperties());
+    }
+    
+    // Exported on auction.rmi.exportPort with the given sockets, or the JDK's when null
+    private AuctionServiceImpl(RmiSocketFactory sockets) throws RemoteException {
+        super(RmiSocketFactory.exportPort(), sockets, sockets);
         this.serverStartTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         
-        // Initialize with some sample data
-        initializeSampleData();
+        if (PARTITION_NODES != null) {
+            this.partitionRing = ConsistentHashRing.parse(PARTITION_NODES);
+            this.partitionIndex = partitionRing.indexOf(PARTITION_SELF);
+            if (partitionIndex < 0) {
+                throw new RemoteException("auction.partition.self must be one of auction.partition.nodes: " + PARTITION_NODES);
+            }
+        } else {
+            this.partitionRing = null;
+            this.partitionIndex = 0;
+        }
+        this.bidIdStride = partitionRing != null ? partitionRing.size() : 1;
+        bidIdGenerator.set(1 + partitionIndex);
+        
+        try {
+            this.eventLog = EventLog.fromSystemProperties(metrics);
+        } catch (IOException e) {
+            throw new RemoteException("Could not open event log", e);
+        }
+        this.auctionCreatedEvent = eventLog.event("auction_created", EventLog.Level.INFO);
+        this.auctionClosedEvent = eventLog.event("auction_closed", EventLog.Level.INFO);
+        this.auctionExpiredEvent = eventLog.event("auction_expired", EventLog.Level.INFO);
+        this.auctionsArchivedEvent = eventLog.event("auctions_archived", EventLog.Level.INFO);
+        this.archiveFailedEvent = eventLog.event("archive_failed", EventLog.Level.ERROR);
+        this.bidPlacedEvent = eventLog.event("bid_placed", EventLog.Level.INFO);
+        this.auctionClearedEvent = eventLog.event("auction_cleared", EventLog.Level.INFO);
+        this.clearingFailedEvent = eventLog.event("clearing_failed", EventLog.Level.ERROR);
+        this.auctionsImportedEvent = eventLog.event("auctions_imported", EventLog.Level.INFO);
+        this.userRegisteredEvent = eventLog.event("user_registered", EventLog.Level.INFO);
+        this.sellerNoticeEvent = eventLog.event("notify_seller", EventLog.Level.INFO);
+        this.buyerNoticeEvent = eventLog.event("notify_buyer", EventLog.Level.INFO);
+        
+        try {
+            this.settlements = SettlementPipeline.fromSystemProperties(this::settle, eventLog, metrics);
+        } catch (IOException e) {
+            throw new RemoteException("Could not open settlement journal", e);
+        }
+        
+        String archiveDir = System.getProperty("auction.archive.dir", AuctionServer.nodeDirectory("archive"));
+        this.archiveGraceMinutes = Long.getLong("auction.archive.graceMinutes", 60);
+        long archiveIntervalSeconds = Long.getLong("auction.archive.intervalSeconds", 60);
+        try {
+            this.archive = new AuctionArchive(Paths.get(archiveDir), Long.getLong("auction.archive.segmentBytes", 64L << 20),
+                                              Integer.getInteger("auction.archive.cacheSize", 1000), userDictionary);
+        } catch (IOException e) {
+            // Unlocks the settlement directory, so a retry with another archive directory can take it
+            settlements.close();
+            throw new RemoteException("Could not open auction archive in " + archiveDir, e);
+        }
+        auctionIdGenerator.set(archive.maxAuctionId() + 1);
+        this.archiver = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "auction-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(this::archiveClosedAuctions,
+                                        archiveIntervalSeconds, archiveIntervalSeconds, TimeUnit.SECONDS);
+        this.clearer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "auction-clearing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        registerMetrics();
+        
+        if (REPLICATION_PRIMARY != null) {
+            // Backups start empty and take their state from the primary
+            startBackup();
+        } else {
+            // Initialize with some sample data
+            initializeSampleData();
+            if (REPLICATION_PORT > 0) {
+                startReplicationServer();
+            }
+        }
         
         System.out.println("Auction Service Implementation initialized successfully");
         System.out.println("Server started at: " + serverStartTime);
     }
     
+    private LongAdder bidsRejected(String reason) {
+        return metrics.counter("bids_total", "Bids by outcome", "result", "rejected", "reason", reason);
+    }
+    
+    private void registerMetrics() {
+        // One histogram per remote method, looked up by name on each call
+        for (Method method : AuctionService.class.getMethods()) {
+            latency.put(method.getName(), metrics.histogram("latency_seconds",
+                "Latency of AuctionService methods", "method", method.getName()));
+        }
+        
+        metrics.gauge("live_auctions", "Auctions held in memory", auctions::size);
+        metrics.gauge("archived_auctions", "Auctions moved to the archive", archive::size);
+        metrics.gauge("registered_users", "Registered users", userDictionary::registeredCount);
+        metrics.gauge("replication_diverged", "1 while this backup refuses to follow a restarted primary", () -> {
+            ReplicationClient client = replicationClient;
+            return client != null && client.isDiverged() ? 1 : 0;
+        });
+        metrics.executorGauges("archiver", archiver);
+        metrics.executorGauges("clearing", clearer);
+        metrics.counter("rmi_frame_bytes_total", "Bytes written by compressing RMI sockets", RmiSocketFactory.payloadBytes,
+                        "stage", "payload");
+        metrics.counter("rmi_frame_bytes_total", "Bytes written by compressing RMI sockets", RmiSocketFactory.wireBytes,
+                        "stage", "wire");
+    }
+    
     private void initializeSampleData() {
         try {
             // Register sample users
@@ -46,20 +236,25 @@ public class AuctionServiceImpl extends UnicastRemoteObject implements AuctionSe
             registerUser("charlie", "charlie@email.com", false);
             registerUser("diana", "diana@email.com", true);
             
+            // Only the first partition gets the sample auctions
+            if (partitionIndex != 0) {
+                return;
+            }
+            
             // Create sample auctions
-            createAuction("Vintage Watch", "Beautiful vintage Rolex watch from 1960s", "alice", 500.0, 25.0, 60);
-            createAuction("Gaming Laptop", "High-performance gaming laptop with RTX 4080", "diana", 1200.0, 50.0, 120);
-            createAuction("Art Painting", "Original oil painting by local artist", "alice", 200.0, 15.0, 90);
+            long watch = createAuction("Vintage Watch", "Beautiful vintage Rolex watch from 1960s", "alice", 500.0, 25.0, 60);
+            long laptop = createAuction("Gaming Laptop", "High-performance gaming laptop with RTX 4080", "diana", 1200.0, 50.0, 120);
+            long painting = createAuction("Art Painting", "Original oil painting by local artist", "alice", 200.0, 15.0, 90);
             createAuction("Antique Vase", "Ming dynasty style ceramic vase", "diana", 300.0, 20.0, 150);
             
             // Place some sample bids
-            placeBid(1, "bob", 525.0);
-            placeBid(1, "charlie", 550.0);
-            placeBid(2, "bob", 1250.0);
-            placeBid(3, "charlie", 215.0);
+            placeBid(watch, "bob", 525.0);
+            placeBid(watch, "charlie", 550.0);
+            placeBid(laptop, "bob", 1250.0);
+            placeBid(painting, "charlie", 215.0);
             
             System.out.println("Sample data initialized successfully");
-            
+        
         } catch (Exception e) {
             System.err.println("Error initializing sample data: " + e.getMessage());
         }
@@ -69,181 +264,746 @@ public class AuctionServiceImpl extends UnicastRemoteObject implements AuctionSe
     public long createAuction(String itemName, String description, String sellerName,
                              double startingPrice, double bidIncrement, long durationMinutes) 
                              throws RemoteException {
-        
-        long auctionId = auctionIdGenerator.getAndIncrement();
-        Auction auction = new Auction(auctionId, itemName, description, sellerName,
-                                    startingPrice, bidIncrement, durationMinutes);
-        
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            checkWritable();
+            long auctionId = nextAuctionId();
+            int sellerId = userDictionary.intern(sellerName);
+            Auction auction = new Auction(auctionId, itemName, description, userDictionary.nameOf(sellerId),
+                                        startingPrice, bidIncrement, durationMinutes);
+            auction.setSellerId(sellerId);
+            
+            // Bids on the new auction must be replicated after its creation
+            long seq;
+            synchronized (auction) {
+                addAuction(auction);
+                ReplicationServer replication = replicationServer;
+                seq = replication != null ? replication.append(new Mutation.AuctionCreated(auction)) : 0;
+            }
+            awaitReplicated(seq);
+            
+            if (auctionCreatedEvent.isLoggable()) {
+                auctionCreatedEvent.log("id=" + auctionId + " item=\"" + itemName + "\" seller=" + sellerName
+                                        + " startingPrice=" + startingPrice + " durationMinutes=" + durationMinutes);
+            }
+            return auctionId;
+        } finally {
+            endCall("createAuction", call, start);
+        }
+    }
+    
+    // Skips ids owned by other partitions, so nodes never hand out the same id
+    private long nextAuctionId() {
+        while (true) {
+            long auctionId = auctionIdGenerator.getAndIncrement();
+            if (partitionRing == null || partitionRing.ownerOf(auctionId) == partitionIndex) {
+                return auctionId;
+            }
+        }
+    }
+    
+    private void addAuction(Auction auction) {
+        long auctionId = auction.getAuctionId();
+        auctionBids.put(auctionId, new BidHistory(auctionId));
+        bidRates.put(auctionId, new BidRateCounter(auctionId));
+        auctionsBySeller.computeIfAbsent(auction.getSellerId(), id -> ConcurrentHashMap.newKeySet()).add(auctionId);
         auctions.put(auctionId, auction);
-        auctionBids.put(auctionId, new ArrayList<>());
+        if (auction.isActive()) {
+            auctionIndex.add(auction);
+        }
         
         // Update user auction count
-        User seller = users.get(sellerName);
+        User seller = userDictionary.userOf(auction.getSellerId());
         if (seller != null) {
             seller.incrementAuctionCount();
         }
-        
-        System.out.println("Created auction: " + auction);
-        return auctionId;
     }
     
     @Override
     public List<Auction> getAllActiveAuctions() throws RemoteException {
-        // Filter out expired auctions and mark them as inactive
-        List<Auction> activeAuctions = new ArrayList<>();
-        
-        for (Auction auction : auctions.values()) {
-            if (auction.hasExpired() && auction.isActive()) {
-                auction.setActive(false);
-                System.out.println("Auction " + auction.getAuctionId() + " has expired and been closed");
-            }
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            // Filter out expired auctions and mark them as inactive
+            List<Auction> activeAuctions = new ArrayList<>();
             
-            if (auction.isActive()) {
-                activeAuctions.add(auction);
+            for (Auction auction : auctions.values()) {
+                if (auction.hasExpired() && auction.isActive()) {
+                    synchronized (auction) {
+                        if (auction.isActive()) {
+                            auction.setActive(false);
+                            closed(auction);
+                            logExpired(auction, "sweep");
+                        }
+                    }
+                }
+                
+                if (auction.isActive()) {
+                    activeAuctions.add(auction);
+                }
             }
+            
+            return activeAuctions;
+        } finally {
+            endCall("getAllActiveAuctions", call, start);
         }
-        
-        return activeAuctions;
     }
     
     @Override
     public Auction getAuction(long auctionId) throws RemoteException {
-        Auction auction = auctions.get(auctionId);
-        if (auction == null) {
-            throw new RuntimeException("Auction with ID " + auctionId + " not found");
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            Auction auction = lookupAuction(auctionId);
+            if (auction == null) {
+                throw new RuntimeException("Auction with ID " + auctionId + " not found");
+            }
+            return auction;
+        } finally {
+            endCall("getAuction", call, start);
         }
-        return auction;
     }
     
     @Override
     public boolean closeAuction(long auctionId) throws RemoteException {
-        Auction auction = getAuction(auctionId);
-        if (auction.isActive()) {
-            auction.setActive(false);
-            System.out.println("Auction " + auctionId + " closed manually");
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            checkWritable();
+            Auction auction = findAuction(auctionId);
+            long seq;
+            synchronized (auction) {
+                if (!auction.isActive()) {
+                    return false;
+                }
+                auction.setActive(false);
+                closed(auction);
+                ReplicationServer replication = replicationServer;
+                seq = replication != null
+                    ? replication.append(new Mutation.AuctionClosed(auctionId, auction.getClosedAtMillis())) : 0;
+            }
+            BidRateCounter rate = bidRates.get(auctionId);
+            if (rate != null) {
+                hotAuctions.remove(rate);
+            }
+            if (auctionClosedEvent.isLoggable()) {
+                auctionClosedEvent.log("id=" + auctionId + " reason=manual");
+            }
+            SealedBidAuction sealed = sealedAuctions.get(auctionId);
+            if (sealed != null) {
+                // Returns once the final round has cleared
+                try {
+                    clearer.submit(() -> finishSealedAuction(auction, sealed)).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RemoteException("Interrupted while clearing auction " + auctionId, e);
+                } catch (ExecutionException e) {
+                    throw new RemoteException("Final clearing of auction " + auctionId + " failed", e.getCause());
+                }
+            }
+            awaitReplicated(seq);
             return true;
+        } finally {
+            endCall("closeAuction", call, start);
         }
-        return false;
     }
     
     @Override
     public long placeBid(long auctionId, String bidderName, double bidAmount)
                         throws RemoteException {
-        
-        Auction auction = getAuction(auctionId);
-        
-        // Check if auction is still active
-        if (!auction.isActive()) {
-            throw new RuntimeException("Auction " + auctionId + " is no longer active");
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return placeBid(auctionId, bidderName, bidAmount, start, null);
+        } finally {
+            endCall("placeBid", call, start);
         }
-        
-        // Check if auction has expired
-        if (auction.hasExpired()) {
-            auction.setActive(false);
+    }
+    
+    @Override
+    public TracedBid placeBidTraced(String requestId, long auctionId, String bidderName, double bidAmount)
+                                    throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        TracedBid trace = new TracedBid(requestId);
+        try {
+            trace.accepted(placeBid(auctionId, bidderName, bidAmount, start, trace));
+        } catch (RuntimeException e) {
+            trace.rejected(e.getMessage());
+        } finally {
+            Auction auction = auctions.get(auctionId);
+            if (auction != null && !sealedAuctions.containsKey(auctionId)) {
+                // Read without the lock: the minimum only rises and a closed auction stays closed,
+                // so a value that is already out of date still only turns away losing bids
+                trace.setAuctionState(auction.isActive(), auction.getCurrentHighestBid() + auction.getBidIncrement());
+            }
+            ReplicationServer replication = replicationServer;
+            if (replication != null) {
+                trace.setEpoch(replication.getEpoch());
+            }
+            trace.setServiceNanos(System.nanoTime() - start);
+            endCall("placeBidTraced", call, start);
+        }
+        return trace;
+    }
+    
+    // Rejection messages, shared with the WebServer's BidFloors so its early rejections read the same
+    static String inactiveMessage(long auctionId) {
+        return "Auction " + auctionId + " is no longer active";
+    }
+    
+    static String tooLowMessage(double bidAmount, double minimumBid) {
+        return String.format("Bid amount %.2f is too low. Minimum bid is %.2f", bidAmount, minimumBid);
+    }
+    
+    // trace is null for untraced calls
+    private long placeBid(long auctionId, String bidderName, double bidAmount, long start, TracedBid trace)
+                         throws RemoteException {
+        FlightEvents.Bid flight = FlightEvents.beginBid();
+        try {
+            checkWritable();
+            Auction auction = lookupAuction(auctionId);
+            if (auction == null) {
+                bidsRejectedNotFound.increment();
+                throw new RuntimeException("Auction with ID " + auctionId + " not found");
+            }
+            SealedBidAuction sealed = sealedAuctions.get(auctionId);
+            if (sealed != null) {
+                long bidId = placeSealedBid(auction, sealed, bidderName, bidAmount);
+                flight.accepted(bidId);
+                return bidId;
+            }
+            int bidderId = userDictionary.intern(bidderName);
+            long bidId;
+            long seq;
+            
+            // Validation and the append must see the same highest bid
+            synchronized (auction) {
+                // Check if auction is still active
+                if (!auction.isActive()) {
+                    bidsRejectedInactive.increment();
+                    throw new RuntimeException(inactiveMessage(auctionId));
+                }
+                
+                // Check if auction has expired
+                if (auction.hasExpired()) {
+                    auction.setActive(false);
+                    closed(auction);
+                    logExpired(auction, "bid");
+                    bidsRejectedExpired.increment();
+                    throw new RuntimeException("Auction " + auctionId + " has expired");
+                }
+                
+                // Validate bid amount
+                double minimumBid = auction.getCurrentHighestBid() + auction.getBidIncrement();
+                if (bidAmount < minimumBid) {
+                    bidsRejectedTooLow.increment();
+                    throw new RuntimeException(tooLowMessage(bidAmount, minimumBid));
+                }
+                long validation = System.nanoTime() - start;
+                flight.validated(validation);
+                if (trace != null) {
+                    trace.setValidationNanos(validation);
+                }
+                
+                bidId = bidIdGenerator.getAndAdd(bidIdStride);
+                long now = System.currentTimeMillis();
+                applyBid(auction, bidId, now, bidAmount, bidderId);
+                
+                // Replicated in the order bids were accepted for this auction
+                ReplicationServer replication = replicationServer;
+                seq = replication != null
+                    ? replication.append(new Mutation.BidPlaced(bidId, auctionId, userDictionary.nameOf(bidderId),
+                                                                BidHistory.toMinorUnits(bidAmount), now))
+                    : 0;
+            }
+            bidsAccepted.increment();
+            flight.accepted(bidId);
+            
+            // Update user bid count
+            User bidder = userDictionary.userOf(bidderId);
+            if (bidder != null) {
+                bidder.incrementBidCount();
+            }
+            
+            if (bidPlacedEvent.isLoggable()) {
+                bidPlacedEvent.log("id=" + bidId + " auction=" + auctionId + " bidder=" + bidderName
+                                   + " amount=" + bidAmount + (trace != null ? " request=" + trace.getRequestId() : ""));
+            }
+            long replicationStart = System.nanoTime();
+            awaitReplicated(seq);
+            if (trace != null) {
+                trace.setReplicationNanos(System.nanoTime() - replicationStart);
+            }
+            return bidId;
+        } catch (RuntimeException e) {
+            flight.rejected(e.getMessage());
+            throw e;
+        } finally {
+            flight.finish(auctionId, bidderName, bidAmount, trace != null ? trace.getRequestId() : null);
+        }
+    }
+    
+    // Sealed bids are only checked against the reserve; ranking waits for the clearing round
+    private long placeSealedBid(Auction auction, SealedBidAuction sealed, String bidderName, double bidAmount) {
+        long auctionId = auction.getAuctionId();
+        long now = System.currentTimeMillis();
+        if (!auction.isActive() || sealed.isClosed()) {
+            bidsRejectedInactive.increment();
+            throw new RuntimeException(inactiveMessage(auctionId));
+        }
+        if (now >= auction.getEndTimeMillis()) {
+            bidsRejectedExpired.increment();
             throw new RuntimeException("Auction " + auctionId + " has expired");
         }
-        
-        // Validate bid amount
-        double minimumBid = auction.getCurrentHighestBid() + auction.getBidIncrement();
-        if (bidAmount < minimumBid) {
-            throw new RuntimeException(String.format(
-                "Bid amount %.2f is too low. Minimum bid is %.2f", bidAmount, minimumBid));
+        long amountMinor = BidHistory.toMinorUnits(bidAmount);
+        if (amountMinor < sealed.getReserveMinor()) {
+            bidsRejectedTooLow.increment();
+            throw new RuntimeException(String.format("Bid amount %.2f is below the reserve price %.2f",
+                                                     bidAmount, BidHistory.fromMinorUnits(sealed.getReserveMinor())));
+        }
+        if (amountMinor > SealedBidAuction.MAX_AMOUNT_MINOR) {
+            throw new RuntimeException(String.format("Bid amount %.2f is above the maximum sealed bid", bidAmount));
         }
         
-        // Create and store the bid
-        long bidId = bidIdGenerator.getAndIncrement();
-        Bid bid = new Bid(bidId, auctionId, bidderName, bidAmount);
-        
-        List<Bid> bids = auctionBids.get(auctionId);
-        bids.add(bid);
-        
-        // Update auction with new highest bid
-        auction.setCurrentHighestBid(bidAmount);
-        auction.setHighestBidder(bidderName);
-        auction.incrementBidCount();
+        int bidderId = userDictionary.intern(bidderName);
+        long bidId = bidIdGenerator.getAndAdd(bidIdStride);
+        if (!sealed.submit(bidId, amountMinor, bidderId, now)) {
+            bidsRejectedInactive.increment();
+            throw new RuntimeException(sealed.isClosed()
+                ? inactiveMessage(auctionId)
+                : "Auction " + auctionId + " has received the most bids one round can take; retry after it clears");
+        }
+        bidsAccepted.increment();
         
-        // Update user bid count
-        User bidder = users.get(bidderName);
+        User bidder = userDictionary.userOf(bidderId);
         if (bidder != null) {
             bidder.incrementBidCount();
         }
-        
-        System.out.println("New bid placed: " + bid);
+        if (bidPlacedEvent.isLoggable()) {
+            bidPlacedEvent.log("id=" + bidId + " auction=" + auctionId + " bidder=" + bidderName
+                               + " amount=" + bidAmount + " sealed=true");
+        }
         return bidId;
     }
     
+    // Caller holds the auction lock
+    private void applyBid(Auction auction, long bidId, long timestampMillis, double bidAmount, int bidderId) {
+        // Store the bid in the auction's columnar history
+        long auctionId = auction.getAuctionId();
+        long amountMinor = BidHistory.toMinorUnits(bidAmount);
+        auctionBids.get(auctionId).append(bidId, timestampMillis, amountMinor, bidderId);
+        priceHistories.computeIfAbsent(auctionId, PriceHistory::new).record(timestampMillis, amountMinor);
+        hotAuctions.recordBid(bidRates.get(auctionId), timestampMillis);
+        
+        // Update auction with new highest bid
+        auctionIndex.priceChanged(auctionId, auction.getCurrentHighestBid(), bidAmount);
+        auction.setCurrentHighestBid(bidAmount);
+        auction.setHighestBidder(userDictionary.nameOf(bidderId));
+        auction.setHighestBidderId(bidderId);
+        auction.incrementBidCount();
+    }
+    
     @Override
     public List<Bid> getBidsForAuction(long auctionId) throws RemoteException {
-        getAuction(auctionId); // Validate auction exists
-        List<Bid> bids = auctionBids.get(auctionId);
-        return bids != null ? new ArrayList<>(bids) : new ArrayList<>();
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            findAuction(auctionId); // Validate auction exists
+            List<ClearingResult> results = clearingResultsOf(auctionId);
+            if (results != null) {
+                // Sealed bids stay private; only winning bids are published
+                List<Bid> winningBids = new ArrayList<>();
+                for (ClearingResult result : results) {
+                    winningBids.addAll(result.getWinningBids());
+                }
+                return winningBids;
+            }
+            BidHistory bids = getBidHistory(auctionId);
+            return bids != null ? bids.toBids(userDictionary) : new ArrayList<>();
+        } finally {
+            endCall("getBidsForAuction", call, start);
+        }
+    }
+    
+    @Override
+    public List<Bid> getBidsSince(long auctionId, long lastSeenBidId, int limit) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            findAuction(auctionId); // Validate auction exists
+            List<ClearingResult> results = clearingResultsOf(auctionId);
+            if (results != null) {
+                // Only winning bids are published, a few per clearing round
+                List<Bid> winningBids = new ArrayList<>();
+                for (ClearingResult result : results) {
+                    for (Bid bid : result.getWinningBids()) {
+                        if (bid.getBidId() > lastSeenBidId && winningBids.size() < limit) {
+                            winningBids.add(bid);
+                        }
+                    }
+                }
+                return winningBids;
+            }
+            BidHistory bids = getBidHistory(auctionId);
+            return bids != null ? bids.bidsAfter(lastSeenBidId, limit, userDictionary) : new ArrayList<>();
+        } finally {
+            endCall("getBidsSince", call, start);
+        }
     }
     
     @Override
     public Bid getHighestBid(long auctionId) throws RemoteException {
-        List<Bid> bids = getBidsForAuction(auctionId);
-        return bids.stream()
-                  .max(Comparator.comparingDouble(Bid::getAmount))
-                  .orElse(null);
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            findAuction(auctionId); // Validate auction exists
+            // Accepted bids are strictly increasing, so the latest bid is the highest
+            BidHistory bids = getBidHistory(auctionId);
+            return bids != null ? bids.last(userDictionary) : null;
+        } finally {
+            endCall("getHighestBid", call, start);
+        }
     }
     
     @Override
-    public boolean registerUser(String username, String email, boolean isSeller) throws RemoteException {
-        if (users.containsKey(username)) {
-            return false; // User already exists
+    public List<Auction> getAuctionsEndingBefore(long endTimeMillis, int limit) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return auctionIndex.endingBetween(System.currentTimeMillis(), endTimeMillis, limit, auctions::get);
+        } finally {
+            endCall("getAuctionsEndingBefore", call, start);
+        }
+    }
+    
+    @Override
+    public List<Auction> getAuctionsInPriceRange(double minPrice, double maxPrice, int limit) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return auctionIndex.inPriceRange(minPrice, maxPrice, System.currentTimeMillis(), limit, auctions::get);
+        } finally {
+            endCall("getAuctionsInPriceRange", call, start);
+        }
+    }
+    
+    @Override
+    public PriceSeries getPriceHistory(long auctionId, int resolutionSeconds) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            if (resolutionSeconds != 0) {
+                PriceHistory.resolutionIndex(resolutionSeconds); // Validate resolution
+            }
+            findAuction(auctionId); // Validate auction exists
+            if (clearingResultsOf(auctionId) != null) {
+                throw new RuntimeException("Auction " + auctionId + " is a sealed-bid auction; see its clearing results");
+            }
+            PriceHistory prices = priceHistories.get(auctionId);
+            if (prices == null) {
+                // No bids yet, or archived: archived auctions are rebuilt from their stored bids
+                BidHistory bids = auctionBids.containsKey(auctionId) ? null : getBidHistory(auctionId);
+                prices = bids != null ? PriceHistory.of(bids) : new PriceHistory(auctionId);
+            }
+            return prices.snapshot(resolutionSeconds);
+        } finally {
+            endCall("getPriceHistory", call, start);
+        }
+    }
+    
+    // Live auction, or the archived copy for migrated auctions, null if unknown
+    private Auction lookupAuction(long auctionId) throws RemoteException {
+        Auction auction = auctions.get(auctionId);
+        if (auction == null) {
+            AuctionArchive.ArchivedAuction archived = getArchivedAuction(auctionId);
+            return archived != null ? archived.getAuction() : null;
+        }
+        return auction;
+    }
+    
+    // Internal lookup that is not recorded as a getAuction call
+    private Auction findAuction(long auctionId) throws RemoteException {
+        Auction auction = lookupAuction(auctionId);
+        if (auction == null) {
+            throw new RuntimeException("Auction with ID " + auctionId + " not found");
         }
+        return auction;
+    }
+    
+    // Live bid history, or the archived one for migrated auctions
+    private BidHistory getBidHistory(long auctionId) throws RemoteException {
+        BidHistory bids = auctionBids.get(auctionId);
+        if (bids == null) {
+            AuctionArchive.ArchivedAuction archived = getArchivedAuction(auctionId);
+            return archived != null ? archived.getBids() : null;
+        }
+        return bids;
+    }
+    
+    // Clearing rounds of a live or archived sealed-bid auction, null for any other auction
+    private List<ClearingResult> clearingResultsOf(long auctionId) throws RemoteException {
+        SealedBidAuction sealed = sealedAuctions.get(auctionId);
+        if (sealed != null) {
+            return sealed.getResults();
+        }
+        if (auctions.containsKey(auctionId)) {
+            return null;
+        }
+        AuctionArchive.ArchivedAuction archived = getArchivedAuction(auctionId);
+        return archived != null && !archived.getClearingResults().isEmpty() ? archived.getClearingResults() : null;
+    }
+    
+    private AuctionArchive.ArchivedAuction getArchivedAuction(long auctionId) throws RemoteException {
+        try {
+            return archive.get(auctionId);
+        } catch (IOException e) {
+            throw new RemoteException("Could not read archived auction " + auctionId, e);
+        }
+    }
+    
+    // Moves auctions that have been closed for longer than the grace period into the archive
+    void archiveClosedAuctions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(archiveGraceMinutes);
+        int archived = 0;
         
-        User user = new User(username, email, isSeller);
-        users.put(username, user);
-        System.out.println("Registered new user: " + user);
-        return true;
+        for (Auction auction : auctions.values()) {
+            long auctionId = auction.getAuctionId();
+            SealedBidAuction sealed = sealedAuctions.get(auctionId);
+            synchronized (auction) {
+                if (auction.isActive() && auction.hasExpired()) {
+                    auction.setActive(false);
+                    closed(auction);
+                    logExpired(auction, "archiver");
+                }
+                if (auction.isActive() || auction.getClosedAtMillis() > cutoff) {
+                    continue;
+                }
+            }
+            if (sealed != null && !sealed.isFinished()) {
+                continue; // Archived with its final round once that has cleared
+            }
+            
+            try {
+                archive.append(auction, auctionBids.get(auctionId),
+                               sealed != null ? sealed.getResults() : Collections.emptyList());
+            } catch (IOException e) {
+                if (archiveFailedEvent.isLoggable()) {
+                    archiveFailedEvent.log("id=" + auctionId + " error=\"" + e.getMessage() + "\"");
+                }
+                return; // Retry on the next run
+            }
+            
+            // The archive index is written before the live entries are dropped
+            auctions.remove(auctionId);
+            auctionBids.remove(auctionId);
+            priceHistories.remove(auctionId);
+            sealedAuctions.remove(auctionId);
+            BidRateCounter rate = bidRates.remove(auctionId);
+            if (rate != null) {
+                hotAuctions.remove(rate);
+            }
+            Set<Long> sellerAuctions = auctionsBySeller.get(auction.getSellerId());
+            if (sellerAuctions != null) {
+                sellerAuctions.remove(auctionId);
+            }
+            archived++;
+        }
+        
+        if (archived > 0 && auctionsArchivedEvent.isLoggable()) {
+            auctionsArchivedEvent.log("count=" + archived);
+        }
+    }
+    
+    // Caller holds the lock of an auction it has just closed; backups leave settling to the primary,
+    // and batch-clearing auctions are settled after their final round
+    private void closed(Auction auction) {
+        auctionIndex.remove(auction);
+        if (replicationClient == null && !sealedAuctions.containsKey(auction.getAuctionId())) {
+            settlements.submit(Settlement.of(auction));
+        }
+    }
+    
+    // Runs on a settlement worker once the close is journalled
+    private void settle(Settlement settlement) {
+        User seller = userDictionary.userOf(settlement.getSellerName());
+        if (settlement.isSold()) {
+            User winner = userDictionary.userOf(settlement.getWinnerName());
+            if (winner != null) {
+                winner.incrementAuctionsWon();
+            }
+            if (seller != null) {
+                seller.incrementAuctionsSold();
+            }
+            if (buyerNoticeEvent.isLoggable()) {
+                buyerNoticeEvent.log("id=" + settlement.getAuctionId() + " key=" + settlement.key()
+                                     + " buyer=\"" + settlement.getWinnerName() + "\" price=" + settlement.getPrice());
+            }
+        }
+        if (sellerNoticeEvent.isLoggable()) {
+            sellerNoticeEvent.log("id=" + settlement.getAuctionId() + " key=" + settlement.key()
+                                  + " seller=\"" + settlement.getSellerName() + "\" sold=" + settlement.isSold()
+                                  + " price=" + settlement.getPrice() + " bids=" + settlement.getTotalBids());
+        }
+    }
+    
+    // Every remote method ends with this, so its latency and a JFR event are recorded together
+    private void endCall(String method, FlightEvents.RmiCall call, long start) {
+        latency.get(method).recordSince(start);
+        call.finish(method);
+    }
+    
+    private void logExpired(Auction auction, String closedBy) {
+        FlightEvents.AuctionExpired.record(auction, closedBy);
+        if (auctionExpiredEvent.isLoggable()) {
+            auctionExpiredEvent.log("id=" + auction.getAuctionId() + " endTime=\"" + auction.getEndTime() + "\"");
+        }
+    }
+    
+    @Override
+    public boolean registerUser(String username, String email, boolean isSeller) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            checkWritable();
+            User user = new User(username, email, isSeller);
+            if (!userDictionary.register(user)) {
+                return false; // User already exists
+            }
+            ReplicationServer replication = replicationServer;
+            long seq = replication != null
+                ? replication.append(new Mutation.UserRegistered(username, email, isSeller)) : 0;
+            
+            if (userRegisteredEvent.isLoggable()) {
+                userRegisteredEvent.log("username=" + username + " email=" + email + " seller=" + isSeller);
+            }
+            awaitReplicated(seq);
+            return true;
+        } finally {
+            endCall("registerUser", call, start);
+        }
     }
     
     @Override
     public User getUserInfo(String username) throws RemoteException {
-        return users.get(username);
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return userDictionary.userOf(username);
+        } finally {
+            endCall("getUserInfo", call, start);
+        }
     }
     
     @Override
     public List<Auction> getAuctionsByUser(String username) throws RemoteException {
-        return auctions.values().stream()
-                      .filter(auction -> auction.getSellerName().equals(username))
-                      .collect(Collectors.toList());
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            List<Auction> sellerAuctions = new ArrayList<>();
+            Set<Long> auctionIds = auctionsBySeller.get(userDictionary.idOf(username));
+            if (auctionIds != null) {
+                for (long auctionId : auctionIds) {
+                    Auction auction = auctions.get(auctionId);
+                    if (auction != null) {
+                        sellerAuctions.add(auction);
+                    }
+                }
+            }
+            return sellerAuctions;
+        } finally {
+            endCall("getAuctionsByUser", call, start);
+        }
     }
     
     @Override
     public List<Bid> getBidsByUser(String username) throws RemoteException {
-        List<Bid> userBids = new ArrayList<>();
-        for (List<Bid> bids : auctionBids.values()) {
-            userBids.addAll(bids.stream()
-                               .filter(bid -> bid.getBidderName().equals(username))
-                               .collect(Collectors.toList()));
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            List<Bid> userBids = new ArrayList<>();
+            int bidderId = userDictionary.idOf(username);
+            if (bidderId < 0) {
+                return userBids; // Never placed a bid
+            }
+            for (BidHistory bids : auctionBids.values()) {
+                bids.collectByBidder(bidderId, userDictionary, userBids);
+            }
+            return userBids;
+        } finally {
+            endCall("getBidsByUser", call, start);
         }
-        return userBids;
     }
     
     @Override
     public String getServerStatus() throws RemoteException {
-        StringBuilder status = new StringBuilder();
-        status.append("=== Auction Server Status ===\n");
-        status.append("Server Start Time: ").append(serverStartTime).append("\n");
-        status.append("Current Time: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n");
-        status.append("Total Auctions: ").append(auctions.size()).append("\n");
-        status.append("Active Auctions: ").append(getActiveAuctionCount()).append("\n");
-        status.append("Total Bids: ").append(getTotalBidCount()).append("\n");
-        status.append("Registered Users: ").append(users.size()).append("\n");
-        status.append("Server Status: RUNNING");
-        return status.toString();
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            StringBuilder status = new StringBuilder();
+            status.append("=== Auction Server Status ===\n");
+            status.append("Server Start Time: ").append(serverStartTime).append("\n");
+            status.append("Current Time: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))).append("\n");
+            status.append("Total Auctions: ").append(auctions.size()).append("\n");
+            status.append("Archived Auctions: ").append(archive.size()).append("\n");
+            status.append("Active Auctions: ").append(countActiveAuctions()).append("\n");
+            status.append("Total Bids: ").append(countBids()).append("\n");
+            status.append("Registered Users: ").append(userDictionary.registeredCount()).append("\n");
+            status.append("Replication: ").append(replicationStatus()).append("\n");
+            status.append("Settlement: ").append(settlements.status()).append("\n");
+            if (partitionRing != null) {
+                status.append("Partition: ").append(PARTITION_SELF).append(" (").append(partitionIndex + 1)
+                      .append(" of ").append(partitionRing.size()).append(")\n");
+            }
+            status.append("Server Status: RUNNING");
+            return status.toString();
+        } finally {
+            endCall("getServerStatus", call, start);
+        }
     }
     
     @Override
     public void shutdown() throws RemoteException {
-        System.out.println("Auction server shutdown requested");
-        // In a real implementation, you would perform cleanup here
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            System.out.println("Auction server shutdown requested");
+            // Stop replication and the background archiver and release the archive files
+            ReplicationClient client = replicationClient;
+            if (client != null) {
+                client.stop();
+            }
+            ReplicationServer replication = replicationServer;
+            if (replication != null) {
+                replication.close();
+            }
+            archiver.shutdownNow();
+            clearer.shutdownNow();
+            settlements.close();
+            try {
+                archive.close();
+            } catch (IOException e) {
+                System.err.println("Error closing auction archive: " + e.getMessage());
+            }
+            eventLog.close();
+        } finally {
+            endCall("shutdown", call, start);
+        }
     }
     
     @Override
     public int getActiveAuctionCount() throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return countActiveAuctions();
+        } finally {
+            endCall("getActiveAuctionCount", call, start);
+        }
+    }
+    
+    private int countActiveAuctions() {
         return (int) auctions.values().stream()
                            .filter(auction -> auction.isActive() && !auction.hasExpired())
                            .count();
@@ -251,13 +1011,513 @@ public class AuctionServiceImpl extends UnicastRemoteObject implements AuctionSe
     
     @Override
     public int getTotalBidCount() throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return countBids();
+        } finally {
+            endCall("getTotalBidCount", call, start);
+        }
+    }
+    
+    private int countBids() {
         return auctionBids.values().stream()
-                         .mapToInt(List::size)
+                         .mapToInt(BidHistory::size)
                          .sum();
     }
     
     @Override
     public List<String> getRegisteredUsers() throws RemoteException {
-        return new ArrayList<>(users.keySet());
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return userDictionary.registeredNames();
+        } finally {
+            endCall("getRegisteredUsers", call, start);
+        }
+    }
+    
+    @Override
+    public List<HotAuction> getHotAuctions(int limit) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            List<HotAuction> result = new ArrayList<>();
+            for (HotAuctionRanking.Entry entry : hotAuctions.top(limit, System.currentTimeMillis())) {
+                Auction auction = auctions.get(entry.getAuctionId());
+                if (auction != null && auction.isActive()) {
+                    result.add(new HotAuction(auction, BidRateCounter.toBidsPerMinute(entry.getCount())));
+                }
+            }
+            return result;
+        } finally {
+            endCall("getHotAuctions", call, start);
+        }
+    }
+    
+    @Override
+    public long createSealedBidAuction(String itemName, String description, String sellerName,
+                                       double reservePrice, int units, PricingRule pricingRule,
+                                       long clearingIntervalSeconds, long durationMinutes)
+                                       throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            checkWritable();
+            if (units < 1) {
+                throw new RuntimeException("A sealed-bid auction must offer at least one unit");
+            }
+            if (clearingIntervalSeconds < 0) {
+                throw new RuntimeException("Clearing interval cannot be negative");
+            }
+            long auctionId = nextAuctionId();
+            int sellerId = userDictionary.intern(sellerName);
+            Auction auction = new Auction(auctionId, itemName, description, userDictionary.nameOf(sellerId),
+                                          reservePrice, 0, durationMinutes);
+            auction.setSellerId(sellerId);
+            SealedBidAuction sealed = new SealedBidAuction(auctionId, pricingRule, units,
+                                                           BidHistory.toMinorUnits(reservePrice));
+            // Registered before the auction is visible, so no bid can miss it
+            sealedAuctions.put(auctionId, sealed);
+            addAuction(auction);
+            
+            if (clearingIntervalSeconds > 0) {
+                clearingTasks.put(auctionId, clearer.scheduleAtFixedRate(() -> clearRound(auction, sealed, false),
+                                                                         clearingIntervalSeconds, clearingIntervalSeconds,
+                                                                         TimeUnit.SECONDS));
+            }
+            clearer.schedule(() -> finishSealedAuction(auction, sealed),
+                             Math.max(0, auction.getEndTimeMillis() - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            
+            if (auctionCreatedEvent.isLoggable()) {
+                auctionCreatedEvent.log("id=" + auctionId + " item=\"" + itemName + "\" seller=" + sellerName
+                                        + " reservePrice=" + reservePrice + " units=" + units + " rule=" + pricingRule
+                                        + " clearingIntervalSeconds=" + clearingIntervalSeconds
+                                        + " durationMinutes=" + durationMinutes);
+            }
+            return auctionId;
+        } finally {
+            endCall("createSealedBidAuction", call, start);
+        }
+    }
+    
+    @Override
+    public List<ClearingResult> getClearingResults(long auctionId) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            List<ClearingResult> results = clearingResultsOf(auctionId);
+            if (results == null) {
+                findAuction(auctionId);
+                throw new RuntimeException("Auction " + auctionId + " is not a sealed-bid auction");
+            }
+            return results;
+        } finally {
+            endCall("getClearingResults", call, start);
+        }
+    }
+    
+    @Override
+    public int importAuctions(List<AuctionRecord> records) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            checkWritable();
+            for (int i = 0; i < records.size(); i++) {
+                validateImport(i, records.get(i));
+            }
+            
+            // One event and one replication wait per batch, and no per-bid hot ranking updates
+            ReplicationServer replication = replicationServer;
+            long seq = 0;
+            long bidCount = 0;
+            for (AuctionRecord record : records) {
+                seq = Math.max(seq, importAuction(record, replication));
+                bidCount += record.getBids().size();
+            }
+            awaitReplicated(seq);
+            
+            if (auctionsImportedEvent.isLoggable()) {
+                auctionsImportedEvent.log("count=" + records.size() + " bids=" + bidCount);
+            }
+            return records.size();
+        } finally {
+            endCall("importAuctions", call, start);
+        }
+    }
+    
+    private static void validateImport(int index, AuctionRecord record) {
+        Auction source = record.getAuction();
+        String prefix = "Record " + index + " (auction " + source.getAuctionId() + "): ";
+        if (source.getSellerName() == null || source.getSellerName().isEmpty()) {
+            throw new RuntimeException(prefix + "missing seller");
+        }
+        if (source.getEndTimeMillis() <= 0) {
+            throw new RuntimeException(prefix + "missing end time");
+        }
+        long previousAmount = Long.MIN_VALUE;
+        for (Bid bid : record.getBids()) {
+            long amountMinor = BidHistory.toMinorUnits(bid.getAmount());
+            if (amountMinor <= previousAmount) {
+                throw new RuntimeException(prefix + "bid " + bid.getBidId() + " is not higher than the one before it");
+            }
+            if (bid.getBidderName() == null || bid.getBidderName().isEmpty()) {
+                throw new RuntimeException(prefix + "bid " + bid.getBidId() + " has no bidder");
+            }
+            BidHistory.parseTimestamp(bid.getTimestamp());
+            previousAmount = amountMinor;
+        }
+    }
+    
+    // Returns the replication sequence of the auction's last mutation
+    private long importAuction(AuctionRecord record, ReplicationServer replication) {
+        Auction source = record.getAuction();
+        List<Bid> bids = record.getBids();
+        long auctionId = nextAuctionId();
+        int sellerId = userDictionary.intern(source.getSellerName());
+        Auction auction = new Auction(auctionId, source.getItemName(), source.getDescription(),
+                                      userDictionary.nameOf(sellerId), source.getStartingPrice(),
+                                      source.getBidIncrement(), 0);
+        auction.setSellerId(sellerId);
+        auction.setStartTime(source.getStartTime());
+        auction.setEndTime(source.getEndTime());
+        auction.setEndTimeMillis(source.getEndTimeMillis());
+        long firstBidId = bidIdGenerator.getAndAdd((long) bidIdStride * bids.size());
+        
+        long seq = 0;
+        synchronized (auction) {
+            addAuction(auction);
+            if (replication != null) {
+                seq = replication.append(new Mutation.AuctionCreated(auction));
+            }
+            BidHistory history = auctionBids.get(auctionId);
+            PriceHistory prices = bids.isEmpty() ? null : priceHistories.computeIfAbsent(auctionId, PriceHistory::new);
+            int bidderId = -1;
+            for (int i = 0; i < bids.size(); i++) {
+                Bid bid = bids.get(i);
+                bidderId = userDictionary.intern(bid.getBidderName());
+                long bidId = firstBidId + (long) i * bidIdStride;
+                long amountMinor = BidHistory.toMinorUnits(bid.getAmount());
+                long timestampMillis = BidHistory.parseTimestamp(bid.getTimestamp());
+                history.append(bidId, timestampMillis, amountMinor, bidderId);
+                prices.record(timestampMillis, amountMinor);
+                if (replication != null) {
+                    seq = replication.append(new Mutation.BidPlaced(bidId, auctionId, userDictionary.nameOf(bidderId),
+                                                                    amountMinor, timestampMillis));
+                }
+                User bidder = userDictionary.userOf(bidderId);
+                if (bidder != null) {
+                    bidder.incrementBidCount();
+                }
+            }
+            if (!bids.isEmpty()) {
+                auctionIndex.priceChanged(auctionId, auction.getCurrentHighestBid(), bids.get(bids.size() - 1).getAmount());
+                auction.setCurrentHighestBid(bids.get(bids.size() - 1).getAmount());
+                auction.setHighestBidder(userDictionary.nameOf(bidderId));
+                auction.setHighestBidderId(bidderId);
+                auction.setTotalBids(bids.size());
+            }
+            if (!source.isActive()) {
+                auction.setActive(false);
+                auctionIndex.remove(auction);
+                auction.setClosedAtMillis(source.getClosedAtMillis());
+                if (replication != null) {
+                    seq = replication.append(new Mutation.AuctionClosed(auctionId, auction.getClosedAtMillis()));
+                }
+            }
+        }
+        return seq;
+    }
+    
+    @Override
+    public List<AuctionRecord> exportAuctions(long afterAuctionId, int limit) throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            // Ids are handed out in order, so walking them finds auctions in id order without sorting;
+            // archived auctions and those of other partitions are simply missing
+            List<AuctionRecord> page = new ArrayList<>(Math.min(limit, 1024));
+            long end = auctionIdGenerator.get();
+            for (long auctionId = afterAuctionId + 1; auctionId < end && page.size() < limit; auctionId++) {
+                Auction auction = auctions.get(auctionId);
+                if (auction == null || sealedAuctions.containsKey(auctionId)) {
+                    continue;
+                }
+                synchronized (auction) {
+                    BidHistory bids = auctionBids.get(auctionId);
+                    page.add(new AuctionRecord(auction, bids != null ? bids.toBids(userDictionary) : new ArrayList<>()));
+                }
+            }
+            return page;
+        } finally {
+            endCall("exportAuctions", call, start);
+        }
+    }
+    
+    // Runs on the clearing thread
+    private void clearRound(Auction auction, SealedBidAuction sealed, boolean finalRound) {
+        long start = System.nanoTime();
+        try {
+            ClearingResult result = sealed.clear(finalRound, userDictionary);
+            if (result == null) {
+                return; // No bids this round
+            }
+            clearingLatency.recordSince(start);
+            
+            // The auction shows the latest clearing price and top winner
+            List<Bid> winningBids = result.getWinningBids();
+            synchronized (auction) {
+                auction.setTotalBids(auction.getTotalBids() + result.getBidCount());
+                if (!winningBids.isEmpty()) {
+                    if (auction.isActive()) {
+                        auctionIndex.priceChanged(auction.getAuctionId(), auction.getCurrentHighestBid(),
+                                                  result.getClearingPrice());
+                    }
+                    auction.setCurrentHighestBid(result.getClearingPrice());
+                    auction.setHighestBidder(winningBids.get(0).getBidderName());
+                    auction.setHighestBidderId(userDictionary.idOf(winningBids.get(0).getBidderName()));
+                }
+            }
+            if (auctionClearedEvent.isLoggable()) {
+                auctionClearedEvent.log("id=" + auction.getAuctionId() + " round=" + result.getRound()
+                                        + " bids=" + result.getBidCount() + " winners=" + winningBids.size()
+                                        + " price=" + result.getClearingPrice() + " final=" + finalRound);
+            }
+        } catch (RuntimeException e) {
+            // Thrown out of a periodic task it would cancel every later round
+            if (clearingFailedEvent.isLoggable()) {
+                clearingFailedEvent.log("id=" + auction.getAuctionId() + " error=\"" + e + "\"");
+            }
+        }
+    }
+    
+    // Runs on the clearing thread when the auction expires or is closed
+    private void finishSealedAuction(Auction auction, SealedBidAuction sealed) {
+        ScheduledFuture<?> task = clearingTasks.remove(auction.getAuctionId());
+        if (task != null) {
+            task.cancel(false);
+        }
+        synchronized (auction) {
+            if (auction.isActive()) {
+                auction.setActive(false);
+                auctionIndex.remove(auction);
+                logExpired(auction, "clearing");
+            }
+        }
+        clearRound(auction, sealed, true);
+        sealed.markFinished();
+        
+        // Settled with the winner of the final round
+        if (replicationClient == null) {
+            synchronized (auction) {
+                settlements.submit(Settlement.of(auction));
+            }
+        }
+    }
+    
+    @Override
+    public String getMetrics() throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            return metrics.toPrometheusText();
+        } finally {
+            endCall("getMetrics", call, start);
+        }
+    }
+    
+    @Override
+    public List<SalesSummary> getArchivedSalesBySellerPerDay() throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            try {
+                return archive.aggregateSalesBySellerPerDay();
+            } catch (IOException e) {
+                throw new RemoteException("Could not read auction archive", e);
+            }
+        } finally {
+            endCall("getArchivedSalesBySellerPerDay", call, start);
+        }
+    }
+    
+    @Override
+    public boolean promoteToPrimary() throws RemoteException {
+        long start = System.nanoTime();
+        FlightEvents.RmiCall call = FlightEvents.beginCall();
+        try {
+            ReplicationClient client;
+            synchronized (this) {
+                client = replicationClient;
+                if (client == null) {
+                    return false; // Already a primary
+                }
+                client.stop();
+                replicationClient = null;
+            }
+            // Id generators already moved past every id applied from the old primary
+            System.out.println("Promoted to primary at seq " + client.getAppliedSeq()
+                               + "; next auction id " + auctionIdGenerator.get() + ", next bid id " + bidIdGenerator.get());
+            if (REPLICATION_PORT > 0) {
+                startReplicationServer();
+            }
+            return true;
+        } finally {
+            endCall("promoteToPrimary", call, start);
+        }
+    }
+    
+    // Replication
+    
+    private void startReplicationServer() throws RemoteException {
+        // Quorum is a majority of primary plus replicas, so the primary needs half the replicas to ack
+        int requiredAcks = "quorum".equals(REPLICATION_ACKS) ? (REPLICATION_REPLICAS + 1) / 2 : 0;
+        try {
+            replicationServer = new ReplicationServer(REPLICATION_PORT, REPLICATION_LOG_CAPACITY, requiredAcks,
+                                                      REPLICATION_ACK_TIMEOUT_MILLIS, this::writeSnapshot, metrics);
+        } catch (IOException e) {
+            throw new RemoteException("Could not listen for replication on port " + REPLICATION_PORT, e);
+        }
+        System.out.println("Replication primary listening on port " + REPLICATION_PORT
+                           + " (acks: " + REPLICATION_ACKS + ")");
+    }
+    
+    private void startBackup() {
+        String[] hostPort = REPLICATION_PRIMARY.split(":");
+        replicationClient = new ReplicationClient(hostPort[0], Integer.parseInt(hostPort[1]), true, new BackupApplier());
+        replicationClient.start();
+        System.out.println("Replication backup of " + REPLICATION_PRIMARY);
+    }
+    
+    private void checkWritable() {
+        ReplicationClient client = replicationClient;
+        if (client != null && client.isDiverged()) {
+            throw new RuntimeException("This server is a backup that diverged from " + REPLICATION_PRIMARY
+                                       + "; promote it to accept writes");
+        }
+        if (client != null) {
+            throw new RuntimeException("This server is a backup of " + REPLICATION_PRIMARY
+                                       + "; send writes to the primary");
+        }
+    }
+    
+    private void awaitReplicated(long seq) throws RemoteException {
+        ReplicationServer replication = replicationServer;
+        if (seq == 0 || replication == null) {
+            return;
+        }
+        try {
+            if (!replication.awaitReplicated(seq)) {
+                throw new RemoteException("Write " + seq + " applied on the primary but not acknowledged by a backup quorum in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for replication", e);
+        }
+    }
+    
+    private String replicationStatus() {
+        ReplicationClient client = replicationClient;
+        if (client != null) {
+            return "backup, " + client.status();
+        }
+        ReplicationServer replication = replicationServer;
+        return replication != null ? replication.status() : "standalone";
+    }
+    
+    // Emits users, then every live auction with its bids, each auction read under its lock
+    private void writeSnapshot(Consumer<Mutation> sink) {
+        for (String username : userDictionary.registeredNames()) {
+            User user = userDictionary.userOf(username);
+            sink.accept(new Mutation.UserRegistered(user.getUsername(), user.getEmail(), user.isSeller()));
+        }
+        List<Mutation> batch = new ArrayList<>();
+        for (Auction auction : auctions.values()) {
+            long auctionId = auction.getAuctionId();
+            if (sealedAuctions.containsKey(auctionId)) {
+                continue; // Batch-clearing auctions are not replicated
+            }
+            batch.clear();
+            synchronized (auction) {
+                batch.add(new Mutation.AuctionCreated(auction));
+                BidHistory bids = auctionBids.get(auctionId);
+                for (int i = 0; bids != null && i < bids.size(); i++) {
+                    batch.add(new Mutation.BidPlaced(bids.bidIdAt(i), auctionId,
+                                                     userDictionary.nameOf(bids.bidderIdAt(i)),
+                                                     bids.amountAt(i), bids.timestampAt(i)));
+                }
+                if (!auction.isActive()) {
+                    batch.add(new Mutation.AuctionClosed(auctionId, auction.getClosedAtMillis()));
+                }
+            }
+            batch.forEach(sink);
+        }
+    }
+    
+    // Applies the primary's stream on a backup, skipping anything already applied. The stream
+    // only ever comes from one primary epoch; ReplicationClient stops at a restarted primary
+    private class BackupApplier implements MutationListener {
+        
+        @Override
+        public void onUserRegistered(Mutation.UserRegistered mutation) {
+            userDictionary.register(new User(mutation.getUsername(), mutation.getEmail(), mutation.isSeller()));
+        }
+        
+        @Override
+        public void onAuctionCreated(Mutation.AuctionCreated mutation) {
+            long auctionId = mutation.getAuctionId();
+            if (auctions.containsKey(auctionId) || archive.contains(auctionId)) {
+                return;
+            }
+            Auction auction = mutation.toAuction();
+            int sellerId = userDictionary.intern(mutation.getSellerName());
+            auction.setSellerName(userDictionary.nameOf(sellerId));
+            auction.setSellerId(sellerId);
+            addAuction(auction);
+            auctionIdGenerator.accumulateAndGet(auctionId + 1, Math::max);
+        }
+        
+        @Override
+        public void onBidPlaced(Mutation.BidPlaced mutation) {
+            Auction auction = auctions.get(mutation.getAuctionId());
+            if (auction == null) {
+                return;
+            }
+            int bidderId = userDictionary.intern(mutation.getBidderName());
+            synchronized (auction) {
+                BidHistory bids = auctionBids.get(auction.getAuctionId());
+                int size = bids.size();
+                if (size > 0 && bids.bidIdAt(size - 1) >= mutation.getBidId()) {
+                    return;
+                }
+                applyBid(auction, mutation.getBidId(), mutation.getTimestampMillis(),
+                         BidHistory.fromMinorUnits(mutation.getAmountMinor()), bidderId);
+            }
+            bidIdGenerator.accumulateAndGet(mutation.getBidId() + bidIdStride, Math::max);
+            User bidder = userDictionary.userOf(bidderId);
+            if (bidder != null) {
+                bidder.incrementBidCount();
+            }
+        }
+        
+        @Override
+        public void onAuctionClosed(Mutation.AuctionClosed mutation) {
+            Auction auction = auctions.get(mutation.getAuctionId());
+            if (auction == null) {
+                return;
+            }
+            synchronized (auction) {
+                if (!auction.isActive()) {
+                    return;
+                }
+                auction.setActive(false);
+                auctionIndex.remove(auction);
+                auction.setClosedAtMillis(mutation.getClosedAtMillis());
+            }
+            BidRateCounter rate = bidRates.get(auction.getAuctionId());
+            if (rate != null) {
+                hotAuctions.remove(rate);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -22,6 +22,14 @@ public class Bid implements Serializable {
         this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
     
+    public Bid(long bidId, long auctionId, String bidderName, double amount, String timestamp) {
+        this.bidId = bidId;
+        this.auctionId = auctionId;
+        this.bidderName = bidderName;
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+    
     // Getters and setters
     public long getBidId() { return bidId; }
     public void setBidId(long bidId) { this.bidId = bidId; }
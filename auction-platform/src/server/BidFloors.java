@@ -0,0 +1,119 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The WebServer's view of the lowest bid each auction can still accept
+ * Floors come from the read model when one is running and caught up, and
+ * from the auction state placeBidTraced returns with every bid, kept for a
+ * short TTL. An auction's minimum bid only rises and a closed auction never
+ * reopens, so an out of date floor still proves that a lower bid would lose,
+ * as long as the auction id still names the same auction. A restarted
+ * primary reuses ids it had not archived, so every floor is bounded: learned
+ * floors by the TTL, and the read model's by the TTL on its staleness and by
+ * the epoch of the primary it follows, which the service must have answered
+ * a bid with within the TTL. Bids the floors cannot rule out go to
+ * AuctionServiceImpl, which stays the authority. Expiry is not judged here,
+ * as this host's clock may be ahead of the server's in the last seconds of
+ * an auction
+ */
+public class BidFloors {
+    
+    private static final class Floor {
+        final boolean active;
+        final double minimumBid;
+        final long observedNanos;
+        
+        Floor(boolean active, double minimumBid, long observedNanos) {
+            this.active = active;
+            this.minimumBid = minimumBid;
+            this.observedNanos = observedNanos;
+        }
+    }
+    
+    private final Map<Long, Floor> floors = new ConcurrentHashMap<>();
+    
+    // Replication epochs bid responses came back with, and when each was last seen
+    private final Map<Long, Long> liveEpochs = new ConcurrentHashMap<>();
+    
+    private final AuctionReadModel readModel;
+    private final long ttlMillis;
+    private final long ttlNanos;
+    private final int maxAuctions;
+    private final LongAdder rejectedTooLow;
+    private final LongAdder rejectedInactive;
+    
+    // readModel may be null
+    public BidFloors(AuctionReadModel readModel, long ttlMillis, int maxAuctions, MetricsRegistry metrics) {
+        this.readModel = readModel;
+        this.ttlMillis = ttlMillis;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxAuctions = maxAuctions;
+        this.rejectedTooLow = metrics.counter("edge_rejections_total", "Bids rejected without calling the service", "reason", "too_low");
+        this.rejectedInactive = metrics.counter("edge_rejections_total", "Bids rejected without calling the service", "reason", "inactive");
+        metrics.gauge("bid_floors", "Auctions with a known minimum bid", floors::size);
+    }
+    
+    // Null if the bid might win, otherwise the error placeBid would have rejected it with
+    public String rejectionOf(long auctionId, double bidAmount) {
+        boolean active = true;
+        double minimumBid = Double.NEGATIVE_INFINITY;
+        long now = System.nanoTime();
+        
+        Floor floor = floors.get(auctionId);
+        if (floor != null) {
+            if (now - floor.observedNanos > ttlNanos) {
+                floors.remove(auctionId, floor);
+            } else {
+                active = floor.active;
+                minimumBid = floor.minimumBid;
+            }
+        }
+        if (readModel != null && readModel.getStalenessMillis() <= ttlMillis) {
+            // The read model only holds English auctions; sealed-bid ones are not replicated
+            Auction auction = readModel.getAuction(auctionId);
+            if (auction != null && isLive(readModel.epochOf(auctionId), now)) {
+                active &= auction.isActive();
+                minimumBid = Math.max(minimumBid, auction.getCurrentHighestBid() + auction.getBidIncrement());
+            }
+        }
+        
+        if (!active) {
+            rejectedInactive.increment();
+            return AuctionServiceImpl.inactiveMessage(auctionId);
+        }
+        if (bidAmount < minimumBid) {
+            rejectedTooLow.increment();
+            return AuctionServiceImpl.tooLowMessage(bidAmount, minimumBid);
+        }
+        return null;
+    }
+    
+    // Whether the service answered with this epoch within the TTL, i.e. the read model follows the current primary
+    private boolean isLive(long epoch, long now) {
+        Long seen = liveEpochs.get(epoch);
+        return seen != null && now - seen <= ttlNanos;
+    }
+    
+    // Records the auction state a forwarded bid came back with
+    public void observe(long auctionId, TracedBid bid) {
+        long now = System.nanoTime();
+        if (bid.getEpoch() != 0 && liveEpochs.put(bid.getEpoch(), now) == null) {
+            // A new epoch: one per partition primary, plus any that restarted
+            liveEpochs.values().removeIf(seen -> now - seen > ttlNanos);
+        }
+        if (!bid.isAuctionStateKnown()) {
+            return;
+        }
+        if (floors.size() >= maxAuctions && !floors.containsKey(auctionId)) {
+            floors.values().removeIf(floor -> now - floor.observedNanos > ttlNanos);
+            if (floors.size() >= maxAuctions) {
+                return;
+            }
+        }
+        floors.put(auctionId, new Floor(bid.isAuctionActive(), bid.getMinimumNextBid(), now));
+    }
+}
\ No newline at end of file
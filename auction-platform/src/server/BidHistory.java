@@ -0,0 +1,159 @@
+package server;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only columnar bid history for a single auction
+ * Bids are kept as primitive columns that grow in fixed-size chunks and are
+ * only materialized into Bid objects when they leave the service
+ */
+public class BidHistory {
+    
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    // Most auctions only see a handful of bids, so the first chunk starts small
+    private static final int INITIAL_CAPACITY = 4;
+    
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private final long auctionId;
+    
+    // Columns, indexed by [chunk][offset]
+    private long[][] bidIds = new long[1][INITIAL_CAPACITY];
+    private long[][] timestamps = new long[1][INITIAL_CAPACITY];
+    private long[][] amounts = new long[1][INITIAL_CAPACITY];
+    private int[][] bidderIds = new int[1][INITIAL_CAPACITY];
+    
+    private int size = 0;
+    
+    public BidHistory(long auctionId) {
+        this.auctionId = auctionId;
+    }
+    
+    public long getAuctionId() { return auctionId; }
+    
+    public synchronized int size() { return size; }
+    
+    public synchronized void append(long bidId, long timestampMillis, long amountMinor, int bidderId) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+        
+        if (chunk == bidIds.length) {
+            addChunk();
+        } else if (offset == bidIds[chunk].length) {
+            growFirstChunk();
+        }
+        
+        bidIds[chunk][offset] = bidId;
+        timestamps[chunk][offset] = timestampMillis;
+        amounts[chunk][offset] = amountMinor;
+        bidderIds[chunk][offset] = bidderId;
+        size++;
+    }
+    
+    // Materializes every bid in insertion order
+    public synchronized List<Bid> toBids(UserDictionary dictionary) {
+        List<Bid> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(materialize(i, dictionary));
+        }
+        return result;
+    }
+    
+    // Materializes up to limit bids placed after afterBidId, oldest first; bid ids grow with
+    // each append, so the first one is found by binary search over the id column
+    public synchronized List<Bid> bidsAfter(long afterBidId, int limit, UserDictionary dictionary) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bidIds[mid >>> CHUNK_SHIFT][mid & CHUNK_MASK] <= afterBidId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = (int) Math.min(size, (long) low + Math.max(limit, 0));
+        List<Bid> result = new ArrayList<>(end - low);
+        for (int i = low; i < end; i++) {
+            result.add(materialize(i, dictionary));
+        }
+        return result;
+    }
+    
+    // Materializes the most recent bid, which is also the highest one
+    public synchronized Bid last(UserDictionary dictionary) {
+        return size > 0 ? materialize(size - 1, dictionary) : null;
+    }
+    
+    // Appends the bids placed by the given bidder to the output list
+    public synchronized void collectByBidder(int bidderId, UserDictionary dictionary, List<Bid> out) {
+        for (int i = 0; i < size; i++) {
+            if (bidderIds[i >>> CHUNK_SHIFT][i & CHUNK_MASK] == bidderId) {
+                out.add(materialize(i, dictionary));
+            }
+        }
+    }
+    
+    // Column accessors used when the history is written to the archive
+    public synchronized long bidIdAt(int index) { return bidIds[index >>> CHUNK_SHIFT][index & CHUNK_MASK]; }
+    public synchronized long timestampAt(int index) { return timestamps[index >>> CHUNK_SHIFT][index & CHUNK_MASK]; }
+    public synchronized long amountAt(int index) { return amounts[index >>> CHUNK_SHIFT][index & CHUNK_MASK]; }
+    public synchronized int bidderIdAt(int index) { return bidderIds[index >>> CHUNK_SHIFT][index & CHUNK_MASK]; }
+    
+    private Bid materialize(int index, UserDictionary dictionary) {
+        int chunk = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+        return new Bid(bidIds[chunk][offset], auctionId,
+                       dictionary.nameOf(bidderIds[chunk][offset]),
+                       fromMinorUnits(amounts[chunk][offset]),
+                       formatTimestamp(timestamps[chunk][offset]));
+    }
+    
+    private void growFirstChunk() {
+        int capacity = Math.min(bidIds[0].length * 2, CHUNK_SIZE);
+        bidIds[0] = Arrays.copyOf(bidIds[0], capacity);
+        timestamps[0] = Arrays.copyOf(timestamps[0], capacity);
+        amounts[0] = Arrays.copyOf(amounts[0], capacity);
+        bidderIds[0] = Arrays.copyOf(bidderIds[0], capacity);
+    }
+    
+    private void addChunk() {
+        int chunks = bidIds.length + 1;
+        bidIds = Arrays.copyOf(bidIds, chunks);
+        timestamps = Arrays.copyOf(timestamps, chunks);
+        amounts = Arrays.copyOf(amounts, chunks);
+        bidderIds = Arrays.copyOf(bidderIds, chunks);
+        
+        bidIds[chunks - 1] = new long[CHUNK_SIZE];
+        timestamps[chunks - 1] = new long[CHUNK_SIZE];
+        amounts[chunks - 1] = new long[CHUNK_SIZE];
+        bidderIds[chunks - 1] = new int[CHUNK_SIZE];
+    }
+    
+    // Amounts are stored in minor currency units (cents)
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * 100.0);
+    }
+    
+    public static double fromMinorUnits(long amountMinor) {
+        return amountMinor / 100.0;
+    }
+    
+    public static String formatTimestamp(long timestampMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault())
+                            .format(TIMESTAMP_FORMAT);
+    }
+    
+    public static long parseTimestamp(String timestamp) {
+        return LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sliding-window bid counter for one auction
+ * The window is a ring of fixed-width buckets. Each slot packs the bucket
+ * number it counts for with its count, so recording a bid is one CAS on one
+ * slot and takes no lock; reading the rate sums the slots still in the window
+ */
+public class BidRateCounter {
+    
+    public static final int BUCKETS = 12;
+    public static final long BUCKET_MILLIS = 5000;
+    public static final long WINDOW_MILLIS = BUCKETS * BUCKET_MILLIS;
+    
+    private final long auctionId;
+    
+    // Bucket number in the high 32 bits, bids in that bucket in the low 32
+    private final AtomicLongArray slots = new AtomicLongArray(BUCKETS);
+    
+    // Set while the counter waits in its ranking's queue of counters with new bids
+    final AtomicBoolean queued = new AtomicBoolean();
+    
+    // Set once the auction has left its ranking, so a queued counter is not ranked again
+    volatile boolean removed;
+    
+    // Position in the hot auction heap, -1 when not ranked; guarded by the owning ranking
+    int heapIndex = -1;
+    
+    // Bids in window when the heap last saw this counter
+    int rankedCount;
+    
+    public BidRateCounter(long auctionId) {
+        this.auctionId = auctionId;
+    }
+    
+    public long getAuctionId() { return auctionId; }
+    
+    // Safe to call concurrently. A slot already reused for a later bucket keeps counting
+    // for it, so an out-of-order timestamp is never lost
+    void record(long nowMillis) {
+        long bucket = nowMillis / BUCKET_MILLIS;
+        int slot = (int) (bucket % BUCKETS);
+        while (true) {
+            long current = slots.get(slot);
+            long next = (current >>> 32) >= bucket ? current + 1 : bucket << 32 | 1;
+            if (slots.compareAndSet(slot, current, next)) {
+                return;
+            }
+        }
+    }
+    
+    // Number of bids inside the window ending now
+    int count(long nowMillis) {
+        long bucket = nowMillis / BUCKET_MILLIS;
+        int total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = slots.get(i);
+            if (bucket - (value >>> 32) < BUCKETS) {
+                total += (int) value;
+            }
+        }
+        return total;
+    }
+    
+    public static double toBidsPerMinute(int count) {
+        return count * 60000.0 / WINDOW_MILLIS;
+    }
+}
\ No newline at end of file
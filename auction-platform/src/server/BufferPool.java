@@ -0,0 +1,46 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of equally sized direct buffers
+ * Direct buffers are expensive to allocate and free, so released buffers
+ * are kept for reuse up to a fixed number; beyond that they are left to
+ * the garbage collector. Acquiring never blocks
+ */
+public class BufferPool {
+    
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> free;
+    private final LongAdder allocated = new LongAdder();
+    
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+    
+    public int getBufferSize() { return bufferSize; }
+    
+    // A cleared buffer, from the pool when one is free
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated.increment();
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+    
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.offer(buffer);
+    }
+    
+    public int pooledCount() { return free.size(); }
+    
+    // Buffers allocated because the pool was empty
+    public long allocatedCount() { return allocated.sum(); }
+}
\ No newline at end of file
@@ -0,0 +1,544 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * File formats for bulk import and export of auctions with their bids
+ * NDJSON holds one auction per line, with its bids nested in a "bids"
+ * array. CSV has a header row, then a row per auction followed by a row
+ * per bid of that auction; both kinds share the header, and a bid row only
+ * fills auctionId and the bid columns. Readers and writers handle one
+ * auction at a time, so memory is bounded by the largest auction, not the
+ * file
+ */
+public enum BulkFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+    
+    private static final String[] CSV_COLUMNS = {
+        "record", "auctionId", "itemName", "description", "sellerName", "startingPrice", "bidIncrement",
+        "startTime", "endTime", "isActive", "closedAt", "bidId", "bidderName", "amount", "timestamp"
+    };
+    
+    // Returns null at the end of the input
+    public interface RecordReader {
+        AuctionRecord next() throws IOException;
+    }
+    
+    public interface RecordWriter {
+        void write(AuctionRecord record) throws IOException;
+    }
+    
+    private final String contentType;
+    
+    BulkFormat(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public String getContentType() { return contentType; }
+    
+    // Accepts a format name or a file name with a .ndjson, .jsonl or .csv extension; null means NDJSON
+    public static BulkFormat fromName(String name) {
+        if (name == null) {
+            return NDJSON;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.equals("csv") || lower.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lower.equals("ndjson") || lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown bulk format '" + name + "', expected ndjson or csv");
+    }
+    
+    public RecordReader reader(Reader in) {
+        BufferedReader buffered = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        return this == CSV ? new CsvReader(buffered) : new NdjsonReader(buffered);
+    }
+    
+    // The CSV writer starts with the header row
+    public RecordWriter writer(Writer out) throws IOException {
+        if (this == CSV) {
+            StringBuilder header = new StringBuilder();
+            for (String column : CSV_COLUMNS) {
+                header.append(header.length() == 0 ? "" : ",").append(column);
+            }
+            out.write(header.append('\n').toString());
+            return record -> writeCsv(out, record);
+        }
+        return record -> writeNdjson(out, record);
+    }
+    
+    private static Auction toAuction(long auctionId, String itemName, String description, String sellerName,
+                                     double startingPrice, double bidIncrement, String startTime, String endTime,
+                                     boolean active, String closedAt) {
+        if (sellerName == null || sellerName.isEmpty()) {
+            throw new IllegalArgumentException("auction " + auctionId + " has no sellerName");
+        }
+        Auction auction = new Auction(auctionId, itemName, description, sellerName, startingPrice, bidIncrement, 0);
+        auction.setStartTime(startTime);
+        auction.setEndTime(endTime);
+        auction.setEndTimeMillis(BidHistory.parseTimestamp(endTime));
+        if (!active) {
+            auction.setActive(false);
+            auction.setClosedAtMillis(closedAt == null || closedAt.isEmpty()
+                ? auction.getEndTimeMillis() : BidHistory.parseTimestamp(closedAt));
+        }
+        return auction;
+    }
+    
+    private static String closedAt(Auction auction) {
+        return auction.isActive() ? "" : BidHistory.formatTimestamp(auction.getClosedAtMillis());
+    }
+    
+    // NDJSON
+    
+    private static void writeNdjson(Writer out, AuctionRecord record) throws IOException {
+        Auction a = record.getAuction();
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"auctionId\":").append(a.getAuctionId());
+        appendJsonString(line.append(",\"itemName\":"), a.getItemName());
+        appendJsonString(line.append(",\"description\":"), a.getDescription());
+        appendJsonString(line.append(",\"sellerName\":"), a.getSellerName());
+        line.append(",\"startingPrice\":").append(a.getStartingPrice())
+            .append(",\"bidIncrement\":").append(a.getBidIncrement());
+        appendJsonString(line.append(",\"startTime\":"), a.getStartTime());
+        appendJsonString(line.append(",\"endTime\":"), a.getEndTime());
+        line.append(",\"isActive\":").append(a.isActive());
+        if (!a.isActive()) {
+            appendJsonString(line.append(",\"closedAt\":"), closedAt(a));
+        }
+        line.append(",\"bids\":[");
+        List<Bid> bids = record.getBids();
+        for (int i = 0; i < bids.size(); i++) {
+            Bid b = bids.get(i);
+            line.append(i > 0 ? ",{" : "{").append("\"bidId\":").append(b.getBidId());
+            appendJsonString(line.append(",\"bidderName\":"), b.getBidderName());
+            line.append(",\"amount\":").append(b.getAmount());
+            appendJsonString(line.append(",\"timestamp\":"), b.getTimestamp());
+            line.append('}');
+        }
+        out.write(line.append("]}\n").toString());
+    }
+    
+    private static void appendJsonString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+    
+    private static final class NdjsonReader implements RecordReader {
+        private final BufferedReader in;
+        private long lineNumber;
+        
+        NdjsonReader(BufferedReader in) {
+            this.in = in;
+        }
+        
+        @Override
+        public AuctionRecord next() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            
+            try {
+                JsonLine json = new JsonLine(line);
+                Map<String, Object> fields = json.object();
+                json.end();
+                long auctionId = longValue(fields, "auctionId");
+                Auction auction = toAuction(auctionId, text(fields, "itemName"), text(fields, "description"),
+                                            text(fields, "sellerName"), doubleValue(fields, "startingPrice"),
+                                            doubleValue(fields, "bidIncrement"), text(fields, "startTime"),
+                                            text(fields, "endTime"), !Boolean.FALSE.equals(fields.get("isActive")),
+                                            text(fields, "closedAt"));
+                List<Bid> bids = new ArrayList<>();
+                Object bidList = fields.get("bids");
+                if (bidList instanceof List) {
+                    for (Object bid : (List<?>) bidList) {
+                        if (!(bid instanceof Map)) {
+                            throw new IllegalArgumentException("bids must be objects");
+                        }
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> bidFields = (Map<String, Object>) bid;
+                        bids.add(new Bid(longValue(bidFields, "bidId"), auctionId, text(bidFields, "bidderName"),
+                                         doubleValue(bidFields, "amount"), text(bidFields, "timestamp")));
+                    }
+                } else if (bidList != null) {
+                    throw new IllegalArgumentException("bids must be an array");
+                }
+                return new AuctionRecord(auction, bids);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        
+        private static String text(Map<String, Object> fields, String name) {
+            Object value = fields.get(name);
+            return value != null ? value.toString() : null;
+        }
+        
+        private static long longValue(Map<String, Object> fields, String name) {
+            Object value = fields.get(name);
+            return value != null ? Long.parseLong(value.toString()) : 0;
+        }
+        
+        private static double doubleValue(Map<String, Object> fields, String name) {
+            Object value = fields.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("missing " + name);
+            }
+            return Double.parseDouble(value.toString());
+        }
+    }
+    
+    // Parser for one JSON line; numbers are kept as their text
+    private static final class JsonLine {
+        private final String text;
+        private int pos;
+        
+        JsonLine(String text) {
+            this.text = text;
+        }
+        
+        void end() {
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw new IllegalArgumentException("unexpected '" + text.charAt(pos) + "' after the object");
+            }
+        }
+        
+        Object value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("unexpected end of line");
+            }
+            switch (text.charAt(pos)) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return number();
+            }
+        }
+        
+        Map<String, Object> object() {
+            expect('{');
+            Map<String, Object> fields = new HashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                fields.put(name, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return fields;
+                }
+            }
+        }
+        
+        private List<Object> array() {
+            expect('[');
+            List<Object> values = new ArrayList<>();
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return values;
+            }
+            while (true) {
+                values.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return values;
+                }
+            }
+        }
+        
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("truncated \\u escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+        
+        private String number() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("unexpected '" + text.charAt(pos) + "' at column " + (pos + 1));
+            }
+            return text.substring(start, pos);
+        }
+        
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, pos)) {
+                throw new IllegalArgumentException("unexpected token at column " + (pos + 1));
+            }
+            pos += word.length();
+            return value;
+        }
+        
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+        
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("expected '" + c + "' at column " + (pos + 1));
+            }
+            pos++;
+        }
+        
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+    
+    // CSV
+    
+    private static void writeCsv(Writer out, AuctionRecord record) throws IOException {
+        Auction a = record.getAuction();
+        StringBuilder rows = new StringBuilder(256);
+        rows.append("auction,").append(a.getAuctionId()).append(',');
+        appendCsv(rows, a.getItemName()).append(',');
+        appendCsv(rows, a.getDescription()).append(',');
+        appendCsv(rows, a.getSellerName()).append(',');
+        rows.append(a.getStartingPrice()).append(',').append(a.getBidIncrement()).append(',')
+            .append(a.getStartTime()).append(',').append(a.getEndTime()).append(',')
+            .append(a.isActive()).append(',').append(closedAt(a)).append(",,,,\n");
+        for (Bid b : record.getBids()) {
+            rows.append("bid,").append(a.getAuctionId()).append(",,,,,,,,,,").append(b.getBidId()).append(',');
+            appendCsv(rows, b.getBidderName()).append(',');
+            rows.append(b.getAmount()).append(',').append(b.getTimestamp()).append('\n');
+        }
+        out.write(rows.toString());
+    }
+    
+    private static StringBuilder appendCsv(StringBuilder row, String value) {
+        if (value == null) {
+            return row;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? row.append('"').append(value.replace("\"", "\"\"")).append('"') : row.append(value);
+    }
+    
+    private static final class CsvReader implements RecordReader {
+        private final BufferedReader in;
+        private final Map<String, Integer> columns = new LinkedHashMap<>();
+        private long lineNumber;
+        
+        // An auction row read while collecting the bids of the previous auction
+        private List<String> pending;
+        private long pendingLine;
+        
+        CsvReader(BufferedReader in) {
+            this.in = in;
+        }
+        
+        @Override
+        public AuctionRecord next() throws IOException {
+            long recordLine = lineNumber + 1;
+            try {
+                if (columns.isEmpty()) {
+                    readHeader();
+                }
+                List<String> row = pending;
+                recordLine = pendingLine;
+                pending = null;
+                if (row == null) {
+                    row = readRow();
+                    recordLine = lineNumber;
+                    if (row == null) {
+                        return null;
+                    }
+                }
+                if (!"auction".equals(field(row, "record"))) {
+                    throw new IllegalArgumentException("expected an auction row, found '" + field(row, "record") + "'");
+                }
+                long auctionId = Long.parseLong(field(row, "auctionId"));
+                Auction auction = toAuction(auctionId, field(row, "itemName"), field(row, "description"),
+                                            field(row, "sellerName"), Double.parseDouble(field(row, "startingPrice")),
+                                            Double.parseDouble(field(row, "bidIncrement")), field(row, "startTime"),
+                                            field(row, "endTime"), !"false".equalsIgnoreCase(field(row, "isActive")),
+                                            field(row, "closedAt"));
+                
+                List<Bid> bids = new ArrayList<>();
+                while ((row = readRow()) != null) {
+                    recordLine = lineNumber;
+                    String kind = field(row, "record");
+                    if ("auction".equals(kind)) {
+                        pending = row;
+                        pendingLine = lineNumber;
+                        break;
+                    }
+                    if (!"bid".equals(kind)) {
+                        throw new IllegalArgumentException("unknown record type '" + kind + "'");
+                    }
+                    if (Long.parseLong(field(row, "auctionId")) != auctionId) {
+                        throw new IllegalArgumentException("bid row for auction " + field(row, "auctionId")
+                                                           + " does not follow its auction row");
+                    }
+                    bids.add(new Bid(Long.parseLong(field(row, "bidId")), auctionId, field(row, "bidderName"),
+                                     Double.parseDouble(field(row, "amount")), field(row, "timestamp")));
+                }
+                return new AuctionRecord(auction, bids);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + recordLine + ": " + e.getMessage(), e);
+            }
+        }
+        
+        private void readHeader() throws IOException {
+            List<String> header = readRow();
+            if (header == null) {
+                header = new ArrayList<>();
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim(), i);
+            }
+            for (String column : CSV_COLUMNS) {
+                if (!columns.containsKey(column) && !column.equals("closedAt")) {
+                    throw new IllegalArgumentException("header is missing column '" + column + "'");
+                }
+            }
+        }
+        
+        private String field(List<String> row, String column) {
+            Integer index = columns.get(column);
+            return index != null && index < row.size() ? row.get(index) : "";
+        }
+        
+        // Fields of the next non-blank row; quoted fields may span lines
+        private List<String> readRow() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isEmpty());
+            
+            List<String> fields = new ArrayList<>(CSV_COLUMNS.length);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        fields.add(field.toString());
+                        return fields;
+                    }
+                    line = in.readLine();
+                    lineNumber++;
+                    if (line == null) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams auctions between a bulk file format and an AuctionService
+ * Records travel in batches of auction.bulk.batchSize, one remote call per
+ * batch, so a transfer holds a single batch in memory however large the
+ * file is. Shared by the WebServer endpoints and the console client
+ */
+public final class BulkTransfer {
+    
+    public static final int BATCH_SIZE = Integer.getInteger("auction.bulk.batchSize", 1000);
+    
+    private BulkTransfer() {
+    }
+    
+    // Batches imported before a failure stay imported; the exception says how many auctions that was
+    public static long importRecords(BulkFormat.RecordReader reader, AuctionService service) throws IOException {
+        List<AuctionRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long imported = 0;
+        try {
+            AuctionRecord record;
+            while ((record = reader.next()) != null) {
+                batch.add(record);
+                if (batch.size() == BATCH_SIZE) {
+                    imported += service.importAuctions(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                imported += service.importAuctions(batch);
+            }
+            return imported;
+        } catch (RuntimeException e) {
+            throw new RuntimeException(e.getMessage() + " (" + imported + " auctions imported before this)", e);
+        }
+    }
+    
+    // Pages through the service's auctions in id order
+    public static long exportRecords(AuctionService service, BulkFormat.RecordWriter writer) throws IOException {
+        long exported = 0;
+        long afterAuctionId = 0;
+        while (true) {
+            List<AuctionRecord> page = service.exportAuctions(afterAuctionId, BATCH_SIZE);
+            for (AuctionRecord record : page) {
+                writer.write(record);
+            }
+            exported += page.size();
+            if (page.size() < BATCH_SIZE) {
+                return exported;
+            }
+            afterAuctionId = page.get(page.size() - 1).getAuction().getAuctionId();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package server;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Outcome of one clearing round of a batch-clearing auction
+public class ClearingResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private long auctionId;
+    private int round;
+    private String clearedAt;
+    private PricingRule pricingRule;
+    private int bidCount;
+    private double clearingPrice;
+    private List<Bid> winningBids;
+    
+    public ClearingResult(long auctionId, int round, String clearedAt, PricingRule pricingRule,
+                          int bidCount, double clearingPrice, List<Bid> winningBids) {
+        this.auctionId = auctionId;
+        this.round = round;
+        this.clearedAt = clearedAt;
+        this.pricingRule = pricingRule;
+        this.bidCount = bidCount;
+        this.clearingPrice = clearingPrice;
+        this.winningBids = winningBids;
+    }
+    
+    // Getters and setters
+    public long getAuctionId() { return auctionId; }
+    public void setAuctionId(long auctionId) { this.auctionId = auctionId; }
+    
+    public int getRound() { return round; }
+    public void setRound(int round) { this.round = round; }
+    
+    public String getClearedAt() { return clearedAt; }
+    public void setClearedAt(String clearedAt) { this.clearedAt = clearedAt; }
+    
+    public PricingRule getPricingRule() { return pricingRule; }
+    public void setPricingRule(PricingRule pricingRule) { this.pricingRule = pricingRule; }
+    
+    // Bids received in the round, including those under the reserve
+    public int getBidCount() { return bidCount; }
+    public void setBidCount(int bidCount) { this.bidCount = bidCount; }
+    
+    // Price every winner pays; the lowest winning bid under FIRST_PRICE
+    public double getClearingPrice() { return clearingPrice; }
+    public void setClearingPrice(double clearingPrice) { this.clearingPrice = clearingPrice; }
+    
+    // Highest first, at most one per unit
+    public List<Bid> getWinningBids() { return winningBids; }
+    public void setWinningBids(List<Bid> winningBids) { this.winningBids = winningBids; }
+    
+    @Override
+    public String toString() {
+        return String.format("ClearingResult{auction=%d, round=%d, rule=%s, bids=%d, winners=%d, price=%.2f}",
+                           auctionId, round, pricingRule, bidCount, winningBids.size(), clearingPrice);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consistent hash ring that assigns auction ids to partition nodes
+ * Each node is placed on the ring at many virtual points derived from its
+ * name, and an id belongs to the first point at or after the id's hash.
+ * The ring depends only on the node names, so every server and router
+ * built from the same list agrees on ownership, and adding a node only
+ * moves the ids that land on its new points
+ */
+public class ConsistentHashRing {
+    
+    private static final int VIRTUAL_NODES = 160;
+    
+    private final List<String> nodes;
+    
+    // Ring points sorted by hash, with the owning node index for each
+    private final long[] points;
+    private final int[] owners;
+    
+    public ConsistentHashRing(List<String> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        
+        long[][] entries = new long[nodes.size() * VIRTUAL_NODES][];
+        for (int node = 0; node < nodes.size(); node++) {
+            long seed = nodes.get(node).hashCode();
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                entries[node * VIRTUAL_NODES + v] = new long[] {mix(seed * 31 + v), node};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[entries.length];
+        this.owners = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+    
+    // Splits a comma-separated node list such as the auction.partition.nodes property
+    public static ConsistentHashRing parse(String nodeList) {
+        List<String> nodes = new ArrayList<>();
+        for (String node : nodeList.split(",")) {
+            if (!node.trim().isEmpty()) {
+                nodes.add(node.trim());
+            }
+        }
+        return new ConsistentHashRing(nodes);
+    }
+    
+    public List<String> getNodes() { return nodes; }
+    
+    public int size() { return nodes.size(); }
+    
+    public int indexOf(String node) { return nodes.indexOf(node); }
+    
+    // Index of the node that owns an auction id
+    public int ownerOf(long auctionId) {
+        int i = Arrays.binarySearch(points, mix(auctionId));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+    
+    // 64-bit finalizer from MurmurHash3, spreads sequential ids and names evenly
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93e49a6e63bL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
\ No newline at end of file
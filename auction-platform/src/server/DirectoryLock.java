@@ -0,0 +1,62 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exclusive lock on a data directory for as long as one service writes to it
+ * Two servers given the same archive or settlement directory would append to
+ * the same files, and the settlement journal's recovery would replace the file
+ * the other one has open. The lock is an OS lock on a .lock file in the
+ * directory, so it also goes away when its process dies
+ */
+public final class DirectoryLock implements Closeable {
+    
+    private static final String LOCK_FILE = ".lock";
+    
+    private final FileChannel channel;
+    private final FileLock lock;
+    
+    private DirectoryLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+    
+    // Fails at once, rather than waiting, if another service already holds the directory
+    public static DirectoryLock acquire(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                                               StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            throw new IOException(directory.toAbsolutePath() + " is already in use by another service in this process");
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException(directory.toAbsolutePath() + " is in use by another process;"
+                                  + " give each server its own directory");
+        }
+        return new DirectoryLock(channel, lock);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
\ No newline at end of file
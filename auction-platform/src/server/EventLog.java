@@ -0,0 +1,185 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured event log
+ * Request threads check the level and sampling rate, build the message and
+ * hand it to a bounded lock-free queue. A single background thread adds
+ * the timestamp and does the console or file I/O. When the queue is full
+ * the event is dropped and counted, so logging never blocks a request
+ */
+public class EventLog {
+    
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+    
+    private static final DateTimeFormatter TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    
+    // Preformatted event waiting for the writer
+    private static class Entry {
+        final long timeMillis;
+        final Level level;
+        final String type;
+        final String message;
+        
+        Entry(long timeMillis, Level level, String type, String message) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.type = type;
+            this.message = message;
+        }
+    }
+    
+    private final Level threshold;
+    private final int capacity;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Writer out;
+    private final boolean closeOut;
+    private final Thread writer;
+    private volatile boolean running = true;
+    
+    private final LongAdder written;
+    private final LongAdder dropped;
+    private final LongAdder sampledOut;
+    
+    // One kind of event with its own level and sampling rate, looked up once and kept in a field
+    public class Event {
+        private final String type;
+        private final Level level;
+        private final int sampleEvery;
+        
+        Event(String type, Level level, int sampleEvery) {
+            this.type = type;
+            this.level = level;
+            this.sampleEvery = sampleEvery;
+        }
+        
+        // Checked before building the message so filtered events cost nothing
+        public boolean isLoggable() {
+            if (level.compareTo(threshold) < 0) {
+                return false;
+            }
+            if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+                sampledOut.increment();
+                return false;
+            }
+            return true;
+        }
+        
+        public void log(String message) {
+            enqueue(new Entry(System.currentTimeMillis(), level, type, message));
+        }
+    }
+    
+    // closeOut is false when out writes to System.out, which must stay open after close()
+    public EventLog(Level threshold, int capacity, Writer out, boolean closeOut, MetricsRegistry metrics) {
+        this.threshold = threshold;
+        this.capacity = capacity;
+        this.out = out;
+        this.closeOut = closeOut;
+        this.written = metrics.counter("log_events_total", "Log events by outcome", "result", "written");
+        this.dropped = metrics.counter("log_events_total", "Log events by outcome", "result", "dropped");
+        this.sampledOut = metrics.counter("log_events_total", "Log events by outcome", "result", "sampled_out");
+        metrics.gauge("log_queue_depth", "Log events waiting for the writer", queued::get);
+        
+        this.writer = new Thread(this::drain, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    // Configured with auction.log.level, auction.log.queueCapacity and auction.log.file (default stdout)
+    public static EventLog fromSystemProperties(MetricsRegistry metrics) throws IOException {
+        Level level = Level.valueOf(System.getProperty("auction.log.level", "INFO").toUpperCase());
+        int capacity = Integer.getInteger("auction.log.queueCapacity", 8192);
+        String file = System.getProperty("auction.log.file");
+        Writer out = file != null ? new FileWriter(file, true) : new OutputStreamWriter(System.out);
+        return new EventLog(level, capacity, new BufferedWriter(out, 64 * 1024), file != null, metrics);
+    }
+    
+    // Logs 1 in auction.log.sample.<type> events of this type, default every event
+    public Event event(String type, Level level) {
+        return new Event(type, level, Math.max(1, Integer.getInteger("auction.log.sample." + type, 1)));
+    }
+    
+    private void enqueue(Entry entry) {
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(entry);
+    }
+    
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        while (running || !queue.isEmpty()) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            queued.decrementAndGet();
+            
+            line.setLength(0);
+            TIMESTAMP.formatTo(Instant.ofEpochMilli(entry.timeMillis), line);
+            line.append(' ').append(entry.level).append(' ').append(entry.type)
+                .append(' ').append(entry.message).append(System.lineSeparator());
+            try {
+                out.append(line);
+                written.increment();
+            } catch (IOException e) {
+                dropped.increment();
+            }
+        }
+        flush();
+    }
+    
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // Nothing useful to do; later writes will fail and be counted as dropped
+        }
+    }
+    
+    // Writes out everything still queued, stops the writer thread and closes the log file
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // Still writing a backlog; closing under it would lose the rest
+            return;
+        }
+        flush();
+        if (closeOut) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Could not close event log: " + e.getMessage());
+            }
+        }
+    }
+}
\ No newline at end of file
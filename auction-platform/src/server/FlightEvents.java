@@ -0,0 +1,187 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * Java Flight Recorder events for bids, expiries, HTTP requests and RMI calls
+ * Events are created and begun on the request path and only filled in and
+ * committed when the recording wants them, so with JFR off or the event
+ * disabled they cost a field store or two. The class thresholds keep a
+ * default recording to outliers; jfr/auction.jfc records more
+ */
+public final class FlightEvents {
+    
+    private FlightEvents() {
+    }
+    
+    // From receiving a bid to accepting or rejecting it
+    @Name("auction.Bid")
+    @Label("Bid")
+    @Category({"Auction Platform", "Bids"})
+    @Description("One placeBid call, from receiving the bid to accepting or rejecting it")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    public static class Bid extends Event {
+        @Label("Auction Id")
+        long auctionId;
+        
+        @Label("Bidder")
+        String bidder;
+        
+        @Label("Amount")
+        double amount;
+        
+        @Label("Accepted")
+        boolean accepted;
+        
+        @Label("Bid Id")
+        long bidId;
+        
+        @Label("Reject Reason")
+        String rejectReason;
+        
+        @Label("Request Id")
+        @Description("Correlation id of the HTTP request that placed the bid, if any")
+        String requestId;
+        
+        @Label("Validation")
+        @Description("Time from receiving the bid until it was validated, including the wait for the auction lock")
+        @Timespan(Timespan.NANOSECONDS)
+        long validation;
+        
+        // Caller holds the auction lock and has just validated the bid
+        void validated(long nanosSinceReceived) {
+            validation = nanosSinceReceived;
+        }
+        
+        void accepted(long bidId) {
+            this.accepted = true;
+            this.bidId = bidId;
+        }
+        
+        void rejected(String reason) {
+            this.rejectReason = reason;
+        }
+        
+        void finish(long auctionId, String bidder, double amount, String requestId) {
+            end();
+            if (shouldCommit()) {
+                this.auctionId = auctionId;
+                this.bidder = bidder;
+                this.amount = amount;
+                this.requestId = requestId;
+                commit();
+            }
+        }
+    }
+    
+    @Name("auction.AuctionExpired")
+    @Label("Auction Expired")
+    @Category({"Auction Platform", "Auctions"})
+    @Description("An auction found past its end time and closed")
+    @StackTrace(false)
+    public static class AuctionExpired extends Event {
+        @Label("Auction Id")
+        long auctionId;
+        
+        @Label("End Time")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        long endTime;
+        
+        @Label("Lateness")
+        @Description("How long after its end time the auction was closed")
+        @Timespan(Timespan.MILLISECONDS)
+        long lateness;
+        
+        @Label("Closed By")
+        @Description("What noticed the expiry: sweep, bid, archiver or clearing")
+        String closedBy;
+        
+        static void record(Auction auction, String closedBy) {
+            AuctionExpired event = new AuctionExpired();
+            if (event.shouldCommit()) {
+                event.auctionId = auction.getAuctionId();
+                event.endTime = auction.getEndTimeMillis();
+                event.lateness = Math.max(0, auction.getClosedAtMillis() - auction.getEndTimeMillis());
+                event.closedBy = closedBy;
+                event.commit();
+            }
+        }
+    }
+    
+    @Name("auction.HttpRequest")
+    @Label("HTTP Request")
+    @Category({"Auction Platform", "Web"})
+    @Description("One request handled by the WebServer")
+    @Threshold("20 ms")
+    @StackTrace(false)
+    public static class HttpRequest extends Event {
+        @Label("Route")
+        String route;
+        
+        @Label("Method")
+        String method;
+        
+        @Label("Path")
+        String path;
+        
+        @Label("Status")
+        int status;
+        
+        void finish(String route, String method, String path, int status) {
+            end();
+            if (shouldCommit()) {
+                this.route = route;
+                this.method = method;
+                this.path = path;
+                this.status = status;
+                commit();
+            }
+        }
+    }
+    
+    @Name("auction.RmiCall")
+    @Label("RMI Call")
+    @Category({"Auction Platform", "RMI"})
+    @Description("One AuctionService method call, as served by AuctionServiceImpl")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    public static class RmiCall extends Event {
+        @Label("Method")
+        String method;
+        
+        void finish(String method) {
+            end();
+            if (shouldCommit()) {
+                this.method = method;
+                commit();
+            }
+        }
+    }
+    
+    static Bid beginBid() {
+        Bid event = new Bid();
+        event.begin();
+        return event;
+    }
+    
+    static HttpRequest beginHttpRequest() {
+        HttpRequest event = new HttpRequest();
+        event.begin();
+        return event;
+    }
+    
+    static RmiCall beginCall() {
+        RmiCall event = new RmiCall();
+        event.begin();
+        return event;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package server;
+
+import java.io.Serializable;
+
+// Auction together with its recent bid velocity, used for the trending view
+public class HotAuction implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private Auction auction;
+    private double bidsPerMinute;
+    
+    public HotAuction(Auction auction, double bidsPerMinute) {
+        this.auction = auction;
+        this.bidsPerMinute = bidsPerMinute;
+    }
+    
+    // Getters and setters
+    public Auction getAuction() { return auction; }
+    public void setAuction(Auction auction) { this.auction = auction; }
+    
+    public double getBidsPerMinute() { return bidsPerMinute; }
+    public void setBidsPerMinute(double bidsPerMinute) { this.bidsPerMinute = bidsPerMinute; }
+    
+    @Override
+    public String toString() {
+        return String.format("HotAuction{id=%d, item='%s', bidsPerMinute=%.1f}",
+                           auction.getAuctionId(), auction.getItemName(), bidsPerMinute);
+    }
+}
\ No newline at end of file
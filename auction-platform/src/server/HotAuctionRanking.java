@@ -0,0 +1,161 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Top-K of auctions by recent bid velocity, maintained off the bid path
+ * A bid only records into its auction's rate counter and, the first time
+ * since the ranking was last read, queues the counter; neither takes a lock.
+ * Reading the ranking refreshes the K ranked scores and restores the K-entry
+ * min-heap in O(K), then offers each queued counter against the coldest
+ * ranked auction in O(log K)
+ */
+public class HotAuctionRanking {
+    
+    private final BidRateCounter[] heap;
+    private int size = 0;
+    
+    // Counters with bids since the last read, each queued at most once
+    private final Queue<BidRateCounter> pending = new ConcurrentLinkedQueue<>();
+    
+    // Auction id and bids in the window, ordered hottest first
+    public static class Entry {
+        private final long auctionId;
+        private final int count;
+        
+        Entry(long auctionId, int count) {
+            this.auctionId = auctionId;
+            this.count = count;
+        }
+        
+        public long getAuctionId() { return auctionId; }
+        public int getCount() { return count; }
+    }
+    
+    public HotAuctionRanking(int capacity) {
+        this.heap = new BidRateCounter[capacity];
+    }
+    
+    // Called on the bid path, concurrently and under the caller's auction lock
+    public void recordBid(BidRateCounter counter, long nowMillis) {
+        counter.record(nowMillis);
+        if (!counter.queued.get() && counter.queued.compareAndSet(false, true)) {
+            pending.add(counter);
+        }
+    }
+    
+    // Brings every ranked score up to nowMillis and restores heap order in O(K), then offers the
+    // queued counters not yet ranked. Each is unqueued before it is counted, so a bid recorded
+    // after the count queues it again
+    private void refresh(long nowMillis) {
+        for (int i = 0; i < size; i++) {
+            heap[i].rankedCount = heap[i].count(nowMillis);
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        BidRateCounter counter;
+        while ((counter = pending.poll()) != null) {
+            counter.queued.set(false);
+            if (counter.heapIndex < 0 && !counter.removed) {
+                offer(counter, counter.count(nowMillis));
+            }
+        }
+    }
+    
+    // Ranks a counter against a heap whose scores are all for the same time as count
+    private void offer(BidRateCounter counter, int count) {
+        if (size < heap.length) {
+            counter.rankedCount = count;
+            counter.heapIndex = size;
+            heap[size++] = counter;
+            siftUp(counter.heapIndex);
+        } else if (count > heap[0].rankedCount) {
+            heap[0].heapIndex = -1;
+            counter.rankedCount = count;
+            counter.heapIndex = 0;
+            heap[0] = counter;
+            siftDown(0);
+        }
+    }
+    
+    // Drops a closed or archived auction from the ranking
+    public synchronized void remove(BidRateCounter counter) {
+        counter.removed = true;
+        // Also refreshed here, so removed counters do not pile up in the queue when nothing reads the ranking
+        if (!pending.isEmpty()) {
+            refresh(System.currentTimeMillis());
+        }
+        int index = counter.heapIndex;
+        if (index < 0) {
+            return;
+        }
+        counter.heapIndex = -1;
+        size--;
+        if (index < size) {
+            heap[index] = heap[size];
+            heap[index].heapIndex = index;
+            siftDown(index);
+            siftUp(index);
+        }
+        heap[size] = null;
+    }
+    
+    // Returns ranked auctions with bids in the current window, hottest first
+    public synchronized List<Entry> top(int limit, long nowMillis) {
+        refresh(nowMillis);
+        
+        Entry[] entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry(heap[i].getAuctionId(), heap[i].rankedCount);
+        }
+        Arrays.sort(entries, (a, b) -> Integer.compare(b.count, a.count));
+        
+        List<Entry> result = new ArrayList<>(Math.min(limit, size));
+        for (Entry entry : entries) {
+            if (result.size() == limit || entry.count == 0) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+    
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].rankedCount <= heap[index].rankedCount) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+    
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left].rankedCount < heap[smallest].rankedCount) smallest = left;
+            if (right < size && heap[right].rankedCount < heap[smallest].rankedCount) smallest = right;
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+    
+    private void swap(int a, int b) {
+        BidRateCounter tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+        heap[a].heapIndex = a;
+        heap[b].heapIndex = b;
+    }
+}
\ No newline at end of file
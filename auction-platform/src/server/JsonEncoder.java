@@ -0,0 +1,171 @@
+package server;
+
+import java.util.List;
+
+/**
+ * JSON encoding of auction data for the HTTP API
+ * Kept separate from WebServer so encoders can be reused and benchmarked
+ * without a running RMI backend
+ */
+public class JsonEncoder {
+    
+    public static String convertAuctionsToJson(List<Auction> auctions) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < auctions.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append("{");
+            appendAuctionFields(json, auctions.get(i));
+            json.append("}");
+        }
+        json.append("]");
+        return json.toString();
+    }
+    
+    public static String convertHotAuctionsToJson(List<HotAuction> hotAuctions) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < hotAuctions.size(); i++) {
+            if (i > 0) json.append(",");
+            HotAuction h = hotAuctions.get(i);
+            json.append("{");
+            appendAuctionFields(json, h.getAuction());
+            json.append(",\"bidsPerMinute\":").append(h.getBidsPerMinute());
+            json.append("}");
+        }
+        json.append("]");
+        return json.toString();
+    }
+    
+    private static void appendAuctionFields(StringBuilder json, Auction a) {
+        json.append("\"auctionId\":").append(a.getAuctionId()).append(",")
+            .append("\"itemName\":\"").append(escapeJson(a.getItemName())).append("\",")
+            .append("\"description\":\"").append(escapeJson(a.getDescription())).append("\",")
+            .append("\"sellerName\":\"").append(escapeJson(a.getSellerName())).append("\",")
+            .append("\"startingPrice\":").append(a.getStartingPrice()).append(",")
+            .append("\"currentHighestBid\":").append(a.getCurrentHighestBid()).append(",")
+            .append("\"highestBidder\":\"").append(escapeJson(a.getHighestBidder())).append("\",")
+            .append("\"bidIncrement\":").append(a.getBidIncrement()).append(",")
+            .append("\"startTime\":\"").append(a.getStartTime()).append("\",")
+            .append("\"endTime\":\"").append(a.getEndTime()).append("\",")
+            .append("\"isActive\":").append(a.isActive()).append(",")
+            .append("\"totalBids\":").append(a.getTotalBids());
+    }
+    
+    public static String convertBidsToJson(List<Bid> bids) {
+        StringBuilder json = new StringBuilder();
+        appendBids(json, bids);
+        return json.toString();
+    }
+    
+    public static String convertClearingResultsToJson(List<ClearingResult> results) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) json.append(",");
+            ClearingResult r = results.get(i);
+            json.append("{")
+                .append("\"auctionId\":").append(r.getAuctionId()).append(",")
+                .append("\"round\":").append(r.getRound()).append(",")
+                .append("\"clearedAt\":\"").append(r.getClearedAt()).append("\",")
+                .append("\"pricingRule\":\"").append(r.getPricingRule()).append("\",")
+                .append("\"bidCount\":").append(r.getBidCount()).append(",")
+                .append("\"clearingPrice\":").append(r.getClearingPrice()).append(",")
+                .append("\"winningBids\":");
+            appendBids(json, r.getWinningBids());
+            json.append("}");
+        }
+        json.append("]");
+        return json.toString();
+    }
+    
+    // Auction page: the auction with its bids, price history (null for sealed-bid auctions) and seller (null if not registered)
+    public static String convertAuctionDetailsToJson(Auction auction, List<Bid> bids, PriceSeries history, User seller) {
+        StringBuilder json = new StringBuilder(512 + bids.size() * 128 + (history != null ? history.size() * 128 : 0));
+        json.append("{\"auction\":{");
+        appendAuctionFields(json, auction);
+        json.append("},\"bids\":");
+        appendBids(json, bids);
+        json.append(",\"history\":");
+        if (history != null) {
+            appendPriceSeries(json, history);
+        } else {
+            json.append("null");
+        }
+        json.append(",\"seller\":");
+        appendUser(json, seller);
+        json.append("}");
+        return json.toString();
+    }
+    
+    // User page: the user with their auctions and bids
+    public static String convertUserProfileToJson(User user, List<Auction> auctions, List<Bid> bids) {
+        StringBuilder json = new StringBuilder("{\"user\":");
+        appendUser(json, user);
+        json.append(",\"auctions\":").append(convertAuctionsToJson(auctions));
+        json.append(",\"bids\":");
+        appendBids(json, bids);
+        json.append("}");
+        return json.toString();
+    }
+    
+    private static void appendUser(StringBuilder json, User u) {
+        if (u == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{")
+            .append("\"username\":\"").append(escapeJson(u.getUsername())).append("\",")
+            .append("\"email\":\"").append(escapeJson(u.getEmail())).append("\",")
+            .append("\"isSeller\":").append(u.isSeller()).append(",")
+            .append("\"totalBids\":").append(u.getTotalBids()).append(",")
+            .append("\"totalAuctions\":").append(u.getTotalAuctions()).append(",")
+            .append("\"auctionsWon\":").append(u.getAuctionsWon()).append(",")
+            .append("\"auctionsSold\":").append(u.getAuctionsSold())
+            .append("}");
+    }
+    
+    public static String convertPriceSeriesToJson(PriceSeries series) {
+        StringBuilder json = new StringBuilder(128 + series.size() * 128);
+        appendPriceSeries(json, series);
+        return json.toString();
+    }
+    
+    private static void appendPriceSeries(StringBuilder json, PriceSeries series) {
+        json.append("{")
+            .append("\"auctionId\":").append(series.getAuctionId()).append(",")
+            .append("\"resolutionSeconds\":").append(series.getResolutionSeconds()).append(",")
+            .append("\"truncated\":").append(series.isTruncated()).append(",")
+            .append("\"buckets\":[");
+        for (int i = 0; i < series.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append("{")
+                .append("\"start\":\"").append(BidHistory.formatTimestamp(series.getBucketStartMillis(i))).append("\",")
+                .append("\"open\":").append(series.getOpen(i)).append(",")
+                .append("\"high\":").append(series.getHigh(i)).append(",")
+                .append("\"low\":").append(series.getLow(i)).append(",")
+                .append("\"close\":").append(series.getClose(i)).append(",")
+                .append("\"bids\":").append(series.getBidCount(i))
+                .append("}");
+        }
+        json.append("]}");
+    }
+    
+    private static void appendBids(StringBuilder json, List<Bid> bids) {
+        json.append("[");
+        for (int i = 0; i < bids.size(); i++) {
+            if (i > 0) json.append(",");
+            Bid b = bids.get(i);
+            json.append("{")
+                .append("\"bidId\":").append(b.getBidId()).append(",")
+                .append("\"auctionId\":").append(b.getAuctionId()).append(",")
+                .append("\"bidderName\":\"").append(escapeJson(b.getBidderName())).append("\",")
+                .append("\"amount\":").append(b.getAmount()).append(",")
+                .append("\"timestamp\":\"").append(b.getTimestamp()).append("\"")
+                .append("}");
+        }
+        json.append("]");
+    }
+    
+    static String escapeJson(String str) {
+        if (str == null) return "";
+        return str.replace("\\\"", "\\\\\"").replace("\\n", "\\\\n").replace("\\r", "\\\\r");
+    }
+}
\ No newline at end of file
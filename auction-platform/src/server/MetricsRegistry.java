@@ -0,0 +1,180 @@
+package server;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of latency histograms, counters and gauges for one process
+ * Metrics are looked up once at startup and kept in fields, so the hot path
+ * only touches the metric itself. The registry renders everything in the
+ * Prometheus text exposition format, with every metric name prefixed by the
+ * registry namespace so several processes can be exported together
+ */
+public class MetricsRegistry {
+    
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    
+    // Keyed by "name{labels}" so output is grouped by metric name
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, String> help = new ConcurrentSkipListMap<>();
+    private final String namespace;
+    
+    public MetricsRegistry(String namespace) {
+        this.namespace = namespace;
+    }
+    
+    public LatencyHistogram histogram(String name, String description, String... labels) {
+        help.putIfAbsent(namespace + "_" + name, description);
+        return histograms.computeIfAbsent(key(name, labels), k -> new LatencyHistogram());
+    }
+    
+    public LongAdder counter(String name, String description, String... labels) {
+        help.putIfAbsent(namespace + "_" + name, description);
+        return counters.computeIfAbsent(key(name, labels), k -> new LongAdder());
+    }
+    
+    // Registers a counter kept elsewhere, e.g. a static one shared by every instance of a class
+    public LongAdder counter(String name, String description, LongAdder counter, String... labels) {
+        help.putIfAbsent(namespace + "_" + name, description);
+        LongAdder existing = counters.putIfAbsent(key(name, labels), counter);
+        return existing != null ? existing : counter;
+    }
+    
+    public void gauge(String name, String description, LongSupplier supplier, String... labels) {
+        help.putIfAbsent(namespace + "_" + name, description);
+        gauges.put(key(name, labels), supplier);
+    }
+    
+    // Registers pool size, active threads, queue depth and completed tasks of an executor
+    public void executorGauges(String executorName, ThreadPoolExecutor executor) {
+        gauge("executor_pool_size", "Threads in the executor", executor::getPoolSize, "executor", executorName);
+        gauge("executor_max_pool_size", "Maximum threads in the executor", executor::getMaximumPoolSize, "executor", executorName);
+        gauge("executor_active_threads", "Threads currently running tasks", executor::getActiveCount, "executor", executorName);
+        gauge("executor_queue_depth", "Tasks waiting for a thread", () -> executor.getQueue().size(), "executor", executorName);
+        gauge("executor_completed_tasks", "Tasks completed by the executor", executor::getCompletedTaskCount, "executor", executorName);
+    }
+    
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        String lastName = null;
+        
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = nameOf(entry.getKey());
+            String labels = labelsOf(entry.getKey());
+            if (!name.equals(lastName)) {
+                appendHeader(out, name, "summary");
+                lastName = name;
+            }
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                out.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",")
+                   .append("quantile=\"").append(quantile).append("\"} ")
+                   .append(seconds(histogram.valueAtQuantile(quantile))).append('\n');
+            }
+            out.append(name).append("_sum").append(braces(labels)).append(' ')
+               .append(seconds(histogram.getTotalNanos())).append('\n');
+            out.append(name).append("_count").append(braces(labels)).append(' ')
+               .append(histogram.getCount()).append('\n');
+        }
+        
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            String name = nameOf(entry.getKey());
+            if (!name.equals(lastName)) {
+                appendHeader(out, name, "counter");
+                lastName = name;
+            }
+            out.append(entry.getKey()).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            String name = nameOf(entry.getKey());
+            if (!name.equals(lastName)) {
+                appendHeader(out, name, "gauge");
+                lastName = name;
+            }
+            out.append(entry.getKey()).append(' ').append(entry.getValue().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+    
+    // Combines the output of several processes with the same metrics, adding label=value to
+    // every sample and keeping each metric's samples together under one header
+    public static String mergeWithLabel(List<String> texts, String label, List<String> values) {
+        Map<String, StringBuilder> families = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String labelPair = label + "=\"" + values.get(i) + "\"";
+            StringBuilder family = null;
+            boolean newFamily = false;
+            for (String line : texts.get(i).split("\n")) {
+                if (line.startsWith("# HELP ")) {
+                    String name = line.substring(7, line.indexOf(' ', 7));
+                    family = families.get(name);
+                    newFamily = family == null;
+                    if (newFamily) {
+                        family = new StringBuilder();
+                        families.put(name, family);
+                        family.append(line).append('\n');
+                    }
+                } else if (line.startsWith("# TYPE ")) {
+                    if (newFamily) {
+                        family.append(line).append('\n');
+                    }
+                } else if (!line.isEmpty() && family != null) {
+                    int brace = line.indexOf('{');
+                    int space = line.indexOf(' ');
+                    if (brace >= 0 && brace < space) {
+                        family.append(line, 0, brace + 1).append(labelPair).append(',').append(line, brace + 1, line.length());
+                    } else {
+                        family.append(line, 0, space).append('{').append(labelPair).append('}').append(line, space, line.length());
+                    }
+                    family.append('\n');
+                }
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        families.values().forEach(out::append);
+        return out.toString();
+    }
+    
+    private void appendHeader(StringBuilder out, String name, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help.getOrDefault(name, name)).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private String key(String name, String... labels) {
+        if (labels.length == 0) {
+            return namespace + "_" + name;
+        }
+        StringBuilder key = new StringBuilder(namespace).append('_').append(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) key.append(',');
+            key.append(labels[i]).append("=\"").append(labels[i + 1]).append('"');
+        }
+        return key.append('}').toString();
+    }
+    
+    private static String nameOf(String key) {
+        int brace = key.indexOf('{');
+        return brace < 0 ? key : key.substring(0, brace);
+    }
+    
+    private static String labelsOf(String key) {
+        int brace = key.indexOf('{');
+        return brace < 0 ? "" : key.substring(brace + 1, key.length() - 1);
+    }
+    
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+    
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
\ No newline at end of file
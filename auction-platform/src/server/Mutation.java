@@ -0,0 +1,242 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One state change of the auction service, in the order the primary applied it
+ * Mutations are streamed to backups and read replicas, which apply them
+ * through a MutationListener. Each carries the primary's sequence number,
+ * or 0 when it is part of a snapshot
+ */
+public abstract class Mutation {
+    
+    static final byte USER_REGISTERED = 1;
+    static final byte AUCTION_CREATED = 2;
+    static final byte BID_PLACED = 3;
+    static final byte AUCTION_CLOSED = 4;
+    
+    long seq;
+    
+    public long getSeq() { return seq; }
+    
+    public abstract void applyTo(MutationListener listener);
+    
+    abstract void writeBody(DataOutputStream out) throws IOException;
+    
+    abstract byte type();
+    
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(type());
+        out.writeLong(seq);
+        writeBody(out);
+    }
+    
+    // Reads the mutation following a type byte already taken from the stream
+    static Mutation readFrom(byte type, DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        Mutation mutation;
+        switch (type) {
+            case USER_REGISTERED:
+                mutation = new UserRegistered(readString(in), readString(in), in.readBoolean());
+                break;
+            case AUCTION_CREATED:
+                mutation = new AuctionCreated(in.readLong(), readString(in), readString(in), readString(in),
+                                              in.readDouble(), in.readDouble(),
+                                              readString(in), readString(in), in.readLong());
+                break;
+            case BID_PLACED:
+                mutation = new BidPlaced(in.readLong(), in.readLong(), readString(in), in.readLong(), in.readLong());
+                break;
+            case AUCTION_CLOSED:
+                mutation = new AuctionClosed(in.readLong(), in.readLong());
+                break;
+            default:
+                throw new IOException("Unknown mutation type " + type);
+        }
+        mutation.seq = seq;
+        return mutation;
+    }
+    
+    // Length-prefixed UTF-8 as in the archive; writeUTF cannot hold strings over 64 KB,
+    // and one that failed to encode would stop the stream for every follower
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    public static class UserRegistered extends Mutation {
+        private final String username;
+        private final String email;
+        private final boolean seller;
+        
+        public UserRegistered(String username, String email, boolean seller) {
+            this.username = username;
+            this.email = email;
+            this.seller = seller;
+        }
+        
+        public String getUsername() { return username; }
+        public String getEmail() { return email; }
+        public boolean isSeller() { return seller; }
+        
+        @Override
+        public void applyTo(MutationListener listener) { listener.onUserRegistered(this); }
+        
+        @Override
+        byte type() { return USER_REGISTERED; }
+        
+        @Override
+        void writeBody(DataOutputStream out) throws IOException {
+            writeString(out, username);
+            writeString(out, email);
+            out.writeBoolean(seller);
+        }
+    }
+    
+    public static class AuctionCreated extends Mutation {
+        private final long auctionId;
+        private final String itemName;
+        private final String description;
+        private final String sellerName;
+        private final double startingPrice;
+        private final double bidIncrement;
+        private final String startTime;
+        private final String endTime;
+        private final long endTimeMillis;
+        
+        public AuctionCreated(long auctionId, String itemName, String description, String sellerName,
+                              double startingPrice, double bidIncrement,
+                              String startTime, String endTime, long endTimeMillis) {
+            this.auctionId = auctionId;
+            this.itemName = itemName;
+            this.description = description;
+            this.sellerName = sellerName;
+            this.startingPrice = startingPrice;
+            this.bidIncrement = bidIncrement;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.endTimeMillis = endTimeMillis;
+        }
+        
+        public AuctionCreated(Auction auction) {
+            this(auction.getAuctionId(), auction.getItemName(), auction.getDescription(), auction.getSellerName(),
+                 auction.getStartingPrice(), auction.getBidIncrement(),
+                 auction.getStartTime(), auction.getEndTime(), auction.getEndTimeMillis());
+        }
+        
+        public long getAuctionId() { return auctionId; }
+        public String getItemName() { return itemName; }
+        public String getDescription() { return description; }
+        public String getSellerName() { return sellerName; }
+        public double getStartingPrice() { return startingPrice; }
+        public double getBidIncrement() { return bidIncrement; }
+        public String getStartTime() { return startTime; }
+        public String getEndTime() { return endTime; }
+        public long getEndTimeMillis() { return endTimeMillis; }
+        
+        // Rebuilds the auction as the primary created it, before any bids
+        public Auction toAuction() {
+            Auction auction = new Auction(auctionId, itemName, description, sellerName,
+                                          startingPrice, bidIncrement, 0);
+            auction.setStartTime(startTime);
+            auction.setEndTime(endTime);
+            auction.setEndTimeMillis(endTimeMillis);
+            return auction;
+        }
+        
+        @Override
+        public void applyTo(MutationListener listener) { listener.onAuctionCreated(this); }
+        
+        @Override
+        byte type() { return AUCTION_CREATED; }
+        
+        @Override
+        void writeBody(DataOutputStream out) throws IOException {
+            out.writeLong(auctionId);
+            writeString(out, itemName);
+            writeString(out, description);
+            writeString(out, sellerName);
+            out.writeDouble(startingPrice);
+            out.writeDouble(bidIncrement);
+            writeString(out, startTime);
+            writeString(out, endTime);
+            out.writeLong(endTimeMillis);
+        }
+    }
+    
+    public static class BidPlaced extends Mutation {
+        private final long bidId;
+        private final long auctionId;
+        private final String bidderName;
+        private final long amountMinor;
+        private final long timestampMillis;
+        
+        public BidPlaced(long bidId, long auctionId, String bidderName, long amountMinor, long timestampMillis) {
+            this.bidId = bidId;
+            this.auctionId = auctionId;
+            this.bidderName = bidderName;
+            this.amountMinor = amountMinor;
+            this.timestampMillis = timestampMillis;
+        }
+        
+        public long getBidId() { return bidId; }
+        public long getAuctionId() { return auctionId; }
+        public String getBidderName() { return bidderName; }
+        public long getAmountMinor() { return amountMinor; }
+        public long getTimestampMillis() { return timestampMillis; }
+        
+        @Override
+        public void applyTo(MutationListener listener) { listener.onBidPlaced(this); }
+        
+        @Override
+        byte type() { return BID_PLACED; }
+        
+        @Override
+        void writeBody(DataOutputStream out) throws IOException {
+            out.writeLong(bidId);
+            out.writeLong(auctionId);
+            writeString(out, bidderName);
+            out.writeLong(amountMinor);
+            out.writeLong(timestampMillis);
+        }
+    }
+    
+    public static class AuctionClosed extends Mutation {
+        private final long auctionId;
+        private final long closedAtMillis;
+        
+        public AuctionClosed(long auctionId, long closedAtMillis) {
+            this.auctionId = auctionId;
+            this.closedAtMillis = closedAtMillis;
+        }
+        
+        public long getAuctionId() { return auctionId; }
+        public long getClosedAtMillis() { return closedAtMillis; }
+        
+        @Override
+        public void applyTo(MutationListener listener) { listener.onAuctionClosed(this); }
+        
+        @Override
+        byte type() { return AUCTION_CLOSED; }
+        
+        @Override
+        void writeBody(DataOutputStream out) throws IOException {
+            out.writeLong(auctionId);
+            out.writeLong(closedAtMillis);
+        }
+    }
+}
\ No newline at end of file
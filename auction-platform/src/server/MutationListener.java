@@ -0,0 +1,25 @@
+package server;
+
+/**
+ * Receives replicated mutations in primary order
+ * Snapshot entries can overlap with the stream that follows them, so
+ * implementations must ignore mutations they have already applied. Ids are
+ * only unique within one primary epoch: a restarted primary can hand out
+ * auction and bid ids again, so an observer drops everything from an
+ * earlier epoch in onEpochChanged before the new primary's snapshot arrives.
+ * Backups are not told; they stop following instead (see ReplicationClient)
+ */
+public interface MutationListener {
+    
+    // The primary an observer follows now has a different epoch than the one applied so far; its snapshot follows
+    default void onEpochChanged(long epoch) {
+    }
+    
+    void onUserRegistered(Mutation.UserRegistered mutation);
+    
+    void onAuctionCreated(Mutation.AuctionCreated mutation);
+    
+    void onBidPlaced(Mutation.BidPlaced mutation);
+    
+    void onAuctionClosed(Mutation.AuctionClosed mutation);
+}
\ No newline at end of file
@@ -0,0 +1,888 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selector-based HTTP/1.1 server that runs the same HttpHandlers as the JDK one
+ * A single thread accepts connections and does every socket read and write,
+ * through direct buffers from a shared pool. Once a request's headers are in,
+ * its handler runs on the executor with an HttpExchange whose request body is
+ * fed by that thread and whose response is written into pooled buffers and
+ * handed back to it, so handlers can block while the selector never does.
+ *
+ * Connections are kept alive unless the client asks otherwise. Pipelined
+ * requests are read ahead but handled one at a time, so responses go out in
+ * request order. Chunked request bodies are not supported
+ */
+public class NioHttpServer {
+    
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = Integer.getInteger("auction.web.nio.pooledBuffers", 1024);
+    
+    // Response buffers a handler may queue before it waits for the socket to catch up
+    private static final int MAX_QUEUED_RESPONSE_BUFFERS = 16;
+    
+    // Request body bytes held for a handler that has not read them yet
+    private static final int MAX_QUEUED_BODY_BYTES = 4 * BUFFER_SIZE;
+    
+    // Reserved in front of every chunk of a chunked response: six hex digits and CRLF
+    private static final int CHUNK_HEADER_BYTES = 8;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    
+    private final InetSocketAddress localAddress;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final BufferPool buffers = new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> connections = new HashSet<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    
+    // Handlers by path prefix, longest prefix first
+    private final Map<String, HttpHandler> contexts = new HashMap<>();
+    private volatile List<String> prefixes = new ArrayList<>();
+    
+    private Executor executor;
+    private Thread selectorThread;
+    private volatile boolean running;
+    
+    public NioHttpServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.localAddress = (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+    
+    public synchronized void createContext(String path, HttpHandler handler) {
+        contexts.put(path, handler);
+        List<String> sorted = new ArrayList<>(contexts.keySet());
+        sorted.sort(Comparator.comparingInt(String::length).reversed());
+        prefixes = sorted;
+    }
+    
+    // Handlers run here; they may block on the request body or on a slow client
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+    
+    public InetSocketAddress getAddress() { return localAddress; }
+    
+    public int getOpenConnections() { return openConnections.get(); }
+    
+    public BufferPool getBufferPool() { return buffers; }
+    
+    public void start() {
+        if (executor == null) {
+            throw new IllegalStateException("An executor is required for the handlers");
+        }
+        running = true;
+        selectorThread = new Thread(this::runSelector, "http-nio-selector");
+        selectorThread.start();
+    }
+    
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            connection.flush();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            System.err.println("NIO HTTP selector failed: " + e.getMessage());
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                connection.close();
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            openConnections.incrementAndGet();
+        }
+    }
+    
+    // Runs a task on the selector thread; connection state is only touched there
+    private void onSelectorThread(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+    
+    private HttpHandler findHandler(String path) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return contexts.get(prefix);
+            }
+        }
+        return exchange -> {
+            byte[] body = "No context found for request".getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(404, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        };
+    }
+    
+    private static String reasonPhrase(int code) {
+        switch (code) {
+            case 100: return "Continue";
+            case 200: return "OK";
+            case 204: return "No Content";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            default: return "";
+        }
+    }
+    
+    // One client socket; fields without a note are only used on the selector thread
+    private final class Connection {
+        private final SocketChannel channel;
+        private final InetSocketAddress remoteAddress;
+        private SelectionKey key;
+        
+        // Bytes received but not consumed yet; null when there are none
+        private ByteBuffer readBuffer;
+        private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+        
+        // Taken by handler threads for each response buffer, returned once it is written
+        private final Semaphore writeCredits = new Semaphore(MAX_QUEUED_RESPONSE_BUFFERS);
+        
+        // The request being handled, and the part of its body not received yet
+        private Exchange exchange;
+        private long bodyRemaining;
+        private boolean bodyBlocked;
+        private boolean responseDone;
+        
+        // Set once the last response is queued, the connection then closes when it is written
+        private boolean closing;
+        private volatile boolean closed;
+        
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        }
+        
+        void read() throws IOException {
+            if (readBuffer == null) {
+                readBuffer = buffers.acquire();
+            }
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+        
+        // Feeds buffered bytes to the current request's body, or starts the next request once it is done
+        void process() throws IOException {
+            if (readBuffer != null) {
+                readBuffer.flip();
+                try {
+                    while (!closed && !closing) {
+                        if (exchange != null) {
+                            if (bodyRemaining > 0 && readBuffer.hasRemaining()) {
+                                int n = (int) Math.min(bodyRemaining, readBuffer.remaining());
+                                int taken = exchange.requestBody.offer(readBuffer, n);
+                                bodyRemaining -= taken;
+                                if (bodyRemaining == 0) {
+                                    exchange.requestBody.finish();
+                                }
+                                bodyBlocked = taken < n;
+                            }
+                            if (bodyRemaining > 0 || !responseDone) {
+                                break;
+                            }
+                            exchange = null;
+                            responseDone = false;
+                        }
+                        if (!readBuffer.hasRemaining() || !startExchange()) {
+                            break;
+                        }
+                    }
+                } finally {
+                    if (readBuffer != null) {
+                        readBuffer.compact();
+                        if (readBuffer.position() == 0) {
+                            buffers.release(readBuffer);
+                            readBuffer = null;
+                        }
+                    }
+                }
+            }
+            updateInterest();
+        }
+        
+        // Parses one request head from the read buffer; false if it has not fully arrived
+        private boolean startExchange() throws IOException {
+            ByteBuffer in = readBuffer;
+            while (in.hasRemaining() && (in.get(in.position()) == '\r' || in.get(in.position()) == '\n')) {
+                in.get(); // Blank lines between requests are allowed
+            }
+            int end = -1;
+            for (int i = in.position(); i + 3 < in.limit(); i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0) {
+                if (in.position() == 0 && in.limit() == in.capacity()) {
+                    reject(431);
+                }
+                return false;
+            }
+            byte[] headBytes = new byte[end - in.position()];
+            in.get(headBytes);
+            in.position(end + 4);
+            String head = new String(headBytes, StandardCharsets.ISO_8859_1);
+            
+            int lineEnd = head.indexOf("\r\n");
+            String requestLine = lineEnd < 0 ? head : head.substring(0, lineEnd);
+            int firstSpace = requestLine.indexOf(' ');
+            int lastSpace = requestLine.lastIndexOf(' ');
+            if (firstSpace <= 0 || lastSpace <= firstSpace) {
+                reject(400);
+                return false;
+            }
+            Headers headers = new Headers();
+            while (lineEnd >= 0) {
+                int start = lineEnd + 2;
+                lineEnd = head.indexOf("\r\n", start);
+                String line = lineEnd < 0 ? head.substring(start) : head.substring(start, lineEnd);
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    reject(400);
+                    return false;
+                }
+                headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+            
+            URI uri;
+            long contentLength;
+            try {
+                uri = new URI(requestLine.substring(firstSpace + 1, lastSpace));
+                String lengthHeader = headers.getFirst("Content-Length");
+                contentLength = lengthHeader != null ? Long.parseLong(lengthHeader) : 0;
+            } catch (URISyntaxException | NumberFormatException e) {
+                reject(400);
+                return false;
+            }
+            if (headers.containsKey("Transfer-Encoding")) {
+                reject(501);
+                return false;
+            }
+            String protocol = requestLine.substring(lastSpace + 1);
+            String connectionHeader = headers.getFirst("Connection");
+            boolean keepAlive = "HTTP/1.0".equals(protocol)
+                ? "keep-alive".equalsIgnoreCase(connectionHeader) : !"close".equalsIgnoreCase(connectionHeader);
+            
+            if (contentLength > 0 && "100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+                writeDirect(CONTINUE);
+            }
+            exchange = new Exchange(this, requestLine.substring(0, firstSpace), uri, protocol, headers, keepAlive);
+            bodyRemaining = contentLength;
+            bodyBlocked = false;
+            responseDone = false;
+            if (contentLength == 0) {
+                exchange.requestBody.finish();
+            }
+            dispatch(exchange);
+            return true;
+        }
+        
+        private void dispatch(Exchange exchange) {
+            HttpHandler handler = findHandler(exchange.getRequestURI().getPath());
+            try {
+                executor.execute(() -> {
+                    try {
+                        handler.handle(exchange);
+                    } catch (Exception e) {
+                        // As with the JDK server, a handler that fails without answering loses the connection
+                        System.err.println("HTTP handler failed for " + exchange.getRequestMethod() + " "
+                                           + exchange.getRequestURI() + ": " + e);
+                    } finally {
+                        exchange.complete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+        
+        // Answers with an error status and no body, then closes the connection
+        private void reject(int code) {
+            writeDirect(("HTTP/1.1 " + code + " " + reasonPhrase(code)
+                         + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            closing = true;
+            exchange = null;
+            flush();
+        }
+        
+        // Selector thread: queues bytes ahead of any handler output; only used before a handler starts
+        private void writeDirect(byte[] bytes) {
+            ByteBuffer buffer = buffers.acquire();
+            buffer.put(bytes).flip();
+            writeCredits.tryAcquire();
+            writeQueue.add(buffer);
+        }
+        
+        // Handler thread: passes a filled buffer to the selector, waiting while too many are queued
+        void send(ByteBuffer buffer) throws IOException {
+            writeCredits.acquireUninterruptibly();
+            if (closed) {
+                buffers.release(buffer);
+                throw new IOException("Connection closed");
+            }
+            buffer.flip();
+            onSelectorThread(() -> {
+                if (closed) {
+                    buffers.release(buffer);
+                    return;
+                }
+                writeQueue.add(buffer);
+                flush();
+            });
+        }
+        
+        // Handler thread: the response has been fully passed to send
+        void responseComplete(boolean reusable) {
+            onSelectorThread(() -> {
+                if (closed) {
+                    return;
+                }
+                if (!reusable || !exchange.keepAlive || bodyRemaining > 0) {
+                    // An unread request body would have to be skipped, so the connection is dropped instead
+                    closing = true;
+                    exchange.requestBody.fail(new IOException("Response already sent"));
+                    exchange = null;
+                    flush();
+                    return;
+                }
+                responseDone = true;
+                try {
+                    process();
+                } catch (IOException e) {
+                    close();
+                }
+            });
+        }
+        
+        // Handler thread: more request body can be accepted
+        void resumeBody() {
+            onSelectorThread(() -> {
+                if (closed || !bodyBlocked) {
+                    return;
+                }
+                bodyBlocked = false;
+                try {
+                    process();
+                } catch (IOException e) {
+                    close();
+                }
+            });
+        }
+        
+        void flush() {
+            try {
+                while (!writeQueue.isEmpty()) {
+                    ByteBuffer head = writeQueue.peek();
+                    channel.write(head);
+                    if (head.hasRemaining()) {
+                        break;
+                    }
+                    buffers.release(writeQueue.poll());
+                    writeCredits.release();
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (writeQueue.isEmpty() && closing) {
+                close();
+                return;
+            }
+            updateInterest();
+        }
+        
+        private void updateInterest() {
+            if (closed) {
+                return;
+            }
+            int ops = 0;
+            if (!closing && !bodyBlocked && (readBuffer == null || readBuffer.hasRemaining())) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (!writeQueue.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+        
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            openConnections.decrementAndGet();
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            if (readBuffer != null) {
+                buffers.release(readBuffer);
+                readBuffer = null;
+            }
+            for (ByteBuffer buffer : writeQueue) {
+                buffers.release(buffer);
+            }
+            writeQueue.clear();
+            if (exchange != null) {
+                exchange.requestBody.fail(new IOException("Connection closed"));
+                exchange = null;
+            }
+            // A handler waiting for write credits wakes up and sees the connection is closed
+            writeCredits.release(MAX_QUEUED_RESPONSE_BUFFERS);
+        }
+    }
+    
+    // Request body chunks copied out of the read buffer, consumed by the handler thread
+    private final class RequestBody extends InputStream {
+        private final Connection connection;
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private byte[] current;
+        private int currentPosition;
+        private int queuedBytes;
+        private boolean finished;
+        private boolean resumeWanted;
+        private IOException failure;
+        
+        RequestBody(Connection connection) {
+            this.connection = connection;
+        }
+        
+        // Selector thread: takes n bytes, or none while the handler is too far behind
+        synchronized int offer(ByteBuffer source, int n) {
+            if (queuedBytes >= MAX_QUEUED_BODY_BYTES) {
+                resumeWanted = true;
+                return 0;
+            }
+            byte[] chunk = new byte[n];
+            source.get(chunk);
+            chunks.add(chunk);
+            queuedBytes += n;
+            notifyAll();
+            return n;
+        }
+        
+        synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+        
+        synchronized void fail(IOException e) {
+            if (!finished) {
+                failure = e;
+                notifyAll();
+            }
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+        
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current == null) {
+                current = chunks.poll();
+                currentPosition = 0;
+                if (current != null) {
+                    break;
+                }
+                if (finished) {
+                    return -1;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the request body");
+                }
+            }
+            int n = Math.min(len, current.length - currentPosition);
+            System.arraycopy(current, currentPosition, b, off, n);
+            currentPosition += n;
+            if (currentPosition == current.length) {
+                queuedBytes -= current.length;
+                current = null;
+                if (resumeWanted && queuedBytes < MAX_QUEUED_BODY_BYTES) {
+                    resumeWanted = false;
+                    connection.resumeBody();
+                }
+            }
+            return n;
+        }
+        
+        @Override
+        public synchronized int available() {
+            return current != null ? current.length - currentPosition : chunks.isEmpty() ? 0 : chunks.peek().length;
+        }
+    }
+    
+    // Response bytes written into pooled buffers, framed as chunks when the length is not known
+    private final class ResponseBody extends OutputStream {
+        private final Connection connection;
+        private ByteBuffer buffer;
+        private boolean started;
+        private boolean chunked;
+        private long length;
+        private long written;
+        private int chunkStart;
+        private boolean closed;
+        
+        ResponseBody(Connection connection) {
+            this.connection = connection;
+        }
+        
+        void start(CharSequence head, long contentLength) throws IOException {
+            buffer = buffers.acquire();
+            for (int i = 0; i < head.length(); i++) {
+                if (!buffer.hasRemaining()) {
+                    sendBuffer();
+                }
+                buffer.put((byte) head.charAt(i));
+            }
+            chunked = contentLength == 0;
+            length = Math.max(contentLength, 0);
+            started = true;
+            if (chunked) {
+                startChunk();
+            }
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!started) {
+                throw new IOException("sendResponseHeaders has not been called");
+            }
+            if (closed) {
+                throw new IOException("Response body already closed");
+            }
+            if (!chunked && written + len > length) {
+                throw new IOException("Response body is longer than its Content-Length of " + length);
+            }
+            written += len;
+            while (len > 0) {
+                int room = buffer.remaining() - (chunked ? 2 : 0);
+                if (room <= 0) {
+                    sendBuffer();
+                    continue;
+                }
+                int n = Math.min(len, room);
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (started && !closed && buffer.position() > (chunked ? chunkStart + CHUNK_HEADER_BYTES : 0)) {
+                sendBuffer();
+            }
+        }
+        
+        private void sendBuffer() throws IOException {
+            if (chunked && started) {
+                sealChunk();
+            }
+            ByteBuffer full = buffer;
+            buffer = null;
+            connection.send(full);
+            buffer = buffers.acquire();
+            if (chunked && started) {
+                startChunk();
+            }
+        }
+        
+        private void startChunk() {
+            chunkStart = buffer.position();
+            buffer.position(chunkStart + CHUNK_HEADER_BYTES);
+        }
+        
+        private void sealChunk() {
+            int size = buffer.position() - chunkStart - CHUNK_HEADER_BYTES;
+            if (size == 0) {
+                buffer.position(chunkStart);
+                return;
+            }
+            for (int i = 0; i < 6; i++) {
+                buffer.put(chunkStart + i, HEX[(size >>> (4 * (5 - i))) & 0xf]);
+            }
+            buffer.put(chunkStart + 6, (byte) '\r');
+            buffer.put(chunkStart + 7, (byte) '\n');
+            buffer.put((byte) '\r').put((byte) '\n');
+        }
+        
+        // Queues what is left and reports whether the response was complete
+        @Override
+        public void close() throws IOException {
+            if (closed || !started) {
+                return;
+            }
+            closed = true;
+            boolean complete = chunked || written == length;
+            try {
+                if (chunked) {
+                    sealChunk();
+                    if (buffer.remaining() < LAST_CHUNK.length) {
+                        connection.send(buffer);
+                        buffer = buffers.acquire();
+                    }
+                    buffer.put(LAST_CHUNK);
+                }
+                if (buffer.position() > 0) {
+                    connection.send(buffer);
+                } else {
+                    buffers.release(buffer);
+                }
+            } finally {
+                buffer = null;
+                connection.responseComplete(complete);
+            }
+        }
+        
+        boolean isClosed() { return closed; }
+    }
+    
+    private final class Exchange extends HttpExchange {
+        private final Connection connection;
+        private final String method;
+        private final URI uri;
+        private final String protocol;
+        private final Headers requestHeaders;
+        private final Headers responseHeaders = new Headers();
+        private final boolean keepAlive;
+        private final RequestBody requestBody;
+        private final ResponseBody responseBody;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private InputStream in;
+        private OutputStream out;
+        private volatile int responseCode = -1;
+        private boolean completed;
+        
+        Exchange(Connection connection, String method, URI uri, String protocol, Headers requestHeaders,
+                 boolean keepAlive) {
+            this.connection = connection;
+            this.method = method;
+            this.uri = uri;
+            this.protocol = protocol;
+            this.requestHeaders = requestHeaders;
+            this.keepAlive = keepAlive;
+            this.requestBody = new RequestBody(connection);
+            this.responseBody = new ResponseBody(connection);
+            this.in = requestBody;
+            this.out = responseBody;
+        }
+        
+        // Handler thread, after the handler returns or closes the exchange
+        synchronized void complete() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (responseCode == -1) {
+                onSelectorThread(connection::close);
+                return;
+            }
+            try {
+                responseBody.close();
+            } catch (IOException e) {
+                onSelectorThread(connection::close);
+            }
+        }
+        
+        @Override
+        public Headers getRequestHeaders() { return requestHeaders; }
+        
+        @Override
+        public Headers getResponseHeaders() { return responseHeaders; }
+        
+        @Override
+        public URI getRequestURI() { return uri; }
+        
+        @Override
+        public String getRequestMethod() { return method; }
+        
+        @Override
+        public HttpContext getHttpContext() { return null; }
+        
+        @Override
+        public void close() {
+            complete();
+        }
+        
+        @Override
+        public InputStream getRequestBody() { return in; }
+        
+        @Override
+        public OutputStream getResponseBody() { return out; }
+        
+        // A length of 0 streams a chunked body, -1 sends no body at all
+        @Override
+        public void sendResponseHeaders(int code, long length) throws IOException {
+            if (responseCode != -1) {
+                throw new IOException("Response headers already sent");
+            }
+            responseCode = code;
+            StringBuilder head = new StringBuilder(256);
+            head.append("HTTP/1.1 ").append(code).append(' ').append(reasonPhrase(code)).append("\r\n");
+            for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+                for (String value : header.getValue()) {
+                    head.append(header.getKey()).append(": ").append(value).append("\r\n");
+                }
+            }
+            if (length == 0) {
+                head.append("Transfer-Encoding: chunked\r\n");
+            } else {
+                head.append("Content-Length: ").append(Math.max(length, 0)).append("\r\n");
+            }
+            if (!keepAlive) {
+                head.append("Connection: close\r\n");
+            } else if ("HTTP/1.0".equals(protocol)) {
+                head.append("Connection: keep-alive\r\n");
+            }
+            responseBody.start(head.append("\r\n"), length < 0 ? -1 : length);
+        }
+        
+        @Override
+        public InetSocketAddress getRemoteAddress() { return connection.remoteAddress; }
+        
+        @Override
+        public int getResponseCode() { return responseCode; }
+        
+        @Override
+        public InetSocketAddress getLocalAddress() { return localAddress; }
+        
+        @Override
+        public String getProtocol() { return protocol; }
+        
+        @Override
+        public synchronized Object getAttribute(String name) { return attributes.get(name); }
+        
+        @Override
+        public synchronized void setAttribute(String name, Object value) { attributes.put(name, value); }
+        
+        @Override
+        public void setStreams(InputStream in, OutputStream out) {
+            if (in != null) {
+                this.in = in;
+            }
+            if (out != null) {
+                this.out = out;
+            }
+        }
+        
+        @Override
+        public HttpPrincipal getPrincipal() { return null; }
+    }
+}
\ No newline at end of file
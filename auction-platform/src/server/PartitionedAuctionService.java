@@ -0,0 +1,337 @@
+package server;
+
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing AuctionService in front of several partitioned AuctionServer nodes
+ * Each node owns the auction ids that a consistent hash ring assigns to it
+ * and only allocates ids it owns, so per-auction calls go straight to the
+ * owning node. New auctions are spread round-robin, and list, search and
+ * user queries are sent to every node in parallel and merged. Users are
+ * registered on every node so bids and auctions can be attributed locally
+ */
+public class PartitionedAuctionService implements AuctionService {
+    
+    // Comma-separated RMI URLs of the partition nodes, in the same order on every node and router
+    public static final String NODES_PROPERTY = "auction.partition.nodes";
+    
+    private final ConsistentHashRing ring;
+    private final List<AuctionService> nodes = new ArrayList<>();
+    private final AtomicInteger nextCreateNode = new AtomicInteger();
+    private final ExecutorService scatterPool = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "partition-scatter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // One remote call made against a single node
+    private interface NodeCall<T> {
+        T call(AuctionService node) throws RemoteException;
+    }
+    
+    public PartitionedAuctionService(ConsistentHashRing ring) throws Exception {
+        this.ring = ring;
+        for (String url : ring.getNodes()) {
+            nodes.add((AuctionService) Naming.lookup(url));
+        }
+    }
+    
+    // The partitioned service when auction.partition.nodes is set, otherwise the single server at serviceUrl
+    public static AuctionService lookup(String serviceUrl) throws Exception {
+        String nodeList = System.getProperty(NODES_PROPERTY);
+        if (nodeList == null) {
+            return (AuctionService) Naming.lookup(serviceUrl);
+        }
+        return new PartitionedAuctionService(ConsistentHashRing.parse(nodeList));
+    }
+    
+    private AuctionService ownerOf(long auctionId) {
+        return nodes.get(ring.ownerOf(auctionId));
+    }
+    
+    // Runs a call on every node at once, the last one on the calling thread, and returns results in node order
+    private <T> List<T> scatter(NodeCall<T> call) throws RemoteException {
+        List<Future<T>> pending = new ArrayList<>(nodes.size() - 1);
+        for (int i = 0; i < nodes.size() - 1; i++) {
+            AuctionService node = nodes.get(i);
+            pending.add(scatterPool.submit(() -> call.call(node)));
+        }
+        T last = call.call(nodes.get(nodes.size() - 1));
+        
+        List<T> results = new ArrayList<>(nodes.size());
+        try {
+            for (Future<T> future : pending) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while querying partitions", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RemoteException("Partition query failed", cause);
+        }
+        results.add(last);
+        return results;
+    }
+    
+    private static <T> List<T> concat(List<List<T>> lists) {
+        List<T> all = new ArrayList<>();
+        for (List<T> list : lists) {
+            all.addAll(list);
+        }
+        return all;
+    }
+    
+    // Any node can take new auctions; nodes are tried round-robin, skipping those that refuse connections
+    private <T> T createOnAnyNode(NodeCall<T> create) throws RemoteException {
+        int first = Math.floorMod(nextCreateNode.getAndIncrement(), nodes.size());
+        RemoteException unreachable = null;
+        for (int i = 0; i < nodes.size(); i++) {
+            try {
+                return create.call(nodes.get((first + i) % nodes.size()));
+            } catch (ConnectException | ConnectIOException e) {
+                // The call never reached the node, so retrying elsewhere cannot create a duplicate
+                unreachable = e;
+            }
+        }
+        throw unreachable;
+    }
+    
+    @Override
+    public long createAuction(String itemName, String description, String sellerName,
+                              double startingPrice, double bidIncrement, long durationMinutes)
+                              throws RemoteException {
+        return createOnAnyNode(node -> node.createAuction(itemName, description, sellerName,
+                                                          startingPrice, bidIncrement, durationMinutes));
+    }
+    
+    @Override
+    public List<Auction> getAllActiveAuctions() throws RemoteException {
+        return concat(scatter(AuctionService::getAllActiveAuctions));
+    }
+    
+    @Override
+    public Auction getAuction(long auctionId) throws RemoteException {
+        return ownerOf(auctionId).getAuction(auctionId);
+    }
+    
+    @Override
+    public boolean closeAuction(long auctionId) throws RemoteException {
+        return ownerOf(auctionId).closeAuction(auctionId);
+    }
+    
+    @Override
+    public long placeBid(long auctionId, String bidderName, double bidAmount) throws RemoteException {
+        return ownerOf(auctionId).placeBid(auctionId, bidderName, bidAmount);
+    }
+    
+    @Override
+    public TracedBid placeBidTraced(String requestId, long auctionId, String bidderName, double bidAmount)
+                                    throws RemoteException {
+        return ownerOf(auctionId).placeBidTraced(requestId, auctionId, bidderName, bidAmount);
+    }
+    
+    @Override
+    public List<Bid> getBidsForAuction(long auctionId) throws RemoteException {
+        return ownerOf(auctionId).getBidsForAuction(auctionId);
+    }
+    
+    @Override
+    public Bid getHighestBid(long auctionId) throws RemoteException {
+        return ownerOf(auctionId).getHighestBid(auctionId);
+    }
+    
+    @Override
+    public List<HotAuction> getHotAuctions(int limit) throws RemoteException {
+        // Each node's top entries are enough to find the overall top
+        List<HotAuction> hottest = concat(scatter(node -> node.getHotAuctions(limit)));
+        hottest.sort((a, b) -> Double.compare(b.getBidsPerMinute(), a.getBidsPerMinute()));
+        return hottest.size() > limit ? new ArrayList<>(hottest.subList(0, limit)) : hottest;
+    }
+    
+    @Override
+    public long createSealedBidAuction(String itemName, String description, String sellerName,
+                                       double reservePrice, int units, PricingRule pricingRule,
+                                       long clearingIntervalSeconds, long durationMinutes)
+                                       throws RemoteException {
+        return createOnAnyNode(node -> node.createSealedBidAuction(itemName, description, sellerName, reservePrice,
+                                                                   units, pricingRule, clearingIntervalSeconds,
+                                                                   durationMinutes));
+    }
+    
+    @Override
+    public List<ClearingResult> getClearingResults(long auctionId) throws RemoteException {
+        return ownerOf(auctionId).getClearingResults(auctionId);
+    }
+    
+    @Override
+    public List<Bid> getBidsSince(long auctionId, long lastSeenBidId, int limit) throws RemoteException {
+        return ownerOf(auctionId).getBidsSince(auctionId, lastSeenBidId, limit);
+    }
+    
+    @Override
+    public List<Auction> getAuctionsEndingBefore(long endTimeMillis, int limit) throws RemoteException {
+        // Each node's first entries are enough to find the overall first
+        List<Auction> ending = concat(scatter(node -> node.getAuctionsEndingBefore(endTimeMillis, limit)));
+        ending.sort(Comparator.comparingLong(Auction::getEndTimeMillis).thenComparingLong(Auction::getAuctionId));
+        return ending.size() > limit ? new ArrayList<>(ending.subList(0, limit)) : ending;
+    }
+    
+    @Override
+    public List<Auction> getAuctionsInPriceRange(double minPrice, double maxPrice, int limit) throws RemoteException {
+        List<Auction> inRange = concat(scatter(node -> node.getAuctionsInPriceRange(minPrice, maxPrice, limit)));
+        inRange.sort(Comparator.comparingDouble(Auction::getCurrentHighestBid).thenComparingLong(Auction::getAuctionId));
+        return inRange.size() > limit ? new ArrayList<>(inRange.subList(0, limit)) : inRange;
+    }
+    
+    @Override
+    public PriceSeries getPriceHistory(long auctionId, int resolutionSeconds) throws RemoteException {
+        return ownerOf(auctionId).getPriceHistory(auctionId, resolutionSeconds);
+    }
+    
+    @Override
+    public int importAuctions(List<AuctionRecord> records) throws RemoteException {
+        // The node that takes a batch allocates ids it owns for every auction in it
+        return createOnAnyNode(node -> node.importAuctions(records));
+    }
+    
+    @Override
+    public List<AuctionRecord> exportAuctions(long afterAuctionId, int limit) throws RemoteException {
+        // Each node returns its lowest ids after the cursor, so the lowest of all of them come first
+        List<AuctionRecord> page = concat(scatter(node -> node.exportAuctions(afterAuctionId, limit)));
+        page.sort(Comparator.comparingLong(record -> record.getAuction().getAuctionId()));
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+    }
+    
+    @Override
+    public boolean registerUser(String username, String email, boolean isSeller) throws RemoteException {
+        // False if any node already knew the user; nodes that did not are filled in anyway
+        return !scatter(node -> node.registerUser(username, email, isSeller)).contains(false);
+    }
+    
+    @Override
+    public User getUserInfo(String username) throws RemoteException {
+        // Each node counts the bids and auctions it holds
+        User merged = null;
+        long bids = 0;
+        long auctions = 0;
+        for (User user : scatter(node -> node.getUserInfo(username))) {
+            if (user == null) {
+                continue;
+            }
+            if (merged == null) {
+                merged = user;
+            }
+            bids += user.getTotalBids();
+            auctions += user.getTotalAuctions();
+        }
+        if (merged != null) {
+            merged.setTotalBids(bids);
+            merged.setTotalAuctions(auctions);
+        }
+        return merged;
+    }
+    
+    @Override
+    public List<Auction> getAuctionsByUser(String username) throws RemoteException {
+        return concat(scatter(node -> node.getAuctionsByUser(username)));
+    }
+    
+    @Override
+    public List<Bid> getBidsByUser(String username) throws RemoteException {
+        return concat(scatter(node -> node.getBidsByUser(username)));
+    }
+    
+    @Override
+    public String getServerStatus() throws RemoteException {
+        List<String> statuses = scatter(AuctionService::getServerStatus);
+        StringBuilder status = new StringBuilder();
+        status.append("=== Partitioned Auction Service: ").append(nodes.size()).append(" node(s) ===");
+        for (int i = 0; i < statuses.size(); i++) {
+            status.append("\n\n--- ").append(ring.getNodes().get(i)).append(" ---\n").append(statuses.get(i));
+        }
+        return status.toString();
+    }
+    
+    @Override
+    public void shutdown() throws RemoteException {
+        try {
+            scatter(node -> {
+                node.shutdown();
+                return null;
+            });
+        } finally {
+            scatterPool.shutdown();
+        }
+    }
+    
+    @Override
+    public int getActiveAuctionCount() throws RemoteException {
+        return scatter(AuctionService::getActiveAuctionCount).stream().mapToInt(Integer::intValue).sum();
+    }
+    
+    @Override
+    public int getTotalBidCount() throws RemoteException {
+        return scatter(AuctionService::getTotalBidCount).stream().mapToInt(Integer::intValue).sum();
+    }
+    
+    @Override
+    public List<String> getRegisteredUsers() throws RemoteException {
+        Set<String> users = new LinkedHashSet<>();
+        for (List<String> nodeUsers : scatter(AuctionService::getRegisteredUsers)) {
+            users.addAll(nodeUsers);
+        }
+        return new ArrayList<>(users);
+    }
+    
+    @Override
+    public String getMetrics() throws RemoteException {
+        return MetricsRegistry.mergeWithLabel(scatter(AuctionService::getMetrics), "node", ring.getNodes());
+    }
+    
+    @Override
+    public List<SalesSummary> getArchivedSalesBySellerPerDay() throws RemoteException {
+        // A seller's auctions on one day can be archived on several nodes
+        Map<String, Map<String, SalesSummary>> totals = new TreeMap<>();
+        for (List<SalesSummary> nodeSales : scatter(AuctionService::getArchivedSalesBySellerPerDay)) {
+            for (SalesSummary sales : nodeSales) {
+                totals.computeIfAbsent(sales.getSellerName(), seller -> new TreeMap<>())
+                      .merge(sales.getDay(), sales, (a, b) -> new SalesSummary(
+                          a.getSellerName(), a.getDay(), a.getAuctionsSold() + b.getAuctionsSold(),
+                          a.getTotalFinalPrice() + b.getTotalFinalPrice()));
+            }
+        }
+        List<SalesSummary> merged = new ArrayList<>();
+        for (Map<String, SalesSummary> days : totals.values()) {
+            merged.addAll(days.values());
+        }
+        return merged;
+    }
+    
+    @Override
+    public boolean promoteToPrimary() throws RemoteException {
+        throw new RuntimeException("Each partition fails over on its own; promote its backup with "
+                                   + "'java server.AuctionServer promote <backup-url>'");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+package server;
+
+/**
+ * Downsampled price series of one auction, updated on every accepted bid
+ * Each resolution keeps the open, high, low, close and bid count of its most
+ * recent auction.priceHistory.buckets time buckets in a primitive ring, so a
+ * chart costs the same however many bids were placed. Rings start small and
+ * grow to that size, after which the newest bucket overwrites the oldest
+ */
+public class PriceHistory {
+    
+    public static final int[] RESOLUTIONS_SECONDS = {60, 15 * 60, 60 * 60, 24 * 60 * 60};
+    public static final int MAX_BUCKETS = Integer.getInteger("auction.priceHistory.buckets", 120);
+    
+    // Most auctions see few bids, which fall into few buckets
+    private static final int INITIAL_CAPACITY = 2;
+    
+    // Each bucket is one stride of a ring's long array
+    private static final int STRIDE = 6;
+    private static final int START = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int COUNT = 5;
+    
+    private final long auctionId;
+    private final Ring[] rings = new Ring[RESOLUTIONS_SECONDS.length];
+    
+    public PriceHistory(long auctionId) {
+        this.auctionId = auctionId;
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new Ring(RESOLUTIONS_SECONDS[i] * 1000L);
+        }
+    }
+    
+    // Rebuilt from stored bids, for auctions that were archived
+    public static PriceHistory of(BidHistory bids) {
+        PriceHistory history = new PriceHistory(bids.getAuctionId());
+        for (int i = 0; i < bids.size(); i++) {
+            history.record(bids.timestampAt(i), bids.amountAt(i));
+        }
+        return history;
+    }
+    
+    public synchronized void record(long timestampMillis, long amountMinor) {
+        for (Ring ring : rings) {
+            ring.record(timestampMillis, amountMinor);
+        }
+    }
+    
+    // resolutionSeconds 0 picks the finest resolution that still holds every bid
+    public synchronized PriceSeries snapshot(int resolutionSeconds) {
+        int index = rings.length - 1;
+        if (resolutionSeconds == 0) {
+            for (int i = 0; i < rings.length; i++) {
+                if (!rings[i].wrapped) {
+                    index = i;
+                    break;
+                }
+            }
+        } else {
+            index = resolutionIndex(resolutionSeconds);
+        }
+        return rings[index].toSeries(auctionId, RESOLUTIONS_SECONDS[index]);
+    }
+    
+    public static int resolutionIndex(int resolutionSeconds) {
+        for (int i = 0; i < RESOLUTIONS_SECONDS.length; i++) {
+            if (RESOLUTIONS_SECONDS[i] == resolutionSeconds) {
+                return i;
+            }
+        }
+        throw new RuntimeException("Resolution must be 0 or one of 60, 900, 3600 and 86400 seconds, not "
+                                   + resolutionSeconds);
+    }
+    
+    private static final class Ring {
+        private final long widthMillis;
+        private long[] buckets = new long[INITIAL_CAPACITY * STRIDE];
+        private int head; // Oldest bucket
+        private int size;
+        private boolean wrapped; // Buckets have been overwritten
+        
+        Ring(long widthMillis) {
+            this.widthMillis = widthMillis;
+        }
+        
+        private int capacity() { return buckets.length / STRIDE; }
+        
+        private int offset(int bucket) { return (head + bucket) % capacity() * STRIDE; }
+        
+        void record(long timestampMillis, long amountMinor) {
+            long start = timestampMillis - Math.floorMod(timestampMillis, widthMillis);
+            if (size > 0) {
+                int last = offset(size - 1);
+                // Also taken when the clock steps back, so buckets stay in order
+                if (start <= buckets[last + START]) {
+                    buckets[last + HIGH] = Math.max(buckets[last + HIGH], amountMinor);
+                    buckets[last + LOW] = Math.min(buckets[last + LOW], amountMinor);
+                    buckets[last + CLOSE] = amountMinor;
+                    buckets[last + COUNT]++;
+                    return;
+                }
+            }
+            int slot;
+            if (size < capacity()) {
+                slot = offset(size++);
+            } else if (capacity() < MAX_BUCKETS) {
+                grow();
+                slot = offset(size++);
+            } else {
+                slot = offset(0);
+                head = (head + 1) % capacity();
+                wrapped = true;
+            }
+            buckets[slot + START] = start;
+            buckets[slot + OPEN] = amountMinor;
+            buckets[slot + HIGH] = amountMinor;
+            buckets[slot + LOW] = amountMinor;
+            buckets[slot + CLOSE] = amountMinor;
+            buckets[slot + COUNT] = 1;
+        }
+        
+        // The ring only grows before it is full for the first time, so head is still 0
+        private void grow() {
+            long[] grown = new long[Math.min(capacity() * 2, MAX_BUCKETS) * STRIDE];
+            System.arraycopy(buckets, 0, grown, 0, buckets.length);
+            buckets = grown;
+        }
+        
+        PriceSeries toSeries(long auctionId, int resolutionSeconds) {
+            long[] starts = new long[size];
+            double[] open = new double[size];
+            double[] high = new double[size];
+            double[] low = new double[size];
+            double[] close = new double[size];
+            int[] counts = new int[size];
+            for (int i = 0; i < size; i++) {
+                int bucket = offset(i);
+                starts[i] = buckets[bucket + START];
+                open[i] = BidHistory.fromMinorUnits(buckets[bucket + OPEN]);
+                high[i] = BidHistory.fromMinorUnits(buckets[bucket + HIGH]);
+                low[i] = BidHistory.fromMinorUnits(buckets[bucket + LOW]);
+                close[i] = BidHistory.fromMinorUnits(buckets[bucket + CLOSE]);
+                counts[i] = (int) buckets[bucket + COUNT];
+            }
+            return new PriceSeries(auctionId, resolutionSeconds, wrapped, starts, open, high, low, close, counts);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package server;
+
+import java.io.Serializable;
+
+// Open, high, low and close bid per time bucket of one auction, oldest bucket first
+public class PriceSeries implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final long auctionId;
+    private final int resolutionSeconds;
+    private final boolean truncated;
+    private final long[] bucketStartMillis;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final int[] bidCounts;
+    
+    public PriceSeries(long auctionId, int resolutionSeconds, boolean truncated, long[] bucketStartMillis,
+                       double[] open, double[] high, double[] low, double[] close, int[] bidCounts) {
+        this.auctionId = auctionId;
+        this.resolutionSeconds = resolutionSeconds;
+        this.truncated = truncated;
+        this.bucketStartMillis = bucketStartMillis;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.bidCounts = bidCounts;
+    }
+    
+    public long getAuctionId() { return auctionId; }
+    
+    public int getResolutionSeconds() { return resolutionSeconds; }
+    
+    // True when older buckets were dropped to keep the series bounded
+    public boolean isTruncated() { return truncated; }
+    
+    public int size() { return bucketStartMillis.length; }
+    
+    public long getBucketStartMillis(int i) { return bucketStartMillis[i]; }
+    public double getOpen(int i) { return open[i]; }
+    public double getHigh(int i) { return high[i]; }
+    public double getLow(int i) { return low[i]; }
+    public double getClose(int i) { return close[i]; }
+    public int getBidCount(int i) { return bidCounts[i]; }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package server;
+
+// How a batch-clearing auction prices the winning bids of a round selling k units
+public enum PricingRule {
+    // Each winner pays their own bid
+    FIRST_PRICE,
+    // Every winner pays the highest losing bid (the k+1-th), or the reserve if all bids win
+    SECOND_PRICE,
+    // Every winner pays the lowest winning bid (the k-th)
+    UNIFORM_PRICE
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Follower side of replication: applies the primary's mutation stream
+ * Connects to a ReplicationServer, applies the snapshot and every mutation
+ * after it to a listener, and reconnects after failures, resuming from the
+ * last applied sequence when the primary still has it. Backups ack what
+ * they have applied; observers only read. A primary that comes back with
+ * another epoch has lost what it had: observers start over from its
+ * snapshot, but a backup holding the earlier state stops following it
+ * and reports itself diverged, as it may be the only copy of acked writes
+ */
+public class ReplicationClient {
+    
+    private static final long RECONNECT_MILLIS = 1000;
+    private static final long ACK_BATCH = 256;
+    
+    private final String host;
+    private final int port;
+    private final byte role;
+    private final MutationListener listener;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    
+    // Stream position, also used to report staleness
+    private volatile long epoch;
+    private volatile long appliedSeq;
+    private volatile long primarySeq;
+    private volatile long lastContactMillis;
+    private volatile boolean caughtUp;
+    
+    // Local time at which everything the primary had written was applied here;
+    // a heartbeat not yet reached by appliedSeq waits in pendingHeartbeat*
+    private volatile long currentAsOfMillis;
+    private long pendingHeartbeatSeq = -1;
+    private long pendingHeartbeatMillis;
+    
+    // Epoch of the primary the listener's state came from, set as soon as its snapshot
+    // starts, as even a partly applied snapshot has to be dropped for another epoch
+    private long listenerEpoch;
+    
+    // Epoch of the primary a backup refused to follow, 0 while following
+    private volatile long divergedEpoch;
+    
+    public ReplicationClient(String host, int port, boolean backup, MutationListener listener) {
+        this.host = host;
+        this.port = port;
+        this.role = backup ? ReplicationServer.ROLE_BACKUP : ReplicationServer.ROLE_OBSERVER;
+        this.listener = listener;
+        this.thread = new Thread(this::run, "replication-client");
+        thread.setDaemon(true);
+    }
+    
+    public void start() {
+        thread.start();
+    }
+    
+    // Epoch of the primary whose stream is being applied, 0 before the first snapshot has been
+    public long getEpoch() { return epoch; }
+    public long getAppliedSeq() { return appliedSeq; }
+    public long getPrimarySeq() { return Math.max(primarySeq, appliedSeq); }
+    public long getLastContactMillis() { return lastContactMillis; }
+    
+    // True once the first snapshot has been applied and the stream is live
+    public boolean isCaughtUp() { return caughtUp; }
+    
+    // True once a backup has stopped following because the primary restarted with another epoch
+    public boolean isDiverged() { return divergedEpoch != 0; }
+    
+    // Upper bound on how old the applied state is, give or take network delay; Long.MAX_VALUE before catching up
+    public long getStalenessMillis() {
+        return caughtUp && currentAsOfMillis > 0 ? System.currentTimeMillis() - currentAsOfMillis : Long.MAX_VALUE;
+    }
+    
+    public String status() {
+        if (divergedEpoch != 0) {
+            return String.format("DIVERGED from %s:%d, which restarted as epoch %d without the %d mutations applied here;"
+                                 + " promote this server and restart the other as its backup",
+                                 host, port, divergedEpoch, appliedSeq);
+        }
+        long staleness = getStalenessMillis();
+        return String.format("following %s:%d, applied seq %d of %d, last contact %d ms ago, stale %s",
+                             host, port, appliedSeq, getPrimarySeq(),
+                             lastContactMillis == 0 ? -1 : System.currentTimeMillis() - lastContactMillis,
+                             staleness == Long.MAX_VALUE ? "unknown" : staleness + " ms");
+    }
+    
+    // Stops following; everything already applied stays applied
+    public void stop() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+        try {
+            thread.join(RECONNECT_MILLIS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(new InetSocketAddress(host, port), 5000);
+                connection.setTcpNoDelay(true);
+                follow(connection);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication from " + host + ":" + port + " interrupted: " + e.getMessage());
+                }
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void follow(Socket connection) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        out.writeByte(role);
+        out.writeLong(epoch);
+        out.writeLong(appliedSeq);
+        out.flush();
+        
+        if (in.readByte() != ReplicationServer.HELLO) {
+            throw new IOException("Unexpected replication handshake");
+        }
+        long primaryEpoch = in.readLong();
+        boolean snapshot = in.readBoolean();
+        long baseSeq = in.readLong();
+        lastContactMillis = System.currentTimeMillis();
+        pendingHeartbeatSeq = -1;
+        if (snapshot) {
+            if (listenerEpoch != 0 && listenerEpoch != primaryEpoch) {
+                // A restarted primary: nothing applied so far can be matched against its ids
+                caughtUp = false;
+                if (role == ReplicationServer.ROLE_BACKUP) {
+                    // Taking its snapshot would drop writes it acked before the restart
+                    divergedEpoch = primaryEpoch;
+                    running = false;
+                    System.err.println("Replication primary " + host + ":" + port + " restarted as epoch " + primaryEpoch
+                                       + "; not following it, as this backup holds state it lost");
+                    return;
+                }
+                listener.onEpochChanged(primaryEpoch);
+            }
+            System.out.println("Replication snapshot from " + host + ":" + port + " at seq " + baseSeq);
+            listenerEpoch = primaryEpoch;
+        } else {
+            caughtUp = true;
+        }
+        
+        long acked = appliedSeq;
+        while (running) {
+            byte type = in.readByte();
+            lastContactMillis = System.currentTimeMillis();
+            if (type == ReplicationServer.SNAPSHOT_END) {
+                appliedSeq = in.readLong();
+                primarySeq = appliedSeq;
+                epoch = primaryEpoch;
+                caughtUp = true;
+            } else if (type == ReplicationServer.HEARTBEAT) {
+                primarySeq = in.readLong();
+                in.readLong(); // Primary clock, informational
+                if (pendingHeartbeatSeq < 0) {
+                    pendingHeartbeatSeq = primarySeq;
+                    pendingHeartbeatMillis = lastContactMillis;
+                }
+            } else {
+                Mutation mutation = Mutation.readFrom(type, in);
+                mutation.applyTo(listener);
+                if (mutation.seq > 0) {
+                    appliedSeq = mutation.seq;
+                }
+            }
+            if (pendingHeartbeatSeq >= 0 && appliedSeq >= pendingHeartbeatSeq) {
+                currentAsOfMillis = pendingHeartbeatMillis;
+                pendingHeartbeatSeq = -1;
+            }
+            
+            // Ack once the buffered batch has been applied, or every ACK_BATCH under a steady stream
+            if (role == ReplicationServer.ROLE_BACKUP && appliedSeq > acked
+                && (in.available() == 0 || appliedSeq - acked >= ACK_BATCH)) {
+                out.writeLong(appliedSeq);
+                out.flush();
+                acked = appliedSeq;
+            }
+        }
+    }
+}
\ No newline at end of file
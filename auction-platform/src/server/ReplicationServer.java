@@ -0,0 +1,320 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Primary side of replication: orders mutations and streams them over TCP
+ *
+ * Request threads append each mutation to a ring buffer while holding the
+ * lock that ordered the change, so appending is one atomic increment and
+ * a volatile store. Every connected follower has a sender thread that
+ * streams from the ring, and backups send back the highest sequence they
+ * have applied. A follower that is new, belongs to another primary, or
+ * has fallen out of the ring first receives a snapshot of current state.
+ *
+ * With a quorum ack policy, writes wait until enough backups have acked
+ * them. Observers such as read replicas receive the same stream but never
+ * count towards the quorum
+ */
+public class ReplicationServer {
+    
+    // Frames sent to followers besides mutations
+    static final byte HELLO = 20;
+    static final byte SNAPSHOT_END = 21;
+    static final byte HEARTBEAT = 22;
+    
+    // Roles announced by followers
+    static final byte ROLE_BACKUP = 1;
+    static final byte ROLE_OBSERVER = 2;
+    
+    // Also sent under load, so read replicas can bound how stale they are
+    private static final long HEARTBEAT_MILLIS = 100;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final AtomicReferenceArray<Mutation> ring;
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private final ServerSocket serverSocket;
+    private final Consumer<Consumer<Mutation>> snapshotSource;
+    private final int requiredAcks;
+    private final long ackTimeoutMillis;
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private final Object ackMonitor = new Object();
+    private volatile boolean running = true;
+    
+    // One connected backup or observer
+    private class Follower {
+        final Socket socket;
+        final byte role;
+        volatile long ackedSeq;
+        
+        Follower(Socket socket, byte role) {
+            this.socket = socket;
+            this.role = role;
+        }
+    }
+    
+    /**
+     * @param snapshotSource emits every mutation needed to rebuild current state
+     * @param requiredAcks   backups that must ack a write before it returns, 0 for async
+     */
+    public ReplicationServer(int port, int capacity, int requiredAcks, long ackTimeoutMillis,
+                             Consumer<Consumer<Mutation>> snapshotSource, MetricsRegistry metrics) throws IOException {
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.requiredAcks = requiredAcks;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.snapshotSource = snapshotSource;
+        this.serverSocket = new ServerSocket(port);
+        
+        metrics.gauge("replication_last_seq", "Sequence of the last mutation on the primary", this::lastSeq);
+        metrics.gauge("replication_backups", "Connected replication backups", () -> countFollowers(ROLE_BACKUP));
+        metrics.gauge("replication_observers", "Connected read replicas", () -> countFollowers(ROLE_OBSERVER));
+        metrics.gauge("replication_max_backup_lag", "Mutations the slowest backup has not acked", this::maxBackupLag);
+        
+        Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    public int getPort() { return serverSocket.getLocalPort(); }
+    
+    // Random per primary start, so followers can tell a restarted primary from the one they followed
+    public long getEpoch() { return epoch; }
+    
+    public long lastSeq() { return nextSeq.get() - 1; }
+    
+    // Call while holding the lock that ordered the change
+    public long append(Mutation mutation) {
+        long seq = nextSeq.getAndIncrement();
+        mutation.seq = seq;
+        ring.set(slot(seq), mutation);
+        return seq;
+    }
+    
+    // Returns false if fewer than the required backups acked seq within the timeout
+    public boolean awaitReplicated(long seq) throws InterruptedException {
+        if (requiredAcks == 0) {
+            return true;
+        }
+        long deadline = System.currentTimeMillis() + ackTimeoutMillis;
+        synchronized (ackMonitor) {
+            while (countAcked(seq) < requiredAcks) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                ackMonitor.wait(remaining);
+            }
+        }
+        return true;
+    }
+    
+    public String status() {
+        return String.format("primary, seq %d, %d backup(s), %d observer(s), acks %s",
+                             lastSeq(), countFollowers(ROLE_BACKUP), countFollowers(ROLE_OBSERVER),
+                             requiredAcks == 0 ? "async" : "quorum of " + requiredAcks);
+    }
+    
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (Follower follower : followers) {
+            closeQuietly(follower.socket);
+        }
+    }
+    
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread sender = new Thread(() -> serve(socket), "replication-sender-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        Follower follower = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            
+            byte role = in.readByte();
+            long followerEpoch = in.readLong();
+            long followerSeq = in.readLong();
+            follower = new Follower(socket, role);
+            
+            long next;
+            if (followerEpoch == epoch && isRetained(followerSeq + 1)) {
+                next = followerSeq + 1;
+                writeHello(out, false, followerSeq);
+            } else {
+                // Everything up to base is visible to the snapshot; later
+                // mutations it also sees are ignored by the follower
+                long base = lastSeq();
+                writeHello(out, true, base);
+                try {
+                    snapshotSource.accept(mutation -> {
+                        try {
+                            mutation.writeTo(out);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                out.writeByte(SNAPSHOT_END);
+                out.writeLong(base);
+                next = base + 1;
+            }
+            out.flush();
+            follower.ackedSeq = next - 1;
+            followers.add(follower);
+            System.out.println("Replication " + (role == ROLE_BACKUP ? "backup" : "observer")
+                               + " connected from " + socket.getRemoteSocketAddress() + " at seq " + (next - 1));
+            
+            Follower acking = follower;
+            Thread ackReader = new Thread(() -> readAcks(in, acking), "replication-acks-" + socket.getPort());
+            ackReader.setDaemon(true);
+            ackReader.start();
+            
+            stream(out, next);
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Replication follower " + socket.getRemoteSocketAddress()
+                                   + " disconnected: " + e.getMessage());
+            }
+        } finally {
+            if (follower != null) {
+                followers.remove(follower);
+            }
+            closeQuietly(socket);
+        }
+    }
+    
+    private void stream(DataOutputStream out, long next) throws IOException {
+        long lastHeartbeat = 0;
+        boolean unflushed = false;
+        while (running) {
+            long now = System.currentTimeMillis();
+            if (now - lastHeartbeat >= HEARTBEAT_MILLIS) {
+                out.writeByte(HEARTBEAT);
+                out.writeLong(lastSeq());
+                out.writeLong(now);
+                lastHeartbeat = now;
+                unflushed = true;
+            }
+            
+            Mutation mutation = ring.get(slot(next));
+            if (mutation != null && mutation.seq == next) {
+                mutation.writeTo(out);
+                next++;
+                unflushed = true;
+                continue;
+            }
+            if (mutation != null && mutation.seq > next) {
+                throw new IOException("fell behind the replication log at seq " + next);
+            }
+            
+            // Nothing published yet
+            if (unflushed) {
+                out.flush();
+                unflushed = false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+    
+    private void readAcks(DataInputStream in, Follower follower) {
+        try {
+            while (running) {
+                follower.ackedSeq = in.readLong();
+                if (requiredAcks > 0 && follower.role == ROLE_BACKUP) {
+                    synchronized (ackMonitor) {
+                        ackMonitor.notifyAll();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Sender notices the closed socket
+        }
+    }
+    
+    private void writeHello(DataOutputStream out, boolean snapshot, long baseSeq) throws IOException {
+        out.writeByte(HELLO);
+        out.writeLong(epoch);
+        out.writeBoolean(snapshot);
+        out.writeLong(baseSeq);
+    }
+    
+    private boolean isRetained(long seq) {
+        if (seq > lastSeq()) {
+            return seq == nextSeq.get();
+        }
+        Mutation mutation = ring.get(slot(seq));
+        return mutation != null && mutation.seq == seq;
+    }
+    
+    private int countAcked(long seq) {
+        int acked = 0;
+        for (Follower follower : followers) {
+            if (follower.role == ROLE_BACKUP && follower.ackedSeq >= seq) {
+                acked++;
+            }
+        }
+        return acked;
+    }
+    
+    private long countFollowers(byte role) {
+        return followers.stream().filter(follower -> follower.role == role).count();
+    }
+    
+    private long maxBackupLag() {
+        long last = lastSeq();
+        long lag = 0;
+        for (Follower follower : followers) {
+            if (follower.role == ROLE_BACKUP) {
+                lag = Math.max(lag, last - follower.ackedSeq);
+            }
+        }
+        return lag;
+    }
+    
+    private int slot(long seq) {
+        return (int) (seq % ring.length());
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,424 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes small API requests from bytes without building intermediate strings
+ * Each thread reuses one decoder. A form body, query string or flat JSON
+ * object is read into its buffer and its fields are recorded as offsets into
+ * it. Numbers are parsed straight from those bytes, and a string value only
+ * becomes a String when a caller asks for it. Requests over
+ * auction.web.maxRequestBytes, or that are malformed, are rejected with an
+ * IllegalArgumentException naming the problem
+ */
+public final class RequestDecoder {
+    
+    public static final int MAX_REQUEST_BYTES = Integer.getInteger("auction.web.maxRequestBytes", 8192);
+    public static final int MAX_FIELDS = 32;
+    
+    private static final ThreadLocal<RequestDecoder> DECODERS = ThreadLocal.withInitial(RequestDecoder::new);
+    
+    // How a value's bytes are encoded
+    private static final byte FORM = 0;
+    private static final byte JSON_STRING = 1;
+    private static final byte JSON_LITERAL = 2;
+    
+    // Powers of ten a decimal of up to 15 digits can be divided by exactly
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    private final byte[] buffer = new byte[MAX_REQUEST_BYTES];
+    private int length;
+    
+    private final int[] keyStart = new int[MAX_FIELDS];
+    private final int[] keyEnd = new int[MAX_FIELDS];
+    private final int[] valueStart = new int[MAX_FIELDS];
+    private final int[] valueEnd = new int[MAX_FIELDS];
+    private final byte[] encoding = new byte[MAX_FIELDS];
+    private int fieldCount;
+    
+    // Decoded bytes of the string value being built
+    private final byte[] scratch = new byte[MAX_REQUEST_BYTES];
+    
+    private RequestDecoder() {
+    }
+    
+    // The calling thread's decoder; whatever it held before is replaced by the next decode
+    public static RequestDecoder get() {
+        return DECODERS.get();
+    }
+    
+    public RequestDecoder decodeForm(InputStream body) throws IOException {
+        readBody(body);
+        parseForm();
+        return this;
+    }
+    
+    public RequestDecoder decodeJson(InputStream body) throws IOException {
+        readBody(body);
+        parseJson();
+        return this;
+    }
+    
+    // Takes the query still percent-encoded, as URI.getRawQuery returns it; null is an empty query
+    public RequestDecoder decodeQuery(String rawQuery) {
+        length = 0;
+        if (rawQuery != null) {
+            if (rawQuery.length() > buffer.length) {
+                throw new IllegalArgumentException("Query string is longer than " + MAX_REQUEST_BYTES + " bytes");
+            }
+            for (int i = 0; i < rawQuery.length(); i++) {
+                char c = rawQuery.charAt(i);
+                if (c > 0x7f) {
+                    throw new IllegalArgumentException("Query string must be percent-encoded ASCII");
+                }
+                buffer[i] = (byte) c;
+            }
+            length = rawQuery.length();
+        }
+        parseForm();
+        return this;
+    }
+    
+    private void readBody(InputStream body) throws IOException {
+        length = 0;
+        int n;
+        while (length < buffer.length && (n = body.read(buffer, length, buffer.length - length)) >= 0) {
+            length += n;
+        }
+        if (length == buffer.length && body.read() >= 0) {
+            throw new IllegalArgumentException("Request body is larger than " + MAX_REQUEST_BYTES + " bytes");
+        }
+    }
+    
+    private void parseForm() {
+        fieldCount = 0;
+        int end = length;
+        while (end > 0 && (buffer[end - 1] == '\n' || buffer[end - 1] == '\r')) {
+            end--;
+        }
+        int pos = 0;
+        while (pos < end) {
+            int pairEnd = indexOf((byte) '&', pos, end);
+            int equals = indexOf((byte) '=', pos, pairEnd);
+            // Pairs without a name or a value are ignored, as they always were
+            if (equals > pos && equals + 1 < pairEnd) {
+                addField(pos, equals, equals + 1, pairEnd, FORM);
+            }
+            pos = pairEnd + 1;
+        }
+    }
+    
+    // A single object whose values are strings, numbers, booleans or null
+    private void parseJson() {
+        fieldCount = 0;
+        int pos = skipWhitespace(0);
+        if (pos == length || buffer[pos] != '{') {
+            throw new IllegalArgumentException("Request body is not a JSON object");
+        }
+        pos = skipWhitespace(pos + 1);
+        if (pos < length && buffer[pos] == '}') {
+            pos++;
+        } else {
+            while (true) {
+                if (pos == length || buffer[pos] != '"') {
+                    throw new IllegalArgumentException("Expected a field name at byte " + pos);
+                }
+                int nameStart = pos + 1;
+                int nameEnd = endOfString(nameStart);
+                pos = skipWhitespace(nameEnd + 1);
+                if (pos == length || buffer[pos] != ':') {
+                    throw new IllegalArgumentException("Expected ':' at byte " + pos);
+                }
+                pos = skipWhitespace(pos + 1);
+                if (pos == length) {
+                    throw new IllegalArgumentException("Missing value at byte " + pos);
+                }
+                if (buffer[pos] == '"') {
+                    int end = endOfString(pos + 1);
+                    addField(nameStart, nameEnd, pos + 1, end, JSON_STRING);
+                    pos = end + 1;
+                } else if (buffer[pos] == '{' || buffer[pos] == '[') {
+                    throw new IllegalArgumentException("Field " + text(nameStart, nameEnd) + " must not be an object or array");
+                } else {
+                    int start = pos;
+                    while (pos < length && buffer[pos] != ',' && buffer[pos] != '}' && !isWhitespace(buffer[pos])) {
+                        pos++;
+                    }
+                    // A null value counts as a missing field
+                    if (!(pos - start == 4 && buffer[start] == 'n' && buffer[start + 1] == 'u'
+                          && buffer[start + 2] == 'l' && buffer[start + 3] == 'l')) {
+                        addField(nameStart, nameEnd, start, pos, JSON_LITERAL);
+                    }
+                }
+                pos = skipWhitespace(pos);
+                if (pos < length && buffer[pos] == ',') {
+                    pos = skipWhitespace(pos + 1);
+                } else if (pos < length && buffer[pos] == '}') {
+                    pos++;
+                    break;
+                } else {
+                    throw new IllegalArgumentException("Expected ',' or '}' at byte " + pos);
+                }
+            }
+        }
+        if (skipWhitespace(pos) != length) {
+            throw new IllegalArgumentException("Unexpected content after the JSON object at byte " + pos);
+        }
+    }
+    
+    private void addField(int nameStart, int nameEnd, int start, int end, byte valueEncoding) {
+        if (fieldCount == MAX_FIELDS) {
+            throw new IllegalArgumentException("Request has more than " + MAX_FIELDS + " fields");
+        }
+        keyStart[fieldCount] = nameStart;
+        keyEnd[fieldCount] = nameEnd;
+        valueStart[fieldCount] = start;
+        valueEnd[fieldCount] = end;
+        encoding[fieldCount] = valueEncoding;
+        fieldCount++;
+    }
+    
+    public boolean has(String name) {
+        return find(name) >= 0;
+    }
+    
+    public long getLong(String name) {
+        int field = require(name);
+        int pos = valueStart[field];
+        int end = valueEnd[field];
+        boolean negative = pos < end && buffer[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        if (pos == end) {
+            throw notA(name, "whole number");
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = buffer[pos] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw notA(name, "whole number");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+    
+    public double getDouble(String name) {
+        int field = require(name);
+        int start = valueStart[field];
+        int end = valueEnd[field];
+        int pos = start;
+        boolean negative = pos < end && buffer[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; pos < end; pos++) {
+            byte b = buffer[pos];
+            if (b >= '0' && b <= '9') {
+                if (digits == 15) {
+                    return parseDoubleSlowly(name, start, end);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b == 'e' || b == 'E') {
+                return parseDoubleSlowly(name, start, end);
+            } else {
+                throw notA(name, "number");
+            }
+        }
+        if (digits == 0) {
+            throw notA(name, "number");
+        }
+        // Both operands are exact, so the one division rounds exactly as Double.parseDouble would
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+    
+    private double parseDoubleSlowly(String name, int start, int end) {
+        try {
+            double value = Double.parseDouble(text(start, end));
+            if (Double.isInfinite(value)) {
+                throw notA(name, "finite number");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw notA(name, "number");
+        }
+    }
+    
+    public String getString(String name) {
+        int field = require(name);
+        int pos = valueStart[field];
+        int end = valueEnd[field];
+        if (encoding[field] == JSON_LITERAL) {
+            return text(pos, end);
+        }
+        int n = 0;
+        while (pos < end) {
+            byte b = buffer[pos++];
+            if (encoding[field] == FORM) {
+                if (b == '+') {
+                    b = ' ';
+                } else if (b == '%') {
+                    if (end - pos < 2 || hexValue(buffer[pos]) < 0 || hexValue(buffer[pos + 1]) < 0) {
+                        throw new IllegalArgumentException("Field " + name + " has a malformed %-escape");
+                    }
+                    b = (byte) (hexValue(buffer[pos]) << 4 | hexValue(buffer[pos + 1]));
+                    pos += 2;
+                }
+                scratch[n++] = b;
+            } else if (b != '\\') {
+                scratch[n++] = b;
+            } else {
+                byte escaped = buffer[pos++];
+                switch (escaped) {
+                    case 'b': scratch[n++] = '\b'; break;
+                    case 'f': scratch[n++] = '\f'; break;
+                    case 'n': scratch[n++] = '\n'; break;
+                    case 'r': scratch[n++] = '\r'; break;
+                    case 't': scratch[n++] = '\t'; break;
+                    case 'u':
+                        int codePoint = unicodeEscape(name, pos, end);
+                        pos += 4;
+                        if (Character.isHighSurrogate((char) codePoint) && end - pos >= 6
+                            && buffer[pos] == '\\' && buffer[pos + 1] == 'u') {
+                            int low = unicodeEscape(name, pos + 2, end);
+                            if (Character.isLowSurrogate((char) low)) {
+                                codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                                pos += 6;
+                            }
+                        }
+                        n = appendUtf8(codePoint, n);
+                        break;
+                    default: scratch[n++] = escaped;
+                }
+            }
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+    
+    private int unicodeEscape(String name, int pos, int end) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = pos + i < end ? hexValue(buffer[pos + i]) : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException("Field " + name + " has a malformed \\u escape");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+    
+    private int appendUtf8(int codePoint, int n) {
+        if (codePoint < 0x80) {
+            scratch[n++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            scratch[n++] = (byte) (0xc0 | codePoint >> 6);
+            scratch[n++] = (byte) (0x80 | codePoint & 0x3f);
+        } else if (codePoint < 0x10000) {
+            scratch[n++] = (byte) (0xe0 | codePoint >> 12);
+            scratch[n++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            scratch[n++] = (byte) (0x80 | codePoint & 0x3f);
+        } else {
+            scratch[n++] = (byte) (0xf0 | codePoint >> 18);
+            scratch[n++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+            scratch[n++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            scratch[n++] = (byte) (0x80 | codePoint & 0x3f);
+        }
+        return n;
+    }
+    
+    // The last field of that name wins, as it did with the old map-based parsing
+    private int find(String name) {
+        for (int field = fieldCount - 1; field >= 0; field--) {
+            int start = keyStart[field];
+            if (keyEnd[field] - start != name.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length() && buffer[start + i] == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return field;
+            }
+        }
+        return -1;
+    }
+    
+    private int require(String name) {
+        int field = find(name);
+        if (field < 0) {
+            throw new IllegalArgumentException("Missing field " + name);
+        }
+        return field;
+    }
+    
+    private static IllegalArgumentException notA(String name, String kind) {
+        return new IllegalArgumentException("Field " + name + " is not a " + kind);
+    }
+    
+    private int endOfString(int pos) {
+        while (pos < length) {
+            if (buffer[pos] == '\\') {
+                pos += 2;
+            } else if (buffer[pos] == '"') {
+                return pos;
+            } else {
+                pos++;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string");
+    }
+    
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+    
+    private int skipWhitespace(int pos) {
+        while (pos < length && isWhitespace(buffer[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+    
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+    
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+    
+    private String text(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
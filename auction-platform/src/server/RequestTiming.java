@@ -0,0 +1,191 @@
+package server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of one HTTP request went, hop by hop, for its Server-Timing header
+ * The WebServer's executor wrapper starts one when a request leaves the queue
+ * and keeps it in a thread local for the rest of the task, so body decoding
+ * and the RMI proxy add their part without it being passed around. Time the
+ * service reports back from placeBidTraced is taken out of the RMI hop.
+ * Calls made in parallel through AsyncAuctionService count once, as the
+ * time at least one of them was outstanding
+ */
+public final class RequestTiming {
+    
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+    
+    // Generated ids are unique per process start, e.g. 3f9a1c-1b
+    private static final String ID_PREFIX = Integer.toHexString(ThreadLocalRandom.current().nextInt(1 << 24) | 1 << 24).substring(1);
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+    private static final int MAX_ID_LENGTH = 64;
+    
+    private final long submittedNanos;
+    private final long dequeuedNanos;
+    private String requestId;
+    private long handlerNanos;
+    private long parseNanos;
+    private long rmiNanos;
+    private int rmiCalls;
+    private int rmiInFlight;
+    private long rmiBusySince;
+    private TracedBid service;
+    
+    private RequestTiming(long submittedNanos, long dequeuedNanos) {
+        this.submittedNanos = submittedNanos;
+        this.dequeuedNanos = dequeuedNanos;
+    }
+    
+    // Wraps the WebServer executor so each request's wait for a thread is known
+    public static Executor queueTimed(Executor executor) {
+        return command -> {
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                CURRENT.set(new RequestTiming(submitted, System.nanoTime()));
+                try {
+                    command.run();
+                } finally {
+                    CURRENT.remove();
+                }
+            });
+        };
+    }
+    
+    // Runs task with the calling thread's timing, for work handed to another pool on behalf of the request
+    public static Runnable inheriting(Runnable task) {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null) {
+            return task;
+        }
+        return () -> {
+            RequestTiming previous = CURRENT.get();
+            CURRENT.set(timing);
+            try {
+                task.run();
+            } finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+    
+    // Adds the duration of every call on the returned service to the current request's RMI hop
+    public static AuctionService rmiTimed(AuctionService service) {
+        return (AuctionService) Proxy.newProxyInstance(AuctionService.class.getClassLoader(),
+                                                       new Class<?>[] {AuctionService.class}, (proxy, method, args) -> {
+            RequestTiming timing = CURRENT.get();
+            if (timing != null) {
+                timing.rmiStarted();
+            }
+            try {
+                return method.invoke(service, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (timing != null) {
+                    timing.rmiFinished();
+                }
+            }
+        });
+    }
+    
+    // Called as the handler starts; keeps the caller's X-Request-Id if it is a usable one
+    public static RequestTiming start(String requestId) {
+        RequestTiming timing = CURRENT.get();
+        if (timing == null) {
+            long now = System.nanoTime();
+            timing = new RequestTiming(now, now);
+            CURRENT.set(timing);
+        }
+        timing.requestId = isValidId(requestId) ? requestId
+                         : ID_PREFIX + "-" + Long.toString(ID_SEQUENCE.incrementAndGet(), 36);
+        timing.handlerNanos = System.nanoTime();
+        return timing;
+    }
+    
+    // Null outside a request
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+    
+    public String getRequestId() { return requestId; }
+    
+    public long elapsedNanos() {
+        return System.nanoTime() - submittedNanos;
+    }
+    
+    private synchronized void rmiStarted() {
+        if (rmiInFlight++ == 0) {
+            rmiBusySince = System.nanoTime();
+        }
+        rmiCalls++;
+    }
+    
+    private synchronized void rmiFinished() {
+        if (--rmiInFlight == 0) {
+            rmiNanos += System.nanoTime() - rmiBusySince;
+        }
+    }
+    
+    public void parsed(long nanos) {
+        parseNanos += nanos;
+    }
+    
+    public void service(TracedBid bid) {
+        service = bid;
+    }
+    
+    // queue, parse, rmi (network and marshalling), service with its lock and replicate parts, app and total
+    public synchronized String serverTimingHeader() {
+        long total = elapsedNanos();
+        long queue = dequeuedNanos - submittedNanos;
+        long parse = handlerNanos - dequeuedNanos + parseNanos;
+        StringBuilder header = new StringBuilder(160);
+        appendMetric(header, "queue", queue);
+        appendMetric(header, "parse", parse);
+        if (rmiCalls > 0) {
+            long serviceNanos = service != null ? service.getServiceNanos() : 0;
+            appendMetric(header, "rmi", Math.max(0, rmiNanos - serviceNanos));
+            header.append(";desc=\"").append(rmiCalls).append(rmiCalls == 1 ? " call\"" : " calls\"");
+        }
+        if (service != null) {
+            appendMetric(header, "service", service.getServiceNanos());
+            appendMetric(header, "lock", service.getValidationNanos());
+            appendMetric(header, "replicate", service.getReplicationNanos());
+        }
+        appendMetric(header, "app", Math.max(0, total - queue - parse - rmiNanos));
+        appendMetric(header, "total", total);
+        return header.toString();
+    }
+    
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        // Milliseconds with microsecond precision
+        long micros = nanos / 1000;
+        header.append(name).append(";dur=").append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            header.append(fraction < 10 ? "00" : "0");
+        }
+        header.append(fraction);
+    }
+    
+    // Ids are echoed in a header and written to logs, so only short, plain ones are kept
+    private static boolean isValidId(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,423 @@
+package server;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Socket factory for exporting AuctionServiceImpl with tuned TCP options and optional compression
+ * The server exports with it and clients receive a copy inside the stub, so
+ * both ends of every connection agree on the settings. With compression on,
+ * everything written between two flushes (one RMI call or reply) becomes a
+ * frame that is deflated if it is at least compressAboveBytes long, so large
+ * listings shrink while small bids go out as they are. Factories with the
+ * same settings are equal, which lets RMI reuse idle connections across stubs
+ */
+public final class RmiSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private static final int RAW_FRAME = 0;
+    private static final int DEFLATED_FRAME = 1;
+    // Largest RMI call or reply either end will send or accept, so a corrupt length cannot allocate gigabytes
+    private static final int MAX_FRAME_BYTES = Integer.getInteger("auction.rmi.maxFrameBytes", 64 << 20);
+    // Frame buffers larger than this are dropped once used, not kept for the life of the connection
+    private static final int RETAINED_BYTES = 1 << 20;
+    
+    // Bytes written by compressing sockets in this JVM, before and after compression;
+    // AuctionServiceImpl registers them as counters
+    static final LongAdder payloadBytes = new LongAdder();
+    static final LongAdder wireBytes = new LongAdder();
+    
+    private final boolean tcpNoDelay;
+    private final boolean keepAlive;
+    private final int sendBufferBytes;
+    private final int receiveBufferBytes;
+    private final int compressAboveBytes;
+    
+    // Buffer sizes of 0 keep the OS defaults; compressAboveBytes of 0 turns compression off
+    public RmiSocketFactory(boolean tcpNoDelay, boolean keepAlive, int sendBufferBytes, int receiveBufferBytes,
+                            int compressAboveBytes) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.keepAlive = keepAlive;
+        this.sendBufferBytes = sendBufferBytes;
+        this.receiveBufferBytes = receiveBufferBytes;
+        this.compressAboveBytes = compressAboveBytes;
+    }
+    
+    // Null, meaning the JDK's own sockets, when auction.rmi.socketFactory is false
+    public static RmiSocketFactory fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("auction.rmi.socketFactory", "true"))) {
+            return null;
+        }
+        return new RmiSocketFactory(Boolean.parseBoolean(System.getProperty("auction.rmi.tcpNoDelay", "true")),
+                                    Boolean.parseBoolean(System.getProperty("auction.rmi.keepAlive", "true")),
+                                    Integer.getInteger("auction.rmi.sendBufferBytes", 0),
+                                    Integer.getInteger("auction.rmi.receiveBufferBytes", 0),
+                                    Integer.getInteger("auction.rmi.compressAboveBytes", 0));
+    }
+    
+    // Port AuctionServiceImpl is exported on, so a firewall can allow it; 0 picks a free one
+    public static int exportPort() {
+        return Integer.getInteger("auction.rmi.exportPort", 0);
+    }
+    
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = newSocket();
+        try {
+            // Buffer sizes must be set before connecting for the TCP window to use them
+            configure(socket);
+            socket.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+    
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = newSocket();
+                implAccept(socket);
+                configure(socket);
+                return socket;
+            }
+        };
+        try {
+            // Accepted sockets inherit the receive buffer, which has to be set before binding
+            if (receiveBufferBytes > 0) {
+                serverSocket.setReceiveBufferSize(receiveBufferBytes);
+            }
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        return serverSocket;
+    }
+    
+    private Socket newSocket() {
+        return compressAboveBytes > 0 ? new FramedSocket(compressAboveBytes) : new Socket();
+    }
+    
+    private void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(keepAlive);
+        if (sendBufferBytes > 0) {
+            socket.setSendBufferSize(sendBufferBytes);
+        }
+        if (receiveBufferBytes > 0) {
+            socket.setReceiveBufferSize(receiveBufferBytes);
+        }
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RmiSocketFactory)) return false;
+        RmiSocketFactory other = (RmiSocketFactory) o;
+        return tcpNoDelay == other.tcpNoDelay && keepAlive == other.keepAlive
+            && sendBufferBytes == other.sendBufferBytes && receiveBufferBytes == other.receiveBufferBytes
+            && compressAboveBytes == other.compressAboveBytes;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(tcpNoDelay, keepAlive, sendBufferBytes, receiveBufferBytes, compressAboveBytes);
+    }
+    
+    @Override
+    public String toString() {
+        return "tcpNoDelay=" + tcpNoDelay + " keepAlive=" + keepAlive + " sendBufferBytes=" + sendBufferBytes
+            + " receiveBufferBytes=" + receiveBufferBytes + " compressAboveBytes=" + compressAboveBytes;
+    }
+    
+    // Socket whose streams carry frames, used on both ends when compression is on
+    private static final class FramedSocket extends Socket {
+        private final int compressAboveBytes;
+        private InputStream in;
+        private OutputStream out;
+        
+        FramedSocket(int compressAboveBytes) {
+            this.compressAboveBytes = compressAboveBytes;
+        }
+        
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new FrameInputStream(super.getInputStream());
+            }
+            return in;
+        }
+        
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new FrameOutputStream(super.getOutputStream(), compressAboveBytes);
+            }
+            return out;
+        }
+    }
+    
+    // Buffers writes until flush, then sends them as one frame:
+    // type byte, payload length and, for deflated frames, the deflated length, then the bytes
+    private static final class FrameOutputStream extends FilterOutputStream {
+        private static final int RAW_HEADER = 5;
+        private static final int DEFLATED_HEADER = 9;
+        
+        private final int compressAboveBytes;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        // Payload starts after room for the longer header, so a frame goes out in one write
+        private byte[] buffer = new byte[DEFLATED_HEADER + 8192];
+        private int count = DEFLATED_HEADER;
+        private byte[] deflated = new byte[0];
+        
+        FrameOutputStream(OutputStream out, int compressAboveBytes) {
+            super(out);
+            this.compressAboveBytes = compressAboveBytes;
+        }
+        
+        // A message over the limit fails here, on the sender, instead of at the receiver
+        private void ensureCapacity(int extra) throws IOException {
+            if ((long) count - DEFLATED_HEADER + extra > MAX_FRAME_BYTES) {
+                count = DEFLATED_HEADER;
+                throw new IOException("RMI message larger than auction.rmi.maxFrameBytes (" + MAX_FRAME_BYTES + ")");
+            }
+            if (count + extra > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, count + extra)];
+                System.arraycopy(buffer, 0, grown, 0, count);
+                buffer = grown;
+            }
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            int length = count - DEFLATED_HEADER;
+            if (length > 0) {
+                if (length < compressAboveBytes || !writeDeflated(length)) {
+                    int start = DEFLATED_HEADER - RAW_HEADER;
+                    buffer[start] = RAW_FRAME;
+                    putInt(buffer, start + 1, length);
+                    out.write(buffer, start, RAW_HEADER + length);
+                    wireBytes.add(RAW_HEADER + length);
+                }
+                payloadBytes.add(length);
+                count = DEFLATED_HEADER;
+                if (buffer.length > RETAINED_BYTES) {
+                    buffer = new byte[DEFLATED_HEADER + 8192];
+                }
+            }
+            out.flush();
+        }
+        
+        // False if the payload did not get smaller, in which case it is sent raw
+        private boolean writeDeflated(int length) throws IOException {
+            if (deflated.length < DEFLATED_HEADER + length) {
+                deflated = new byte[DEFLATED_HEADER + length];
+            }
+            deflater.reset();
+            deflater.setInput(buffer, DEFLATED_HEADER, length);
+            deflater.finish();
+            int deflatedLength = deflater.deflate(deflated, DEFLATED_HEADER, length);
+            if (!deflater.finished()) {
+                return false;
+            }
+            deflated[0] = DEFLATED_FRAME;
+            putInt(deflated, 1, length);
+            putInt(deflated, 5, deflatedLength);
+            out.write(deflated, 0, DEFLATED_HEADER + deflatedLength);
+            wireBytes.add(DEFLATED_HEADER + deflatedLength);
+            if (deflated.length > RETAINED_BYTES) {
+                deflated = new byte[0];
+            }
+            return true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                deflater.end();
+                out.close();
+            }
+        }
+    }
+    
+    // Reads what FrameOutputStream wrote; raw frames are passed through without copying
+    private static final class FrameInputStream extends FilterInputStream {
+        private final Inflater inflater = new Inflater();
+        private final byte[] header = new byte[4];
+        private final byte[] single = new byte[1];
+        private byte[] inflated = new byte[0];
+        private byte[] deflated = new byte[0];
+        private int pos;
+        private int limit;
+        private int rawRemaining;
+        
+        FrameInputStream(InputStream in) {
+            super(in);
+        }
+        
+        // False at end of stream between frames
+        private boolean nextFrame() throws IOException {
+            int type = in.read();
+            if (type < 0) {
+                return false;
+            }
+            readFully(header, 4);
+            int length = getInt(header, 0);
+            if (length < 0 || length > MAX_FRAME_BYTES) {
+                throw new StreamCorruptedException("Bad RMI frame length " + length);
+            }
+            if (type == RAW_FRAME) {
+                rawRemaining = length;
+                return true;
+            }
+            if (type != DEFLATED_FRAME) {
+                throw new StreamCorruptedException("Bad RMI frame type " + type);
+            }
+            readFully(header, 4);
+            int deflatedLength = getInt(header, 0);
+            if (deflatedLength < 0 || deflatedLength > MAX_FRAME_BYTES) {
+                throw new StreamCorruptedException("Bad RMI frame length " + deflatedLength);
+            }
+            deflated = sized(deflated, deflatedLength);
+            inflated = sized(inflated, length);
+            readFully(deflated, deflatedLength);
+            inflater.reset();
+            inflater.setInput(deflated, 0, deflatedLength);
+            try {
+                if (inflater.inflate(inflated, 0, length) != length || !inflater.finished()) {
+                    throw new StreamCorruptedException("Truncated RMI frame");
+                }
+            } catch (DataFormatException e) {
+                throw new StreamCorruptedException("Corrupt RMI frame: " + e.getMessage());
+            }
+            pos = 0;
+            limit = length;
+            return true;
+        }
+        
+        // Grows a buffer, or shrinks one a large frame left behind
+        private static byte[] sized(byte[] b, int length) {
+            return b.length < length || b.length > RETAINED_BYTES && length <= RETAINED_BYTES ? new byte[length] : b;
+        }
+        
+        private void readFully(byte[] b, int len) throws IOException {
+            int n = 0;
+            while (n < len) {
+                int read = in.read(b, n, len - n);
+                if (read < 0) {
+                    throw new EOFException("RMI connection closed inside a frame");
+                }
+                n += read;
+            }
+        }
+        
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (rawRemaining == 0 && pos == limit) {
+                if (!nextFrame()) {
+                    return -1;
+                }
+            }
+            if (rawRemaining > 0) {
+                int read = in.read(b, off, Math.min(len, rawRemaining));
+                if (read < 0) {
+                    throw new EOFException("RMI connection closed inside a frame");
+                }
+                rawRemaining -= read;
+                return read;
+            }
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(inflated, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] scratch = new byte[(int) Math.min(n, 4096)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(scratch, 0, (int) Math.min(n - skipped, scratch.length));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return rawRemaining > 0 ? Math.min(rawRemaining, in.available()) : limit - pos;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                inflater.end();
+            } finally {
+                in.close();
+            }
+        }
+    }
+    
+    private static void putInt(byte[] b, int off, int value) {
+        b[off] = (byte) (value >>> 24);
+        b[off + 1] = (byte) (value >>> 16);
+        b[off + 2] = (byte) (value >>> 8);
+        b[off + 3] = (byte) value;
+    }
+    
+    private static int getInt(byte[] b, int off) {
+        return (b[off] & 0xff) << 24 | (b[off + 1] & 0xff) << 16 | (b[off + 2] & 0xff) << 8 | (b[off + 3] & 0xff);
+    }
+}
\ No newline at end of file
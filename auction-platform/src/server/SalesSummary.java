@@ -0,0 +1,39 @@
+package server;
+
+import java.io.Serializable;
+
+// Aggregated final prices of archived auctions for one seller on one day
+public class SalesSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private String sellerName;
+    private String day;
+    private long auctionsSold;
+    private double totalFinalPrice;
+    
+    public SalesSummary(String sellerName, String day, long auctionsSold, double totalFinalPrice) {
+        this.sellerName = sellerName;
+        this.day = day;
+        this.auctionsSold = auctionsSold;
+        this.totalFinalPrice = totalFinalPrice;
+    }
+    
+    // Getters and setters
+    public String getSellerName() { return sellerName; }
+    public void setSellerName(String sellerName) { this.sellerName = sellerName; }
+    
+    public String getDay() { return day; }
+    public void setDay(String day) { this.day = day; }
+    
+    public long getAuctionsSold() { return auctionsSold; }
+    public void setAuctionsSold(long auctionsSold) { this.auctionsSold = auctionsSold; }
+    
+    public double getTotalFinalPrice() { return totalFinalPrice; }
+    public void setTotalFinalPrice(double totalFinalPrice) { this.totalFinalPrice = totalFinalPrice; }
+    
+    @Override
+    public String toString() {
+        return String.format("SalesSummary{seller='%s', day=%s, sold=%d, total=%.2f}",
+                           sellerName, day, auctionsSold, totalFinalPrice);
+    }
+}
\ No newline at end of file
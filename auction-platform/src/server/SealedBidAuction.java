@@ -0,0 +1,268 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sealed bids and clearing rounds of one batch-clearing auction
+ * Bids are not compared when they arrive. Each one is appended to one of
+ * several stripes picked by thread, each with its own padded counters and
+ * chunks of primitive columns, so submission is a counter increment and a
+ * few array stores with no lock and no shared Auction state. A thread whose
+ * stripe is full moves on to the next one.
+ *
+ * A clearing round swaps in an empty generation, waits for appends already
+ * in flight, then ranks the whole batch at once: every bid at or above the
+ * reserve becomes a long key of amount and position, the keys are sorted,
+ * and the top units win, with ties at the margin going to the earlier bid
+ */
+public class SealedBidAuction {
+    
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    
+    // Sort keys hold the amount above the bid's position in the round
+    private static final int POSITION_BITS = 24;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    public static final long MAX_AMOUNT_MINOR = Long.MAX_VALUE >>> POSITION_BITS;
+    public static final int MAX_BIDS_PER_ROUND = 1 << POSITION_BITS;
+    
+    // Reservation counters of a sealed stripe have this bit set
+    private static final int SEALED = 1 << 30;
+    
+    // Ints between the counters of neighbouring stripes, one cache line
+    private static final int PAD = 16;
+    
+    private static final int STRIPES = Integer.highestOneBit(
+        Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+    private static final int STRIPE_CAPACITY = MAX_BIDS_PER_ROUND / STRIPES;
+    
+    // Primitive columns for CHUNK_SIZE bids
+    private static final class Chunk {
+        final long[] bidIds = new long[CHUNK_SIZE];
+        final long[] amounts = new long[CHUNK_SIZE];
+        final long[] timestamps = new long[CHUNK_SIZE];
+        final int[] bidderIds = new int[CHUNK_SIZE];
+    }
+    
+    // Bids collected between two clearings
+    private static final class Generation {
+        // Per stripe: reserved slots at [s * PAD], completed appends at [s * PAD + 1]
+        final AtomicIntegerArray counters = new AtomicIntegerArray(STRIPES * PAD);
+        final AtomicReferenceArray<AtomicReferenceArray<Chunk>> chunks = new AtomicReferenceArray<>(STRIPES);
+        final int[] sealedCounts = new int[STRIPES];
+        
+        Chunk chunk(int stripe, int index) {
+            AtomicReferenceArray<Chunk> stripeChunks = chunks.get(stripe);
+            if (stripeChunks == null) {
+                chunks.compareAndSet(stripe, null, new AtomicReferenceArray<>(STRIPE_CAPACITY / CHUNK_SIZE));
+                stripeChunks = chunks.get(stripe);
+            }
+            int c = index >>> CHUNK_SHIFT;
+            Chunk chunk = stripeChunks.get(c);
+            if (chunk == null) {
+                stripeChunks.compareAndSet(c, null, new Chunk());
+                chunk = stripeChunks.get(c);
+            }
+            return chunk;
+        }
+        
+        // Stops new appends and waits for those that already reserved a slot
+        void seal() {
+            for (int s = 0; s < STRIPES; s++) {
+                int reserved = counters.getAndAdd(s * PAD, SEALED);
+                while (counters.get(s * PAD + 1) < reserved) {
+                    Thread.onSpinWait();
+                }
+                sealedCounts[s] = Math.min(reserved, STRIPE_CAPACITY);
+            }
+        }
+    }
+    
+    private final long auctionId;
+    private final PricingRule pricingRule;
+    private final int units;
+    private final long reserveMinor;
+    private final List<ClearingResult> results = Collections.synchronizedList(new ArrayList<>());
+    private volatile Generation current = new Generation();
+    private int rounds;
+    
+    // Set by the owner once the final round's outcome is on the auction, so it can be archived
+    private volatile boolean finished;
+    
+    public SealedBidAuction(long auctionId, PricingRule pricingRule, int units, long reserveMinor) {
+        this.auctionId = auctionId;
+        this.pricingRule = pricingRule;
+        this.units = units;
+        this.reserveMinor = reserveMinor;
+    }
+    
+    public long getAuctionId() { return auctionId; }
+    public PricingRule getPricingRule() { return pricingRule; }
+    public int getUnits() { return units; }
+    public long getReserveMinor() { return reserveMinor; }
+    public boolean isClosed() { return current == null; }
+    public boolean isFinished() { return finished; }
+    
+    void markFinished() {
+        finished = true;
+    }
+    
+    public List<ClearingResult> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+    
+    // False once the final round has cleared, or when every stripe of this round is full
+    public boolean submit(long bidId, long amountMinor, int bidderId, long timestampMillis) {
+        int home = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        Generation generation = current;
+        int tried = 0;
+        while (generation != null && tried < STRIPES) {
+            int stripe = (home + tried) & (STRIPES - 1);
+            int reservedAt = stripe * PAD;
+            int reserved = generation.counters.get(reservedAt);
+            if (reserved >= STRIPE_CAPACITY && reserved < SEALED) {
+                tried++;
+                continue;
+            }
+            int index = generation.counters.getAndIncrement(reservedAt);
+            if (index >= SEALED) {
+                // Taken by a clearing that has already installed the next generation
+                generation = current;
+                tried = 0;
+                continue;
+            }
+            if (index < STRIPE_CAPACITY) {
+                Chunk chunk = generation.chunk(stripe, index);
+                int offset = index & CHUNK_MASK;
+                chunk.bidIds[offset] = bidId;
+                chunk.amounts[offset] = amountMinor;
+                chunk.timestamps[offset] = timestampMillis;
+                chunk.bidderIds[offset] = bidderId;
+                generation.counters.incrementAndGet(reservedAt + 1);
+                return true;
+            }
+            generation.counters.incrementAndGet(reservedAt + 1);
+            tried++;
+        }
+        return false;
+    }
+    
+    /**
+     * Clears the bids collected since the previous round
+     * A final round also stops further submissions. Returns null when a
+     * non-final round had no bids. Clearings must not run concurrently
+     */
+    public ClearingResult clear(boolean finalRound, UserDictionary dictionary) {
+        Generation generation = current;
+        if (generation == null) {
+            return null;
+        }
+        current = finalRound ? null : new Generation();
+        generation.seal();
+        
+        int bidCount = 0;
+        for (int count : generation.sealedCounts) {
+            bidCount += count;
+        }
+        if (bidCount == 0 && !finalRound) {
+            return null;
+        }
+        
+        // One key per bid at or above the reserve; the position is stripe-major
+        long[] keys = new long[bidCount];
+        int eligible = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            for (int i = 0; i < generation.sealedCounts[s]; i++) {
+                long amount = generation.chunk(s, i).amounts[i & CHUNK_MASK];
+                if (amount >= reserveMinor) {
+                    keys[eligible++] = (amount << POSITION_BITS) | (s * STRIPE_CAPACITY + i);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, eligible);
+        
+        int winners = Math.min(units, eligible);
+        long[] winningPositions = selectWinners(generation, keys, eligible, winners);
+        long price = price(keys, eligible, winners);
+        
+        List<Bid> winningBids = new ArrayList<>(winners);
+        for (long position : winningPositions) {
+            int s = (int) (position / STRIPE_CAPACITY);
+            int i = (int) (position % STRIPE_CAPACITY);
+            Chunk chunk = generation.chunk(s, i);
+            int offset = i & CHUNK_MASK;
+            winningBids.add(new Bid(chunk.bidIds[offset], auctionId, dictionary.nameOf(chunk.bidderIds[offset]),
+                                    BidHistory.fromMinorUnits(chunk.amounts[offset]),
+                                    BidHistory.formatTimestamp(chunk.timestamps[offset])));
+        }
+        winningBids.sort((a, b) -> a.getAmount() != b.getAmount()
+            ? Double.compare(b.getAmount(), a.getAmount()) : Long.compare(a.getBidId(), b.getBidId()));
+        
+        ClearingResult result = new ClearingResult(auctionId, ++rounds,
+                                                   BidHistory.formatTimestamp(System.currentTimeMillis()),
+                                                   pricingRule, bidCount, BidHistory.fromMinorUnits(price), winningBids);
+        results.add(result);
+        return result;
+    }
+    
+    // Positions of the top bids; bids tied at the lowest winning amount are ordered by bid id
+    private static long[] selectWinners(Generation generation, long[] keys, int eligible, int winners) {
+        long[] positions = new long[winners];
+        if (winners == 0) {
+            return positions;
+        }
+        int lowestWinner = eligible - winners;
+        long marginalAmount = keys[lowestWinner] >>> POSITION_BITS;
+        
+        // Everything above the marginal amount wins outright
+        int n = 0;
+        int tiedFrom = lowestWinner;
+        while (tiedFrom > 0 && keys[tiedFrom - 1] >>> POSITION_BITS == marginalAmount) {
+            tiedFrom--;
+        }
+        int tiedTo = lowestWinner;
+        while (tiedTo + 1 < eligible && keys[tiedTo + 1] >>> POSITION_BITS == marginalAmount) {
+            tiedTo++;
+        }
+        for (int k = tiedTo + 1; k < eligible; k++) {
+            positions[n++] = keys[k] & POSITION_MASK;
+        }
+        
+        // The remaining units go to the earliest of the tied bids, sorted by bid id above position
+        long[] tied = new long[tiedTo - tiedFrom + 1];
+        for (int k = tiedFrom; k <= tiedTo; k++) {
+            long position = keys[k] & POSITION_MASK;
+            int s = (int) (position / STRIPE_CAPACITY);
+            int i = (int) (position % STRIPE_CAPACITY);
+            tied[k - tiedFrom] = (generation.chunk(s, i).bidIds[i & CHUNK_MASK] << POSITION_BITS) | position;
+        }
+        Arrays.sort(tied);
+        for (int k = 0; n < winners; k++) {
+            positions[n++] = tied[k] & POSITION_MASK;
+        }
+        return positions;
+    }
+    
+    private long price(long[] keys, int eligible, int winners) {
+        if (winners == 0) {
+            return reserveMinor;
+        }
+        long lowestWinning = keys[eligible - winners] >>> POSITION_BITS;
+        switch (pricingRule) {
+            case SECOND_PRICE:
+                return eligible > winners ? keys[eligible - winners - 1] >>> POSITION_BITS : reserveMinor;
+            case FIRST_PRICE:
+            case UNIFORM_PRICE:
+            default:
+                return lowestWinning;
+        }
+    }
+}
\ No newline at end of file
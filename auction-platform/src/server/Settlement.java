@@ -0,0 +1,58 @@
+package server;
+
+// Final state of a closed auction, captured under its lock when it closes
+public class Settlement {
+    
+    private final long auctionId;
+    private final long closedAtMillis;
+    private final String sellerName;
+    private final String winnerName;
+    private final long priceMinor;
+    private final long totalBids;
+    
+    // Touched only by the worker settling it
+    private int attempts;
+    
+    public Settlement(long auctionId, long closedAtMillis, String sellerName, String winnerName,
+                      long priceMinor, long totalBids) {
+        this.auctionId = auctionId;
+        this.closedAtMillis = closedAtMillis;
+        this.sellerName = sellerName;
+        this.winnerName = winnerName;
+        this.priceMinor = priceMinor;
+        this.totalBids = totalBids;
+    }
+    
+    // Caller holds the auction lock
+    public static Settlement of(Auction auction) {
+        String winner = auction.getTotalBids() > 0 ? auction.getHighestBidder() : null;
+        return new Settlement(auction.getAuctionId(), auction.getClosedAtMillis(), auction.getSellerName(), winner,
+                              BidHistory.toMinorUnits(auction.getCurrentHighestBid()), auction.getTotalBids());
+    }
+    
+    public long getAuctionId() { return auctionId; }
+    public long getClosedAtMillis() { return closedAtMillis; }
+    public String getSellerName() { return sellerName; }
+    
+    // Null when the auction closed without bids
+    public String getWinnerName() { return winnerName; }
+    public boolean isSold() { return winnerName != null; }
+    
+    public long getPriceMinor() { return priceMinor; }
+    public double getPrice() { return BidHistory.fromMinorUnits(priceMinor); }
+    public long getTotalBids() { return totalBids; }
+    
+    int getAttempts() { return attempts; }
+    int incrementAttempts() { return ++attempts; }
+    
+    // Identifies one close of one auction, so a replayed settlement can be recognised downstream
+    public String key() {
+        return auctionId + ":" + closedAtMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Settlement{auction=%d, seller=%s, winner=%s, price=%.2f, bids=%d}",
+                           auctionId, sellerName, winnerName, getPrice(), totalBids);
+    }
+}
\ No newline at end of file
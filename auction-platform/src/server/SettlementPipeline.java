@@ -0,0 +1,337 @@
+package server;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Durable background pipeline that settles closed auctions
+ * Closing an auction only captures its final state and offers it to a
+ * lock-free queue. A journal thread appends whatever has queued up to an
+ * on-disk log, one flush per batch, and hands the batch to a pool of
+ * low-priority workers, so a burst of closes costs the bidding threads no
+ * more than the offer. Failed settlements are retried with exponential
+ * backoff. Completions are journalled too, and on restart the journal is
+ * compacted to the closes that never completed, which are settled again.
+ * The directory is locked first, as compaction replaces the journal file
+ */
+public class SettlementPipeline {
+    
+    // Work done once per closed auction; after a crash it may run again for the same Settlement.key
+    public interface Settler {
+        void settle(Settlement settlement) throws Exception;
+    }
+    
+    private static final String JOURNAL_FILE = "settlements.log";
+    private static final String COMPACTED_FILE = "settlements.log.tmp";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    
+    // Journal record types
+    private static final byte CLOSED = 1;
+    private static final byte SETTLED = 2;
+    private static final byte FAILED = 3;
+    
+    // A settled or abandoned auction waiting to be journalled
+    private static class Completion {
+        final Settlement settlement;
+        final byte outcome;
+        
+        Completion(Settlement settlement, byte outcome) {
+            this.settlement = settlement;
+            this.outcome = outcome;
+        }
+    }
+    
+    private final Settler settler;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryMillis;
+    private final boolean fsync;
+    
+    // Every close not yet settled or abandoned, by key; a close that is already here is ignored
+    private final Map<String, Settlement> unsettled = new ConcurrentHashMap<>();
+    private final Queue<Settlement> incoming = new ConcurrentLinkedQueue<>();
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    // Held until close, so no other process recovers or appends to this journal
+    private final DirectoryLock directoryLock;
+    
+    // Written only by the journal thread
+    private final FileOutputStream journalFile;
+    private final DataOutputStream journal;
+    private final Thread journalWriter;
+    private final ScheduledThreadPoolExecutor workers;
+    private volatile boolean running = true;
+    
+    private final LongAdder sold;
+    private final LongAdder unsold;
+    private final LongAdder failed;
+    private final LongAdder retries;
+    private final LongAdder journalErrors;
+    private final LatencyHistogram lag;
+    private final EventLog.Event settlementFailedEvent;
+    private final EventLog.Event journalFailedEvent;
+    
+    public SettlementPipeline(Path directory, int threads, int batchSize, int maxAttempts, long retryMillis,
+                              boolean fsync, Settler settler, EventLog eventLog, MetricsRegistry metrics)
+                              throws IOException {
+        this.settler = settler;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryMillis = retryMillis;
+        this.fsync = fsync;
+        this.sold = metrics.counter("settlements_total", "Settled auctions by outcome", "result", "sold");
+        this.unsold = metrics.counter("settlements_total", "Settled auctions by outcome", "result", "unsold");
+        this.failed = metrics.counter("settlements_total", "Settled auctions by outcome", "result", "failed");
+        this.retries = metrics.counter("settlement_retries_total", "Settlement attempts that failed and were retried");
+        this.journalErrors = metrics.counter("settlement_journal_errors_total", "Batches the settlement journal could not write");
+        this.lag = metrics.histogram("settlement_lag_seconds", "Time from an auction closing to its settlement");
+        metrics.gauge("settlement_queue_depth", "Closed auctions waiting for the settlement journal", queued::get);
+        metrics.gauge("settlement_backlog", "Closed auctions not yet settled", unsettled::size);
+        this.settlementFailedEvent = eventLog.event("settlement_failed", EventLog.Level.ERROR);
+        this.journalFailedEvent = eventLog.event("settlement_journal_failed", EventLog.Level.ERROR);
+        
+        this.directoryLock = DirectoryLock.acquire(directory);
+        List<Settlement> recovered;
+        try {
+            recovered = recover(directory);
+            this.journalFile = new FileOutputStream(directory.resolve(JOURNAL_FILE).toFile(), true);
+        } catch (IOException e) {
+            directoryLock.close();
+            throw e;
+        }
+        this.journal = new DataOutputStream(new BufferedOutputStream(journalFile, 64 * 1024));
+        
+        this.workers = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "auction-settlement");
+            thread.setDaemon(true);
+            // Settling can wait; bids cannot
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        metrics.executorGauges("settlement", workers);
+        
+        // Recovered closes are already in the compacted journal
+        for (Settlement settlement : recovered) {
+            unsettled.put(settlement.key(), settlement);
+        }
+        for (int i = 0; i < recovered.size(); i += batchSize) {
+            List<Settlement> batch = new ArrayList<>(recovered.subList(i, Math.min(i + batchSize, recovered.size())));
+            workers.execute(() -> settleBatch(batch));
+        }
+        if (!recovered.isEmpty()) {
+            System.out.println("Resuming settlement of " + recovered.size() + " closed auctions");
+        }
+        
+        this.journalWriter = new Thread(this::drain, "settlement-journal");
+        journalWriter.setDaemon(true);
+        journalWriter.start();
+    }
+    
+    // Configured with auction.settlement.dir, .threads, .batchSize, .maxAttempts, .retryMillis and .fsync
+    public static SettlementPipeline fromSystemProperties(Settler settler, EventLog eventLog, MetricsRegistry metrics)
+                                                          throws IOException {
+        String directory = System.getProperty("auction.settlement.dir", AuctionServer.nodeDirectory("settlement"));
+        return new SettlementPipeline(Path.of(directory),
+                                      Integer.getInteger("auction.settlement.threads", 1),
+                                      Integer.getInteger("auction.settlement.batchSize", 256),
+                                      Integer.getInteger("auction.settlement.maxAttempts", 5),
+                                      Long.getLong("auction.settlement.retryMillis", 500),
+                                      Boolean.getBoolean("auction.settlement.fsync"),
+                                      settler, eventLog, metrics);
+    }
+    
+    // Called under the auction lock right after it closed; never blocks
+    public void submit(Settlement settlement) {
+        if (!running || unsettled.putIfAbsent(settlement.key(), settlement) != null) {
+            return;
+        }
+        queued.incrementAndGet();
+        incoming.offer(settlement);
+    }
+    
+    public int backlog() {
+        return unsettled.size();
+    }
+    
+    public String status() {
+        return unsettled.size() + " pending, " + (sold.sum() + unsold.sum()) + " settled, " + failed.sum()
+               + " failed, " + retries.sum() + " retries";
+    }
+    
+    // Journal thread: appends queued closes and finished settlements, then hands the closes to the workers
+    private void drain() {
+        List<Settlement> batch = new ArrayList<>(batchSize);
+        while (running || !incoming.isEmpty() || !completions.isEmpty()) {
+            Settlement settlement;
+            while (batch.size() < batchSize && (settlement = incoming.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(settlement);
+            }
+            int written = batch.size();
+            try {
+                for (Settlement closed : batch) {
+                    writeClosed(journal, closed);
+                }
+                Completion completion;
+                while ((completion = completions.poll()) != null) {
+                    writeCompletion(completion);
+                    written++;
+                }
+                if (written > 0) {
+                    journal.flush();
+                    if (fsync) {
+                        journalFile.getFD().sync();
+                    }
+                }
+            } catch (IOException e) {
+                // The batch is still settled; only a restart before it completes would miss it
+                journalErrors.increment();
+                if (journalFailedEvent.isLoggable()) {
+                    journalFailedEvent.log("closes=" + batch.size() + " error=\"" + e.getMessage() + "\"");
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<Settlement> settling = new ArrayList<>(batch);
+                workers.execute(() -> settleBatch(settling));
+                batch.clear();
+            } else if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+    
+    private void settleBatch(List<Settlement> batch) {
+        for (Settlement settlement : batch) {
+            settle(settlement);
+        }
+    }
+    
+    private void settle(Settlement settlement) {
+        if (!unsettled.containsKey(settlement.key())) {
+            return;
+        }
+        try {
+            settler.settle(settlement);
+        } catch (Exception e) {
+            int attempts = settlement.incrementAttempts();
+            if (attempts < maxAttempts && !workers.isShutdown()) {
+                retries.increment();
+                workers.schedule(() -> settle(settlement), retryMillis << (attempts - 1), TimeUnit.MILLISECONDS);
+                return;
+            }
+            failed.increment();
+            if (settlementFailedEvent.isLoggable()) {
+                settlementFailedEvent.log("id=" + settlement.getAuctionId() + " key=" + settlement.key()
+                                          + " attempts=" + attempts + " error=\"" + e + "\"");
+            }
+            complete(settlement, FAILED);
+            return;
+        }
+        (settlement.isSold() ? sold : unsold).increment();
+        lag.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - settlement.getClosedAtMillis())));
+        complete(settlement, SETTLED);
+    }
+    
+    private void complete(Settlement settlement, byte outcome) {
+        completions.offer(new Completion(settlement, outcome));
+        unsettled.remove(settlement.key());
+    }
+    
+    private static void writeClosed(DataOutputStream out, Settlement settlement) throws IOException {
+        out.writeByte(CLOSED);
+        out.writeLong(settlement.getAuctionId());
+        out.writeLong(settlement.getClosedAtMillis());
+        out.writeLong(settlement.getPriceMinor());
+        out.writeLong(settlement.getTotalBids());
+        out.writeUTF(settlement.getSellerName());
+        out.writeBoolean(settlement.isSold());
+        if (settlement.isSold()) {
+            out.writeUTF(settlement.getWinnerName());
+        }
+    }
+    
+    private void writeCompletion(Completion completion) throws IOException {
+        journal.writeByte(completion.outcome);
+        journal.writeLong(completion.settlement.getAuctionId());
+        journal.writeLong(completion.settlement.getClosedAtMillis());
+    }
+    
+    // Reads the closes that never completed and rewrites the journal with only those
+    private List<Settlement> recover(Path directory) throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE);
+        Map<String, Settlement> pending = new LinkedHashMap<>();
+        if (Files.exists(journalPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+                while (true) {
+                    try {
+                        byte type = in.readByte();
+                        long auctionId = in.readLong();
+                        long closedAtMillis = in.readLong();
+                        if (type == CLOSED) {
+                            long priceMinor = in.readLong();
+                            long totalBids = in.readLong();
+                            String seller = in.readUTF();
+                            String winner = in.readBoolean() ? in.readUTF() : null;
+                            Settlement settlement = new Settlement(auctionId, closedAtMillis, seller, winner,
+                                                                   priceMinor, totalBids);
+                            pending.put(settlement.key(), settlement);
+                        } else {
+                            pending.remove(auctionId + ":" + closedAtMillis);
+                        }
+                    } catch (EOFException e) {
+                        break; // End of journal, or a torn final record
+                    }
+                }
+            }
+        }
+        
+        Path compacted = directory.resolve(COMPACTED_FILE);
+        try (FileOutputStream file = new FileOutputStream(compacted.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            for (Settlement settlement : pending.values()) {
+                writeClosed(out, settlement);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ArrayList<>(pending.values());
+    }
+    
+    // Writes out queued closes and completions and stops; unsettled closes stay in the journal
+    public void close() {
+        running = false;
+        LockSupport.unpark(journalWriter);
+        try {
+            journalWriter.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing settlement journal: " + e.getMessage());
+        }
+        try {
+            directoryLock.close();
+        } catch (IOException e) {
+            System.err.println("Error unlocking settlement directory: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
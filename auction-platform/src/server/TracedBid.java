@@ -0,0 +1,62 @@
+package server;
+
+import java.io.Serializable;
+
+// Outcome of placeBidTraced with the time the service spent on it, for the caller's Server-Timing header
+public class TracedBid implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final String requestId;
+    private long bidId;
+    private String rejectReason;
+    private long serviceNanos;
+    private long validationNanos;
+    private long replicationNanos;
+    private boolean auctionStateKnown;
+    private boolean auctionActive;
+    private double minimumNextBid;
+    private long epoch;
+    
+    public TracedBid(String requestId) {
+        this.requestId = requestId;
+    }
+    
+    public String getRequestId() { return requestId; }
+    
+    public boolean isAccepted() { return rejectReason == null; }
+    public long getBidId() { return bidId; }
+    
+    // The message placeBid would have thrown, null when the bid was accepted
+    public String getRejectReason() { return rejectReason; }
+    
+    // Whole call on the service, including the two below
+    public long getServiceNanos() { return serviceNanos; }
+    
+    // From the call arriving to the bid being validated, including the wait for the auction lock
+    public long getValidationNanos() { return validationNanos; }
+    
+    // Waiting for backups to acknowledge the bid
+    public long getReplicationNanos() { return replicationNanos; }
+    
+    // The auction as the service saw it after this bid, so the caller can turn away bids that cannot win;
+    // unknown for sealed-bid auctions and auctions no longer held in memory
+    public boolean isAuctionStateKnown() { return auctionStateKnown; }
+    public boolean isAuctionActive() { return auctionActive; }
+    public double getMinimumNextBid() { return minimumNextBid; }
+    
+    // Replication epoch of the primary that answered, 0 when it has no replication server
+    public long getEpoch() { return epoch; }
+    
+    void accepted(long bidId) { this.bidId = bidId; }
+    void rejected(String reason) { this.rejectReason = reason; }
+    void setServiceNanos(long serviceNanos) { this.serviceNanos = serviceNanos; }
+    void setValidationNanos(long validationNanos) { this.validationNanos = validationNanos; }
+    void setReplicationNanos(long replicationNanos) { this.replicationNanos = replicationNanos; }
+    void setEpoch(long epoch) { this.epoch = epoch; }
+    
+    void setAuctionState(boolean active, double minimumNextBid) {
+        this.auctionStateKnown = true;
+        this.auctionActive = active;
+        this.minimumNextBid = minimumNextBid;
+    }
+}
\ No newline at end of file
@@ -6,11 +6,16 @@ import java.io.Serializable;
 public class User implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    private int userId = -1;
     private String username;
     private String email;
     private boolean isSeller;
-    private long totalBids;
-    private long totalAuctions;
+    
+    // Counters are incremented by concurrent requests
+    private volatile long totalBids;
+    private volatile long totalAuctions;
+    private volatile long auctionsWon;
+    private volatile long auctionsSold;
     
     public User(String username, String email, boolean isSeller) {
         this.username = username;
@@ -21,6 +26,9 @@ public class User implements Serializable {
     }
     
     // Getters and setters
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+    
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
     
@@ -36,8 +44,14 @@ public class User implements Serializable {
     public long getTotalAuctions() { return totalAuctions; }
     public void setTotalAuctions(long totalAuctions) { this.totalAuctions = totalAuctions; }
     
-    public void incrementBidCount() { this.totalBids++; }
-    public void incrementAuctionCount() { this.totalAuctions++; }
+    // Counted when an auction settles
+    public long getAuctionsWon() { return auctionsWon; }
+    public long getAuctionsSold() { return auctionsSold; }
+    
+    public synchronized void incrementBidCount() { this.totalBids++; }
+    public synchronized void incrementAuctionCount() { this.totalAuctions++; }
+    public synchronized void incrementAuctionsWon() { this.auctionsWon++; }
+    public synchronized void incrementAuctionsSold() { this.auctionsSold++; }
     
     @Override
     public String toString() {
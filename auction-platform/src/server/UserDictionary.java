@@ -0,0 +1,108 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent dictionary that interns user names as dense int ids
+ * Every name seen by the service (registered users, sellers and bidders) gets
+ * an id, and registered users are kept in an array indexed by that id.
+ * Lookups by id are a plain array read, so internal structures can store
+ * the id and resolve the name only when producing output
+ */
+public class UserDictionary {
+    
+    private final ConcurrentHashMap<String, Integer> idsByName = new ConcurrentHashMap<>();
+    
+    // Written under the dictionary lock, read without locking
+    private volatile String[] namesById = new String[64];
+    private volatile User[] usersById = new User[64];
+    private int nextId = 0;
+    private int registeredCount = 0;
+    
+    // Returns the id for the name, assigning a new one if it has not been seen yet
+    public int intern(String name) {
+        Integer id = idsByName.get(name);
+        if (id != null) {
+            return id;
+        }
+        
+        synchronized (this) {
+            id = idsByName.get(name);
+            if (id != null) {
+                return id;
+            }
+            
+            int newId = nextId++;
+            String[] names = namesById;
+            if (newId == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+                usersById = Arrays.copyOf(usersById, names.length);
+            }
+            names[newId] = name;
+            namesById = names;
+            
+            // Publishing through the map makes the array slot visible to readers
+            idsByName.put(name, newId);
+            return newId;
+        }
+    }
+    
+    // Returns the id for the name or -1 if the name is unknown
+    public int idOf(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : -1;
+    }
+    
+    public String nameOf(int id) {
+        return id >= 0 ? namesById[id] : null;
+    }
+    
+    // Registers the user under the id of its name, returns false if already registered
+    public boolean register(User user) {
+        int id = intern(user.getUsername());
+        synchronized (this) {
+            User[] users = usersById;
+            if (users[id] != null) {
+                return false;
+            }
+            user.setUserId(id);
+            users[id] = user;
+            usersById = users;
+            registeredCount++;
+            return true;
+        }
+    }
+    
+    // Returns the registered user with the given id or null
+    public User userOf(int id) {
+        User[] users = usersById;
+        return id >= 0 && id < users.length ? users[id] : null;
+    }
+    
+    public User userOf(String name) {
+        return userOf(idOf(name));
+    }
+    
+    public synchronized int registeredCount() {
+        return registeredCount;
+    }
+    
+    public List<String> registeredNames() {
+        List<String> names = new ArrayList<>();
+        User[] users = usersById;
+        String[] allNames = namesById;
+        for (int id = 0; id < users.length; id++) {
+            if (users[id] != null) {
+                names.add(allNames[id]);
+            }
+        }
+        return names;
+    }
+    
+    public int size() {
+        return idsByName.size();
+    }
+}
\ No newline at end of file
@@ -5,14 +5,20 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.rmi.Naming;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.net.URLDecoder;
+import java.rmi.RemoteException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Web Server that provides HTTP interface to the auction service
@@ -24,16 +30,75 @@ public class WebServer {
     private static final String SERVICE_URL = "rmi://localhost:1099/AuctionService";
     private static final String WEB_ROOT = "/home/scrapybara/auction-platform/web";
     
+    // Local read model, fed from the replication ports of the primaries (host:port,...)
+    private static final String READ_MODEL_SOURCES = System.getProperty("auction.readModel.sources");
+    private static final long READ_MODEL_MAX_STALENESS_MILLIS = Long.getLong("auction.readModel.maxStalenessMillis", 2000);
+    private static final long READ_MODEL_RETAIN_CLOSED_MINUTES = Long.getLong("auction.readModel.retainClosedMinutes", 60);
+    
+    // Most bids one /api/bids?since= request returns unless it asks for fewer or more
+    private static final int BIDS_SINCE_LIMIT = 1000;
+    
+    // HTTP front end: "jdk" for com.sun.net.httpserver, "nio" for the selector-based NioHttpServer
+    private static final String FRONTEND = System.getProperty("auction.web.frontend", "jdk");
+    
+    // Requests slower than this are logged with their Server-Timing breakdown
+    private static final long SLOW_REQUEST_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("auction.web.slowRequestMillis", 500));
+    
+    // Bids that cannot win are rejected here without an RMI call; see BidFloors
+    private static final boolean EDGE_REJECTION = Boolean.parseBoolean(System.getProperty("auction.web.edgeRejection", "true"));
+    private static final long BID_FLOOR_TTL_MILLIS = Long.getLong("auction.web.bidFloorTtlMillis", 2000);
+    private static final int BID_FLOOR_MAX_AUCTIONS = Integer.getInteger("auction.web.bidFloorMaxAuctions", 100_000);
+    
     private HttpServer server;
+    private NioHttpServer nioServer;
     private AuctionService auctionService;
+    private final AsyncAuctionService asyncService;
+    private ThreadPoolExecutor executor;
+    private final MetricsRegistry metrics = new MetricsRegistry("auction_web");
+    private AuctionReadModel readModel;
+    private final LongAdder readsFromModel = metrics.counter("reads_total", "GET requests by data source", "source", "read_model");
+    private final LongAdder readsFromService = metrics.counter("reads_total", "GET requests by data source", "source", "service");
+    private BidFloors bidFloors;
+    private final EventLog eventLog;
+    private final EventLog.Event slowRequestEvent;
     
     public WebServer() throws Exception {
-        // Connect to the auction service
-        auctionService = (AuctionService) Naming.lookup(SERVICE_URL);
+        // Connect to the auction service; time spent in its calls is charged to the current request
+        auctionService = RequestTiming.rmiTimed(PartitionedAuctionService.lookup(SERVICE_URL));
+        // Pages that need several calls make them in parallel; this client also survives a server restart
+        asyncService = AsyncAuctionService.fromSystemProperties(
+            () -> RequestTiming.rmiTimed(PartitionedAuctionService.lookup(SERVICE_URL)));
+        eventLog = EventLog.fromSystemProperties(metrics);
+        slowRequestEvent = eventLog.event("slow_request", EventLog.Level.WARN);
         
         // Create HTTP server
-        server = HttpServer.create(new InetSocketAddress(WEB_PORT), 0);
-        server.setExecutor(Executors.newFixedThreadPool(10));
+        executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(10);
+        metrics.executorGauges("web", executor);
+        metrics.executorGauges("async", asyncService.getExecutor());
+        metrics.gauge("service_lookups", "AuctionService stub lookups by the async client", asyncService::getLookupCount);
+        if ("nio".equals(FRONTEND)) {
+            nioServer = new NioHttpServer(new InetSocketAddress(WEB_PORT));
+            nioServer.setExecutor(RequestTiming.queueTimed(executor));
+            metrics.gauge("http_connections", "Open HTTP connections", nioServer::getOpenConnections);
+            metrics.gauge("http_pooled_buffers", "Direct buffers idle in the pool", () -> nioServer.getBufferPool().pooledCount());
+            metrics.gauge("http_allocated_buffers", "Direct buffers allocated because the pool was empty",
+                          () -> nioServer.getBufferPool().allocatedCount());
+        } else {
+            server = HttpServer.create(new InetSocketAddress(WEB_PORT), 0);
+            server.setExecutor(RequestTiming.queueTimed(executor));
+        }
+        
+        if (READ_MODEL_SOURCES != null) {
+            readModel = new AuctionReadModel(Arrays.asList(READ_MODEL_SOURCES.split(",")),
+                                             TimeUnit.MINUTES.toMillis(READ_MODEL_RETAIN_CLOSED_MINUTES));
+            readModel.start();
+            metrics.gauge("read_model_staleness_millis", "Upper bound on read model age, -1 until caught up",
+                          () -> readModel.getStalenessMillis() == Long.MAX_VALUE ? -1 : readModel.getStalenessMillis());
+            metrics.gauge("read_model_lag", "Mutations announced by the primaries but not yet applied", readModel::getLag);
+        }
+        if (EDGE_REJECTION) {
+            bidFloors = new BidFloors(readModel, BID_FLOOR_TTL_MILLIS, BID_FLOOR_MAX_AUCTIONS, metrics);
+        }
         
         // Set up route handlers
         setupRoutes();
@@ -41,22 +106,72 @@ public class WebServer {
     
     private void setupRoutes() {
         // Static file handler for HTML, CSS, JS files
-        server.createContext("/", new StaticFileHandler());
+        route("/", timed("static", new StaticFileHandler()));
         
         // API endpoints
-        server.createContext("/api/auctions", new AuctionHandler());
-        server.createContext("/api/bids", new BidHandler());
-        server.createContext("/api/users", new UserHandler());
-        server.createContext("/api/status", new StatusHandler());
+        route("/api/auctions", timed("auctions", new AuctionHandler()));
+        route("/api/bids", timed("bids", new BidHandler()));
+        route("/api/users", timed("users", new UserHandler()));
+        route("/api/status", timed("status", new StatusHandler()));
+        route("/api/metrics", timed("metrics", new MetricsHandler()));
+        route("/api/bulk", timed("bulk", new BulkHandler()));
+    }
+    
+    private void route(String path, HttpHandler handler) {
+        if (nioServer != null) {
+            nioServer.createContext(path, handler);
+        } else {
+            server.createContext(path, handler);
+        }
+    }
+    
+    // Wraps a handler so every exchange is recorded in its latency histogram and as a JFR event,
+    // and slow ones are logged with their timing breakdown
+    private HttpHandler timed(String name, HttpHandler handler) {
+        LatencyHistogram latency = metrics.histogram("latency_seconds",
+            "Latency of WebServer handlers", "handler", name);
+        return exchange -> {
+            long start = System.nanoTime();
+            FlightEvents.HttpRequest flight = FlightEvents.beginHttpRequest();
+            RequestTiming timing = RequestTiming.start(exchange.getRequestHeaders().getFirst("X-Request-Id"));
+            try {
+                handler.handle(exchange);
+            } finally {
+                latency.recordSince(start);
+                flight.finish(name, exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                              exchange.getResponseCode());
+                if (timing.elapsedNanos() >= SLOW_REQUEST_NANOS && slowRequestEvent.isLoggable()) {
+                    slowRequestEvent.log("request=" + timing.getRequestId() + " route=" + name
+                                         + " method=" + exchange.getRequestMethod()
+                                         + " path=" + exchange.getRequestURI().getPath()
+                                         + " status=" + exchange.getResponseCode()
+                                         + " timing='" + timing.serverTimingHeader() + "'");
+                }
+            }
+        };
     }
     
     public void start() {
-        server.start();
-        System.out.println("Web server started on http://localhost:" + WEB_PORT);
+        if (nioServer != null) {
+            nioServer.start();
+        } else {
+            server.start();
+        }
+        System.out.println("Web server started on http://localhost:" + WEB_PORT + " (" + FRONTEND + " front end)");
     }
     
     public void stop() {
-        server.stop(0);
+        if (nioServer != null) {
+            nioServer.stop();
+        } else {
+            server.stop(0);
+        }
+        executor.shutdown();
+        asyncService.close();
+        if (readModel != null) {
+            readModel.stop();
+        }
+        eventLog.close();
         System.out.println("Web server stopped");
     }
     
@@ -79,14 +194,14 @@ public class WebServer {
                 byte[] content = Files.readAllBytes(Paths.get(filePath));
                 
                 exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.sendResponseHeaders(200, content.length);
+                sendResponseHeaders(exchange, 200, content.length);
                 
                 OutputStream os = exchange.getResponseBody();
                 os.write(content);
                 os.close();
             } else {
                 String response = "404 Not Found";
-                exchange.sendResponseHeaders(404, response.length());
+                sendResponseHeaders(exchange, 404, response.length());
                 OutputStream os = exchange.getResponseBody();
                 os.write(response.getBytes());
                 os.close();
@@ -109,30 +224,84 @@ public class WebServer {
             String method = exchange.getRequestMethod();
             String response = "";
             
+            String path = exchange.getRequestURI().getPath();
+            
             try {
-                if ("GET".equals(method)) {
+                if ("GET".equals(method) && path.equals("/api/auctions/hot")) {
+                    // Get the auctions with the highest recent bid rate
+                    Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+                    int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : 10;
+                    List<HotAuction> hotAuctions = useReadModel(exchange)
+                        ? readModel.getHotAuctions(limit) : auctionService.getHotAuctions(limit);
+                    response = JsonEncoder.convertHotAuctionsToJson(hotAuctions);
+                } else if ("GET".equals(method) && path.equals("/api/auctions/results")) {
+                    // Get the clearing rounds of a sealed-bid auction
+                    Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+                    long auctionId = Long.parseLong(params.get("auctionId"));
+                    response = JsonEncoder.convertClearingResultsToJson(auctionService.getClearingResults(auctionId));
+                } else if ("GET".equals(method) && path.equals("/api/auctions/ending")) {
+                    // Get the auctions ending soonest: before (epoch millis, default one hour from now)
+                    RequestDecoder query = RequestDecoder.get().decodeQuery(exchange.getRequestURI().getRawQuery());
+                    long before = query.has("before") ? query.getLong("before")
+                        : System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+                    int limit = query.has("limit") ? (int) query.getLong("limit") : 20;
+                    response = JsonEncoder.convertAuctionsToJson(auctionService.getAuctionsEndingBefore(before, limit));
+                } else if ("GET".equals(method) && path.equals("/api/auctions/price")) {
+                    // Get the auctions whose current highest bid is within [min, max]
+                    RequestDecoder query = RequestDecoder.get().decodeQuery(exchange.getRequestURI().getRawQuery());
+                    double min = query.has("min") ? query.getDouble("min") : 0;
+                    double max = query.has("max") ? query.getDouble("max") : Double.MAX_VALUE;
+                    int limit = query.has("limit") ? (int) query.getLong("limit") : 20;
+                    response = JsonEncoder.convertAuctionsToJson(auctionService.getAuctionsInPriceRange(min, max, limit));
+                } else if ("GET".equals(method) && path.startsWith("/api/auctions/") && path.endsWith("/history")) {
+                    // Get the downsampled price history of an auction: /api/auctions/{id}/history
+                    String id = path.substring("/api/auctions/".length(), path.length() - "/history".length());
+                    RequestDecoder query = RequestDecoder.get().decodeQuery(exchange.getRequestURI().getRawQuery());
+                    int resolution = query.has("resolution") ? (int) query.getLong("resolution") : 0;
+                    response = JsonEncoder.convertPriceSeriesToJson(
+                        auctionService.getPriceHistory(Long.parseLong(id), resolution));
+                } else if ("GET".equals(method) && path.matches("/api/auctions/\\d+")) {
+                    // Auction page: /api/auctions/{id}
+                    response = auctionPage(asyncService, Long.parseLong(path.substring("/api/auctions/".length())));
+                } else if ("GET".equals(method)) {
                     // Get all active auctions
-                    List<Auction> auctions = auctionService.getAllActiveAuctions();
-                    response = convertAuctionsToJson(auctions);
+                    List<Auction> auctions = useReadModel(exchange)
+                        ? readModel.getActiveAuctions() : auctionService.getAllActiveAuctions();
+                    response = JsonEncoder.convertAuctionsToJson(auctions);
                 } else if ("POST".equals(method)) {
                     // Create new auction
                     String body = readRequestBody(exchange);
                     Map<String, String> params = parseFormData(body);
                     
-                    long auctionId = auctionService.createAuction(
-                        params.get("itemName"),
-                        params.get("description"),
-                        params.get("sellerName"),
-                        Double.parseDouble(params.get("startingPrice")),
-                        Double.parseDouble(params.get("bidIncrement")),
-                        Long.parseLong(params.get("duration"))
-                    );
+                    long auctionId;
+                    if (params.containsKey("pricingRule")) {
+                        // Sealed-bid auction: startingPrice is the reserve, cleared in batches
+                        auctionId = auctionService.createSealedBidAuction(
+                            params.get("itemName"),
+                            params.get("description"),
+                            params.get("sellerName"),
+                            Double.parseDouble(params.get("startingPrice")),
+                            params.containsKey("units") ? Integer.parseInt(params.get("units")) : 1,
+                            PricingRule.valueOf(params.get("pricingRule")),
+                            params.containsKey("clearingInterval") ? Long.parseLong(params.get("clearingInterval")) : 0,
+                            Long.parseLong(params.get("duration"))
+                        );
+                    } else {
+                        auctionId = auctionService.createAuction(
+                            params.get("itemName"),
+                            params.get("description"),
+                            params.get("sellerName"),
+                            Double.parseDouble(params.get("startingPrice")),
+                            Double.parseDouble(params.get("bidIncrement")),
+                            Long.parseLong(params.get("duration"))
+                        );
+                    }
                     
                     response = "{\"success\": true, \"auctionId\": " + auctionId + "}";
                 }
                 
                 sendJsonResponse(exchange, response);
-                
+            
             } catch (Exception e) {
                 String errorResponse = "{\"success\": false, \"error\": \"" + e.getMessage() + "\"}";
                 sendJsonResponse(exchange, errorResponse);
@@ -149,31 +318,55 @@ public class WebServer {
             
             try {
                 if ("POST".equals(method)) {
-                    // Place a bid
-                    String body = readRequestBody(exchange);
-                    Map<String, String> params = parseFormData(body);
+                    // Place a bid; the service reports its share of the time for Server-Timing
+                    RequestDecoder request = decodeRequestBody(exchange);
+                    RequestTiming timing = RequestTiming.current();
+                    long auctionId = request.getLong("auctionId");
+                    String bidderName = request.getString("bidderName");
+                    double bidAmount = request.getDouble("bidAmount");
                     
-                    long bidId = auctionService.placeBid(
-                        Long.parseLong(params.get("auctionId")),
-                        params.get("bidderName"),
-                        Double.parseDouble(params.get("bidAmount"))
-                    );
-                    
-                    response = "{\"success\": true, \"bidId\": " + bidId + "}";
+                    // Bids already below the auction's minimum, or for a closed auction, are answered here
+                    String rejection = bidFloors != null ? bidFloors.rejectionOf(auctionId, bidAmount) : null;
+                    if (rejection != null) {
+                        response = "{\"success\": false, \"error\": \"" + rejection + "\"}";
+                    } else {
+                        TracedBid bid = auctionService.placeBidTraced(timing.getRequestId(), auctionId, bidderName, bidAmount);
+                        timing.service(bid);
+                        if (bidFloors != null) {
+                            bidFloors.observe(auctionId, bid);
+                        }
+                        
+                        response = bid.isAccepted()
+                            ? "{\"success\": true, \"bidId\": " + bid.getBidId() + "}"
+                            : "{\"success\": false, \"error\": \"" + bid.getRejectReason() + "\"}";
+                    }
                 } else if ("GET".equals(method)) {
                     // Get bids for an auction
-                    String query = exchange.getRequestURI().getQuery();
-                    Map<String, String> params = parseQueryString(query);
+                    RequestDecoder query = RequestDecoder.get().decodeQuery(exchange.getRequestURI().getRawQuery());
                     
-                    if (params.containsKey("auctionId")) {
-                        long auctionId = Long.parseLong(params.get("auctionId"));
-                        List<Bid> bids = auctionService.getBidsForAuction(auctionId);
-                        response = convertBidsToJson(bids);
+                    if (query.has("auctionId") && query.has("since")) {
+                        // Only the bids after the last one the client has seen
+                        long auctionId = query.getLong("auctionId");
+                        long since = query.getLong("since");
+                        int limit = query.has("limit") ? (int) query.getLong("limit") : BIDS_SINCE_LIMIT;
+                        List<Bid> bids = useReadModel(exchange) ? readModel.getBidsSince(auctionId, since, limit) : null;
+                        if (bids == null) {
+                            bids = auctionService.getBidsSince(auctionId, since, limit);
+                        }
+                        response = JsonEncoder.convertBidsToJson(bids);
+                    } else if (query.has("auctionId")) {
+                        long auctionId = query.getLong("auctionId");
+                        // Auctions the read model no longer holds are answered from the archive
+                        List<Bid> bids = useReadModel(exchange) ? readModel.getBids(auctionId) : null;
+                        if (bids == null) {
+                            bids = auctionService.getBidsForAuction(auctionId);
+                        }
+                        response = JsonEncoder.convertBidsToJson(bids);
                     }
                 }
                 
                 sendJsonResponse(exchange, response);
-                
+            
             } catch (Exception e) {
                 String errorResponse = "{\"success\": false, \"error\": \"" + e.getMessage() + "\"}";
                 sendJsonResponse(exchange, errorResponse);
@@ -201,10 +394,22 @@ public class WebServer {
                     );
                     
                     response = "{\"success\": " + success + "}";
+                } else if ("GET".equals(method)) {
+                    // User page: ?username=, with the user's auctions and bids fetched in parallel
+                    RequestDecoder query = RequestDecoder.get().decodeQuery(exchange.getRequestURI().getRawQuery());
+                    String username = query.getString("username");
+                    CompletableFuture<User> user = asyncService.call(service -> service.getUserInfo(username));
+                    CompletableFuture<List<Auction>> auctions = asyncService.call(service -> service.getAuctionsByUser(username));
+                    CompletableFuture<List<Bid>> bids = asyncService.call(service -> service.getBidsByUser(username));
+                    AsyncAuctionService.await(AsyncAuctionService.all(user, auctions, bids));
+                    if (user.join() == null) {
+                        throw new IllegalArgumentException("User " + username + " not found");
+                    }
+                    response = JsonEncoder.convertUserProfileToJson(user.join(), auctions.join(), bids.join());
                 }
                 
                 sendJsonResponse(exchange, response);
-                
+            
             } catch (Exception e) {
                 String errorResponse = "{\"success\": false, \"error\": \"" + e.getMessage() + "\"}";
                 sendJsonResponse(exchange, errorResponse);
@@ -218,6 +423,9 @@ public class WebServer {
         public void handle(HttpExchange exchange) throws IOException {
             try {
                 String status = auctionService.getServerStatus();
+                if (readModel != null) {
+                    status += "\nRead Model: " + readModel.status();
+                }
                 String response = "{\"status\": \"" + status.replace("\\n", "\\\\n").replace("\"", "\\\\\"") + "\"}";
                 sendJsonResponse(exchange, response);
             } catch (Exception e) {
@@ -227,7 +435,97 @@ public class WebServer {
         }
     }
     
+    // Handler for Prometheus metrics of this web server and the auction service
+    class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            StringBuilder response = new StringBuilder(metrics.toPrometheusText());
+            try {
+                response.append(auctionService.getMetrics());
+            } catch (Exception e) {
+                response.append("# Auction service metrics unavailable: ").append(e.getMessage()).append("\n");
+            }
+            
+            byte[] body = response.toString().getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            sendResponseHeaders(exchange, 200, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        }
+    }
+    
+    // Handler for streaming bulk import and export, ?format=ndjson (default) or csv
+    class BulkHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            
+            try {
+                Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+                BulkFormat format = BulkFormat.fromName(params.get("format"));
+                
+                if ("POST".equals(method) && path.equals("/api/bulk/import")) {
+                    // Records are parsed from the body as it arrives and sent on in batches
+                    Reader body = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                    long imported = BulkTransfer.importRecords(format.reader(body), auctionService);
+                    sendJsonResponse(exchange, "{\"success\": true, \"imported\": " + imported + "}");
+                } else if ("GET".equals(method) && path.equals("/api/bulk/export")) {
+                    exchange.getResponseHeaders().set("Content-Type", format.getContentType());
+                    exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"auctions."
+                                                      + format.name().toLowerCase() + "\"");
+                    sendResponseHeaders(exchange, 200, 0);
+                    try (Writer out = new BufferedWriter(
+                            new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16)) {
+                        BulkTransfer.exportRecords(auctionService, format.writer(out));
+                    }
+                } else {
+                    sendJsonResponse(exchange, "{\"success\": false, \"error\": \"Unknown bulk operation\"}");
+                }
+            } catch (Exception e) {
+                if (exchange.getResponseCode() != -1) {
+                    // An export already streaming can only be cut short
+                    exchange.close();
+                    return;
+                }
+                String errorResponse = "{\"success\": false, \"error\": \"" + e.getMessage() + "\"}";
+                sendJsonResponse(exchange, errorResponse);
+            }
+        }
+    }
+    
     // Helper methods
+    
+    // True if reads may come from the read model, which is the case while it is fresh enough
+    private boolean useReadModel(HttpExchange exchange) {
+        if (readModel == null) {
+            return false;
+        }
+        long staleness = readModel.getStalenessMillis();
+        if (staleness > READ_MODEL_MAX_STALENESS_MILLIS) {
+            readsFromService.increment();
+            return false;
+        }
+        exchange.getResponseHeaders().set("X-Read-Staleness-Millis", Long.toString(staleness));
+        readsFromModel.increment();
+        return true;
+    }
+    
+    // Form-encoded unless the request says it is JSON
+    private RequestDecoder decodeRequestBody(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        RequestDecoder request = contentType != null && contentType.startsWith("application/json")
+            ? RequestDecoder.get().decodeJson(exchange.getRequestBody())
+            : RequestDecoder.get().decodeForm(exchange.getRequestBody());
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            timing.parsed(System.nanoTime() - start);
+        }
+        return request;
+    }
+    
     private String readRequestBody(HttpExchange exchange) throws IOException {
         StringBuilder body = new StringBuilder();
         BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody()));
@@ -266,59 +564,37 @@ public class WebServer {
         return result;
     }
     
+    // Every response carries its correlation id and timing breakdown
+    private void sendResponseHeaders(HttpExchange exchange, int status, long length) throws IOException {
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            exchange.getResponseHeaders().set("X-Request-Id", timing.getRequestId());
+            exchange.getResponseHeaders().set("Server-Timing", timing.serverTimingHeader());
+            exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "X-Request-Id, Server-Timing");
+        }
+        exchange.sendResponseHeaders(status, length);
+    }
+    
     private void sendJsonResponse(HttpExchange exchange, String response) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "application/json");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.sendResponseHeaders(200, response.length());
+        sendResponseHeaders(exchange, 200, response.length());
         OutputStream os = exchange.getResponseBody();
         os.write(response.getBytes());
         os.close();
     }
     
-    private String convertAuctionsToJson(List<Auction> auctions) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < auctions.size(); i++) {
-            if (i > 0) json.append(",");
-            Auction a = auctions.get(i);
-            json.append("{")
-                .append("\"auctionId\":").append(a.getAuctionId()).append(",")
-                .append("\"itemName\":\"").append(escapeJson(a.getItemName())).append("\",")
-                .append("\"description\":\"").append(escapeJson(a.getDescription())).append("\",")
-                .append("\"sellerName\":\"").append(escapeJson(a.getSellerName())).append("\",")
-                .append("\"startingPrice\":").append(a.getStartingPrice()).append(",")
-                .append("\"currentHighestBid\":").append(a.getCurrentHighestBid()).append(",")
-                .append("\"highestBidder\":\"").append(escapeJson(a.getHighestBidder())).append("\",")
-                .append("\"bidIncrement\":").append(a.getBidIncrement()).append(",")
-                .append("\"startTime\":\"").append(a.getStartTime()).append("\",")
-                .append("\"endTime\":\"").append(a.getEndTime()).append("\",")
-                .append("\"isActive\":").append(a.isActive()).append(",")
-                .append("\"totalBids\":").append(a.getTotalBids())
-                .append("}");
-        }
-        json.append("]");
-        return json.toString();
-    }
-    
-    private String convertBidsToJson(List<Bid> bids) {
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < bids.size(); i++) {
-            if (i > 0) json.append(",");
-            Bid b = bids.get(i);
-            json.append("{")
-                .append("\"bidId\":").append(b.getBidId()).append(",")
-                .append("\"auctionId\":").append(b.getAuctionId()).append(",")
-                .append("\"bidderName\":\"").append(escapeJson(b.getBidderName())).append("\",")
-                .append("\"amount\":").append(b.getAmount()).append(",")
-                .append("\"timestamp\":\"").append(b.getTimestamp()).append("\"")
-                .append("}");
-        }
-        json.append("]");
-        return json.toString();
-    }
-    
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\\"", "\\\\\"").replace("\\n", "\\\\n").replace("\\r", "\\\\r");
+    // An auction with its bids, price history and seller, fetched in parallel. Sealed-bid
+    // auctions have no price history, so the page is rendered without one when that call fails
+    static String auctionPage(AsyncAuctionService asyncService, long auctionId) throws RemoteException {
+        CompletableFuture<Auction> auction = asyncService.call(service -> service.getAuction(auctionId));
+        CompletableFuture<List<Bid>> bids = asyncService.call(service -> service.getBidsForAuction(auctionId));
+        CompletableFuture<PriceSeries> history = asyncService.call(service -> service.getPriceHistory(auctionId, 0))
+            .exceptionally(e -> null);
+        CompletableFuture<User> seller = auction.thenCompose(
+            a -> asyncService.call(service -> service.getUserInfo(a.getSellerName())));
+        AsyncAuctionService.await(AsyncAuctionService.all(auction, bids, history, seller));
+        return JsonEncoder.convertAuctionDetailsToJson(auction.join(), bids.join(), history.join(), seller.join());
     }
     
     public static void main(String[] args) {
@@ -339,7 +615,7 @@ public class WebServer {
             synchronized (lock) {
                 lock.wait();
             }
-            
+        
         } catch (Exception e) {
             System.err.println("Web server error: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,93 @@
+package server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The WebServer's auction page, fetched through AsyncAuctionService from an
+ * in-process AuctionServiceImpl
+ */
+class AuctionPageTest {
+    
+    @TempDir
+    static Path dataDir;
+    
+    private static AuctionServiceImpl service;
+    private static AsyncAuctionService asyncService;
+    
+    @BeforeAll
+    static void startService() throws Exception {
+        System.setProperty("auction.archive.dir", dataDir.resolve("archive").toString());
+        System.setProperty("auction.settlement.dir", dataDir.resolve("settlement").toString());
+        System.setProperty("auction.log.level", "WARN");
+        service = new AuctionServiceImpl();
+        service.registerUser("seller", "seller@example.com", true);
+        service.registerUser("bidder", "bidder@example.com", false);
+        asyncService = new AsyncAuctionService(() -> service, 4, 100, 5000);
+    }
+    
+    @AfterAll
+    static void stopService() throws Exception {
+        asyncService.close();
+        service.shutdown();
+        UnicastRemoteObject.unexportObject(service, true);
+    }
+    
+    @Test
+    void englishAuctionPageHasPriceHistory() throws Exception {
+        long auctionId = service.createAuction("Lamp", "Brass", "seller", 10, 1, 60);
+        service.placeBid(auctionId, "bidder", 12);
+        
+        String page = WebServer.auctionPage(asyncService, auctionId);
+        
+        assertTrue(page.contains("\"itemName\":\"Lamp\""), page);
+        assertTrue(page.contains("\"history\":{"), page);
+        assertFalse(page.contains("\"seller\":null"), page);
+    }
+    
+    @Test
+    void sealedBidAuctionPageRendersWithoutPriceHistory() throws Exception {
+        long auctionId = service.createSealedBidAuction("Clock", "Walnut", "seller", 10, 1,
+                                                         PricingRule.SECOND_PRICE, 0, 60);
+        
+        String page = WebServer.auctionPage(asyncService, auctionId);
+        
+        assertTrue(page.contains("\"itemName\":\"Clock\""), page);
+        assertTrue(page.contains("\"history\":null"), page);
+        assertFalse(page.contains("\"seller\":null"), page);
+    }
+    
+    @Test
+    void serviceUsesThisClassesDataDirectories() {
+        // Another test class may have constructed a service in this JVM first
+        assertTrue(Files.isDirectory(dataDir.resolve("archive")));
+        assertTrue(Files.isDirectory(dataDir.resolve("settlement")));
+    }
+    
+    @Test
+    void secondServiceOnTheSameArchiveFailsAndReleasesItsSettlementDirectory() throws Exception {
+        Path settlementDir = dataDir.resolve("settlement-second");
+        System.setProperty("auction.settlement.dir", settlementDir.toString());
+        try {
+            RemoteException e = assertThrows(RemoteException.class, AuctionServiceImpl::new);
+            assertTrue(e.getMessage().contains("Could not open auction archive"), e.getMessage());
+        } finally {
+            System.setProperty("auction.settlement.dir", dataDir.resolve("settlement").toString());
+        }
+        DirectoryLock.acquire(settlementDir).close();
+    }
+    
+    @Test
+    void missingAuctionStillFailsThePage() {
+        assertThrows(RuntimeException.class, () -> WebServer.auctionPage(asyncService, 999_999));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.BindException;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuctionReadModel following a ReplicationServer that is restarted with new
+ * state, as a primary is after a crash
+ */
+class AuctionReadModelTest {
+    
+    private ReplicationServer primary;
+    private AuctionReadModel readModel;
+    
+    @AfterEach
+    void stop() {
+        if (readModel != null) {
+            readModel.stop();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+    
+    @Test
+    void restartedPrimaryReplacesAuctionsWithReusedIds() throws Exception {
+        primary = primary(0, new Auction(1, "Lamp", "Brass", "seller", 10, 1, 60), 5, 2000);
+        readModel = new AuctionReadModel(List.of("localhost:" + primary.getPort()), 60_000);
+        readModel.start();
+        awaitTrue(() -> readModel.getBids(1) != null && readModel.getBids(1).size() == 1);
+        assertEquals("Lamp", readModel.getAuction(1).getItemName());
+        
+        // The new primary hands out auction 1 and bid 1 again, for something else
+        int port = primary.getPort();
+        primary.close();
+        primary = restart(port, new Auction(1, "Clock", "Walnut", "seller", 10, 1, 60), 1, 1200);
+        awaitTrue(() -> readModel.getAuction(1) != null && "Clock".equals(readModel.getAuction(1).getItemName())
+                        && readModel.getStalenessMillis() != Long.MAX_VALUE);
+        
+        List<Bid> bids = readModel.getBids(1);
+        assertEquals(1, bids.size());
+        assertEquals(1, bids.get(0).getBidId());
+        assertEquals(12.0, readModel.getAuction(1).getCurrentHighestBid());
+    }
+    
+    // A primary whose snapshot is one auction with one bid
+    private static ReplicationServer primary(int port, Auction auction, long bidId, long amountMinor) throws Exception {
+        return new ReplicationServer(port, 1024, 0, 1000, sink -> {
+            sink.accept(new Mutation.UserRegistered("bidder", "bidder@example.com", false));
+            sink.accept(new Mutation.AuctionCreated(auction));
+            sink.accept(new Mutation.BidPlaced(bidId, auction.getAuctionId(), "bidder", amountMinor,
+                                               System.currentTimeMillis()));
+        }, new MetricsRegistry("test"));
+    }
+    
+    // The old port can be held briefly, e.g. by a socket another test was given it for
+    private static ReplicationServer restart(int port, Auction auction, long bidId, long amountMinor) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try {
+                return primary(port, auction, bidId, amountMinor);
+            } catch (BindException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the read model");
+            Thread.sleep(20);
+        }
+    }
+}
\ No newline at end of file
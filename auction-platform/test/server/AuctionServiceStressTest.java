@@ -0,0 +1,315 @@
+package server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency stress test of AuctionServiceImpl
+ * Worker threads run a random mix of placeBid, closeAuction and createAuction
+ * against a small set of auctions for auction.stress.seconds (default 2),
+ * recording when every call was made, when it returned and what it returned.
+ * The history is then checked against the auctions and bids the service ends
+ * up with, and against the real-time order of the calls: a call that returned
+ * before another was made must take effect first
+ */
+class AuctionServiceStressTest {
+    
+    private static final int THREADS = Integer.getInteger("auction.stress.threads",
+        Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    private static final long SECONDS = Long.getLong("auction.stress.seconds", 2);
+    
+    // Bids go to the newest auctions, so most of them contend
+    private static final int CONTENDED_AUCTIONS = 8;
+    private static final int BIDDERS = 16;
+    private static final double STARTING_PRICE = 100;
+    private static final double BID_INCREMENT = 5;
+    
+    private static final int BID = 0;
+    private static final int CLOSE = 1;
+    private static final int CREATE = 2;
+    
+    @TempDir
+    static Path dataDir;
+    
+    private static AuctionServiceImpl service;
+    
+    // One call and its outcome
+    private static final class Op {
+        final int kind;
+        final String bidder;
+        final long amountMinor;
+        final long invokedNanos;
+        long auctionId;
+        long returnedNanos;
+        boolean ok;
+        long bidId;
+        String error;
+        
+        Op(int kind, long auctionId, String bidder, long amountMinor) {
+            this.kind = kind;
+            this.auctionId = auctionId;
+            this.bidder = bidder;
+            this.amountMinor = amountMinor;
+            this.invokedNanos = System.nanoTime();
+        }
+    }
+    
+    @BeforeAll
+    static void startService() throws Exception {
+        System.setProperty("auction.archive.dir", dataDir.resolve("archive").toString());
+        System.setProperty("auction.settlement.dir", dataDir.resolve("settlement").toString());
+        System.setProperty("auction.log.level", "WARN");
+        service = new AuctionServiceImpl();
+        for (int i = 0; i < BIDDERS; i++) {
+            service.registerUser(bidderName(i), bidderName(i) + "@example.com", false);
+        }
+    }
+    
+    @AfterAll
+    static void stopService() throws Exception {
+        service.shutdown();
+        UnicastRemoteObject.unexportObject(service, true);
+    }
+    
+    @Test
+    void concurrentBidsClosesAndCreatesAreLinearizable() throws Exception {
+        List<Long> auctionIds = new CopyOnWriteArrayList<>();
+        List<Op> history = new ArrayList<>();
+        for (int i = 0; i < CONTENDED_AUCTIONS; i++) {
+            history.add(create(auctionIds));
+        }
+        
+        List<List<Op>> perThread = new ArrayList<>();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Op> ops = new ArrayList<>();
+            perThread.add(ops);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        ops.add(randomOp(auctionIds));
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        assertTrue(failures.isEmpty(), () -> "Worker failed: " + failures);
+        perThread.forEach(history::addAll);
+        
+        report(history, elapsedSeconds);
+        
+        Map<Long, List<Op>> byAuction = new HashMap<>();
+        for (Op op : history) {
+            byAuction.computeIfAbsent(op.auctionId, id -> new ArrayList<>()).add(op);
+        }
+        for (long auctionId : auctionIds) {
+            checkAuction(auctionId, byAuction.getOrDefault(auctionId, List.of()));
+        }
+        checkBidderCounts(history);
+    }
+    
+    private static Op randomOp(List<Long> auctionIds) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        if (roll < 2) {
+            return create(auctionIds);
+        }
+        long auctionId = auctionIds.get(auctionIds.size() - 1 - random.nextInt(CONTENDED_AUCTIONS));
+        if (roll < 3) {
+            Op op = new Op(CLOSE, auctionId, null, 0);
+            op.ok = service.closeAuction(auctionId);
+            op.returnedNanos = System.nanoTime();
+            return op;
+        }
+        
+        // Mostly the next valid bid, sometimes more, sometimes one that is already too low
+        Auction auction = service.getAuction(auctionId);
+        double amount = auction.getCurrentHighestBid() + BID_INCREMENT * random.nextInt(3);
+        String bidder = bidderName(random.nextInt(BIDDERS));
+        Op op = new Op(BID, auctionId, bidder, BidHistory.toMinorUnits(amount));
+        try {
+            op.bidId = service.placeBid(auctionId, bidder, amount);
+            op.ok = true;
+        } catch (RuntimeException e) {
+            op.error = e.getMessage();
+        }
+        op.returnedNanos = System.nanoTime();
+        return op;
+    }
+    
+    private static Op create(List<Long> auctionIds) throws Exception {
+        Op op = new Op(CREATE, 0, null, 0);
+        op.auctionId = service.createAuction("Stress item", "Created by the stress test", "alice",
+                                             STARTING_PRICE, BID_INCREMENT, 60);
+        op.ok = true;
+        op.returnedNanos = System.nanoTime();
+        auctionIds.add(op.auctionId);
+        return op;
+    }
+    
+    private static void checkAuction(long auctionId, List<Op> ops) throws Exception {
+        List<Op> accepted = new ArrayList<>();
+        List<Op> tooLow = new ArrayList<>();
+        List<Op> inactive = new ArrayList<>();
+        List<Op> closes = new ArrayList<>();
+        for (Op op : ops) {
+            if (op.kind == CLOSE && op.ok) {
+                closes.add(op);
+            } else if (op.kind == BID && op.ok) {
+                accepted.add(op);
+            } else if (op.kind == BID && op.error.contains("too low")) {
+                tooLow.add(op);
+            } else if (op.kind == BID && op.error.contains("no longer active")) {
+                inactive.add(op);
+            } else if (op.kind == BID) {
+                fail("Auction " + auctionId + ": unexpected rejection: " + op.error);
+            }
+        }
+        accepted.sort(Comparator.comparingLong(op -> op.bidId));
+        
+        // Every accepted bid is stored once, in the order it was accepted, and nothing else is
+        List<Bid> stored = service.getBidsForAuction(auctionId);
+        assertEquals(accepted.size(), stored.size(), "Auction " + auctionId + ": stored bids vs accepted bids");
+        long previousMinor = BidHistory.toMinorUnits(STARTING_PRICE);
+        long incrementMinor = BidHistory.toMinorUnits(BID_INCREMENT);
+        for (int i = 0; i < stored.size(); i++) {
+            Bid bid = stored.get(i);
+            Op op = accepted.get(i);
+            assertEquals(op.bidId, bid.getBidId(), "Auction " + auctionId + ": bid " + i + " id");
+            assertEquals(op.amountMinor, BidHistory.toMinorUnits(bid.getAmount()), "Auction " + auctionId + ": bid " + op.bidId + " amount");
+            assertEquals(op.bidder, bid.getBidderName(), "Auction " + auctionId + ": bid " + op.bidId + " bidder");
+            assertTrue(op.amountMinor >= previousMinor + incrementMinor,
+                       "Auction " + auctionId + ": bid " + op.bidId + " of " + op.amountMinor
+                       + " does not beat " + previousMinor + " by the increment");
+            previousMinor = op.amountMinor;
+        }
+        
+        Auction auction = service.getAuction(auctionId);
+        long expectedHighest = accepted.isEmpty() ? BidHistory.toMinorUnits(STARTING_PRICE)
+                                                  : accepted.get(accepted.size() - 1).amountMinor;
+        assertEquals(expectedHighest, BidHistory.toMinorUnits(auction.getCurrentHighestBid()),
+                     "Auction " + auctionId + ": highest bid vs highest accepted bid");
+        if (!accepted.isEmpty()) {
+            assertEquals(accepted.get(accepted.size() - 1).bidder, auction.getHighestBidder(),
+                         "Auction " + auctionId + ": highest bidder");
+        }
+        assertEquals(accepted.size(), auction.getTotalBids(), "Auction " + auctionId + ": bid count");
+        
+        // Bids take effect in real-time order: no bid is ordered before one that returned before it was made
+        long latestInvoked = Long.MIN_VALUE;
+        for (Op op : accepted) {
+            assertTrue(latestInvoked <= op.returnedNanos,
+                       "Auction " + auctionId + ": bid " + op.bidId + " ordered after a bid made once it had returned");
+            latestInvoked = Math.max(latestInvoked, op.invokedNanos);
+        }
+        
+        // One close succeeds; no bid made after it returned is accepted, and no bid is turned away before it began
+        assertTrue(closes.size() <= 1, "Auction " + auctionId + " closed " + closes.size() + " times");
+        assertEquals(closes.isEmpty(), auction.isActive(), "Auction " + auctionId + ": active flag");
+        if (!closes.isEmpty()) {
+            Op close = closes.get(0);
+            for (Op op : accepted) {
+                assertTrue(op.invokedNanos < close.returnedNanos,
+                           "Auction " + auctionId + ": bid " + op.bidId + " accepted after the close returned");
+            }
+            for (Op op : inactive) {
+                assertTrue(op.returnedNanos > close.invokedNanos,
+                           "Auction " + auctionId + ": bid rejected as inactive before the close was made");
+            }
+        } else {
+            assertTrue(inactive.isEmpty(), "Auction " + auctionId + ": bid rejected as inactive but never closed");
+        }
+        
+        // A bid too low was beaten by the starting price or by a bid made before the rejection returned
+        List<Op> byInvocation = new ArrayList<>(accepted);
+        byInvocation.sort(Comparator.comparingLong(op -> op.invokedNanos));
+        long[] invoked = new long[byInvocation.size()];
+        long[] highestSoFar = new long[byInvocation.size()];
+        long highest = BidHistory.toMinorUnits(STARTING_PRICE);
+        for (int i = 0; i < invoked.length; i++) {
+            invoked[i] = byInvocation.get(i).invokedNanos;
+            highest = Math.max(highest, byInvocation.get(i).amountMinor);
+            highestSoFar[i] = highest;
+        }
+        for (Op op : tooLow) {
+            int before = upperBound(invoked, op.returnedNanos);
+            long beaten = before > 0 ? highestSoFar[before - 1] : BidHistory.toMinorUnits(STARTING_PRICE);
+            assertTrue(op.amountMinor < beaten + incrementMinor,
+                       "Auction " + auctionId + ": bid of " + op.amountMinor + " rejected as too low, but at most "
+                       + beaten + " had been bid");
+        }
+    }
+    
+    // Bid counts of registered users must not lose concurrent increments
+    private static void checkBidderCounts(List<Op> history) throws Exception {
+        Map<String, Long> acceptedByBidder = new HashMap<>();
+        for (Op op : history) {
+            if (op.kind == BID && op.ok) {
+                acceptedByBidder.merge(op.bidder, 1L, Long::sum);
+            }
+        }
+        for (int i = 0; i < BIDDERS; i++) {
+            User user = service.getUserInfo(bidderName(i));
+            assertEquals(acceptedByBidder.getOrDefault(bidderName(i), 0L), user.getTotalBids(),
+                         "Bid count of " + bidderName(i));
+        }
+    }
+    
+    // Number of values not greater than key
+    private static int upperBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static void report(List<Op> history, double elapsedSeconds) {
+        int[] counts = new int[3];
+        int accepted = 0;
+        for (Op op : history) {
+            counts[op.kind]++;
+            if (op.kind == BID && op.ok) {
+                accepted++;
+            }
+        }
+        System.out.printf("%d threads, %.1f s: %d calls (%.0f/s), %d bids (%.0f/s, %d accepted), %d closes, %d creates%n",
+                          THREADS, elapsedSeconds, history.size(), history.size() / elapsedSeconds,
+                          counts[BID], counts[BID] / elapsedSeconds, accepted, counts[CLOSE], counts[CREATE]);
+    }
+    
+    private static String bidderName(int i) {
+        return "stress-bidder-" + i;
+    }
+}
\ No newline at end of file
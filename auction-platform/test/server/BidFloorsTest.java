@@ -0,0 +1,87 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BidFloors using a read model that follows a ReplicationServer, including
+ * after the primary has been replaced by one that reuses auction ids
+ */
+class BidFloorsTest {
+    
+    private static final long TTL_MILLIS = 500;
+    
+    private ReplicationServer primary;
+    private AuctionReadModel readModel;
+    private BidFloors floors;
+    
+    @BeforeEach
+    void start() throws Exception {
+        // Auction 1 at 20.00 with an increment of 1, so bids under 21.00 lose
+        Auction auction = new Auction(1, "Lamp", "Brass", "seller", 10, 1, 60);
+        primary = new ReplicationServer(0, 1024, 0, 1000, sink -> {
+            sink.accept(new Mutation.UserRegistered("bidder", "bidder@example.com", false));
+            sink.accept(new Mutation.AuctionCreated(auction));
+            sink.accept(new Mutation.BidPlaced(5, 1, "bidder", 2000, System.currentTimeMillis()));
+        }, new MetricsRegistry("test"));
+        readModel = new AuctionReadModel(List.of("localhost:" + primary.getPort()), 60_000);
+        readModel.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (readModel.getStalenessMillis() > TTL_MILLIS || readModel.getBids(1) == null || readModel.getBids(1).isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the read model");
+            Thread.sleep(20);
+        }
+        floors = new BidFloors(readModel, TTL_MILLIS, 100, new MetricsRegistry("test"));
+    }
+    
+    @AfterEach
+    void stop() {
+        readModel.stop();
+        primary.close();
+    }
+    
+    @Test
+    void readModelFloorIsUsedOnceTheServiceConfirmsItsEpoch() {
+        assertNull(floors.rejectionOf(1, 15), "No bid response has confirmed the read model's primary yet");
+        
+        floors.observe(2, bidAnsweredBy(primary.getEpoch()));
+        
+        assertEquals(AuctionServiceImpl.tooLowMessage(15, 21), floors.rejectionOf(1, 15));
+        assertNull(floors.rejectionOf(1, 21));
+    }
+    
+    @Test
+    void restartedPrimaryWithReusedIdIsNotJudgedByTheOldReadModel() throws Exception {
+        floors.observe(2, bidAnsweredBy(primary.getEpoch()));
+        Thread.sleep(TTL_MILLIS + 100);
+        
+        // The read model has not seen the restart yet, but the service now answers from a new
+        // epoch with a new auction 1 that opened at 10.00
+        TracedBid bid = bidAnsweredBy(primary.getEpoch() + 1);
+        bid.setAuctionState(true, 11);
+        floors.observe(1, bid);
+        
+        assertNull(floors.rejectionOf(1, 15));
+        assertEquals(AuctionServiceImpl.tooLowMessage(5, 11), floors.rejectionOf(1, 5));
+    }
+    
+    @Test
+    void readModelFloorIsIgnoredOnceStale() throws Exception {
+        primary.close();
+        Thread.sleep(TTL_MILLIS + 200);
+        floors.observe(2, bidAnsweredBy(primary.getEpoch()));
+        
+        assertNull(floors.rejectionOf(1, 15));
+    }
+    
+    private static TracedBid bidAnsweredBy(long epoch) {
+        TracedBid bid = new TracedBid("test");
+        bid.setEpoch(epoch);
+        return bid;
+    }
+}
\ No newline at end of file
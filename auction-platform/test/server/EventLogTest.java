@@ -0,0 +1,52 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EventLog shutdown: queued events reach the writer, and a log file is closed
+ */
+class EventLogTest {
+    
+    // Records whether it was closed
+    private static final class ClosingWriter extends StringWriter {
+        boolean closed;
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+    
+    @Test
+    void closeWritesQueuedEventsAndClosesTheFile() {
+        ClosingWriter file = new ClosingWriter();
+        EventLog log = new EventLog(EventLog.Level.INFO, 100, new BufferedWriter(file, 64 * 1024), true,
+                                    new MetricsRegistry("test"));
+        EventLog.Event event = log.event("bid_placed", EventLog.Level.INFO);
+        for (int i = 0; i < 10; i++) {
+            event.log("id=" + i);
+        }
+        
+        log.close();
+        
+        assertTrue(file.closed);
+        assertTrue(file.toString().contains("INFO bid_placed id=9"), file.toString());
+    }
+    
+    @Test
+    void closeLeavesStandardOutputOpen() {
+        ClosingWriter console = new ClosingWriter();
+        EventLog log = new EventLog(EventLog.Level.INFO, 100, console, false, new MetricsRegistry("test"));
+        log.event("bid_placed", EventLog.Level.INFO).log("id=1");
+        
+        log.close();
+        
+        assertFalse(console.closed);
+        assertTrue(console.toString().contains("id=1"));
+    }
+}
\ No newline at end of file
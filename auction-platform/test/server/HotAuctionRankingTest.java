@@ -0,0 +1,82 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HotAuctionRanking as bids age out of the window, and with bids recorded
+ * concurrently
+ */
+class HotAuctionRankingTest {
+    
+    @Test
+    void auctionWhoseBidsHaveExpiredMakesRoomForANewOne() {
+        HotAuctionRanking ranking = new HotAuctionRanking(1);
+        BidRateCounter cooled = new BidRateCounter(1);
+        BidRateCounter rising = new BidRateCounter(2);
+        for (int i = 0; i < 3; i++) {
+            ranking.recordBid(cooled, 1_000);
+        }
+        
+        long later = 1_000 + BidRateCounter.WINDOW_MILLIS + BidRateCounter.BUCKET_MILLIS;
+        ranking.recordBid(rising, later);
+        
+        List<HotAuctionRanking.Entry> top = ranking.top(1, later);
+        assertEquals(1, top.size());
+        assertEquals(2, top.get(0).getAuctionId());
+        assertEquals(1, top.get(0).getCount());
+    }
+    
+    @Test
+    void busierRankedAuctionIsNotDisplaced() {
+        HotAuctionRanking ranking = new HotAuctionRanking(1);
+        BidRateCounter busy = new BidRateCounter(1);
+        BidRateCounter quiet = new BidRateCounter(2);
+        ranking.recordBid(busy, 1_000);
+        ranking.recordBid(busy, 2_000);
+        ranking.recordBid(quiet, 3_000);
+        
+        assertEquals(1, ranking.top(1, 3_000).get(0).getAuctionId());
+    }
+    
+    @Test
+    void concurrentBidsAreAllCounted() throws Exception {
+        HotAuctionRanking ranking = new HotAuctionRanking(2);
+        BidRateCounter[] counters = {new BidRateCounter(1), new BidRateCounter(2), new BidRateCounter(3)};
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    // Auction 3 gets a third of auction 1's bids
+                    ranking.recordBid(counters[i % 6 < 3 ? 0 : i % 6 < 5 ? 1 : 2], 1_000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        List<HotAuctionRanking.Entry> top = ranking.top(2, 1_000);
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).getAuctionId());
+        assertEquals(20_004, top.get(0).getCount());
+        assertEquals(2, top.get(1).getAuctionId());
+        assertEquals(13_332, top.get(1).getCount());
+    }
+    
+    @Test
+    void removedAuctionIsNotRankedFromTheQueue() {
+        HotAuctionRanking ranking = new HotAuctionRanking(2);
+        BidRateCounter closed = new BidRateCounter(1);
+        ranking.recordBid(closed, 1_000);
+        ranking.remove(closed);
+        
+        assertTrue(ranking.top(2, 1_000).isEmpty());
+    }
+}
\ No newline at end of file
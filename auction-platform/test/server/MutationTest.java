@@ -0,0 +1,49 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mutations written to and read back from the replication stream format
+ */
+class MutationTest {
+    
+    @Test
+    void auctionWithDescriptionOver64KbRoundTrips() throws Exception {
+        String description = "é".repeat(100_000); // Two bytes each in UTF-8
+        Mutation.AuctionCreated created = new Mutation.AuctionCreated(
+            7, "Lamp", description, "seller", 10, 1, "2026-10-19 10:00:00", "2026-10-19 11:00:00", 1_000L);
+        created.seq = 42;
+        
+        Mutation.AuctionCreated read = (Mutation.AuctionCreated) roundTrip(created);
+        
+        assertEquals(42, read.getSeq());
+        assertEquals(7, read.getAuctionId());
+        assertEquals(description, read.getDescription());
+        assertEquals("seller", read.getSellerName());
+        assertEquals("2026-10-19 11:00:00", read.getEndTime());
+    }
+    
+    @Test
+    void missingEmailIsReadAsEmpty() throws Exception {
+        Mutation.UserRegistered read = (Mutation.UserRegistered) roundTrip(new Mutation.UserRegistered("bidder", null, false));
+        
+        assertEquals("bidder", read.getUsername());
+        assertEquals("", read.getEmail());
+    }
+    
+    private static Mutation roundTrip(Mutation mutation) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        mutation.writeTo(out);
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return Mutation.readFrom(in.readByte(), in);
+    }
+}
\ No newline at end of file
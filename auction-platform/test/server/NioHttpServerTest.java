@@ -0,0 +1,231 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NioHttpServer over raw sockets, so requests can be pipelined, split and
+ * oversized as a real client might send them
+ */
+class NioHttpServerTest {
+    
+    private static final int CHUNKED_BYTES = 40_000;
+    
+    private NioHttpServer server;
+    private ExecutorService handlers;
+    
+    @BeforeEach
+    void start() throws IOException {
+        server = new NioHttpServer(new InetSocketAddress("localhost", 0));
+        // Answers with the query, then the request body
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String query = exchange.getRequestURI().getQuery();
+            byte[] response = ((query != null ? query : "") + ":" + new String(body, StandardCharsets.UTF_8))
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        // More than one buffer of digits, written in small pieces without a length
+        server.createContext("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            for (int i = 0; i < CHUNKED_BYTES; i += 100) {
+                out.write(digits(i, 100));
+            }
+            exchange.close();
+        });
+        server.createContext("/fail", exchange -> {
+            throw new IllegalStateException("handler bug");
+        });
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+    }
+    
+    @AfterEach
+    void stop() {
+        server.stop();
+        handlers.shutdownNow();
+    }
+    
+    @Test
+    void pipelinedRequestsAreAnsweredInRequestOrder() throws IOException {
+        try (Socket socket = connect()) {
+            StringBuilder requests = new StringBuilder();
+            for (int i = 1; i <= 3; i++) {
+                requests.append("GET /echo?n=").append(i).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            }
+            requests.append("POST /echo?n=4 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nlast");
+            send(socket, requests.toString());
+            
+            InputStream in = socket.getInputStream();
+            for (int i = 1; i <= 3; i++) {
+                assertEquals("n=" + i + ":", readResponse(in).body);
+            }
+            assertEquals("n=4:last", readResponse(in).body);
+        }
+    }
+    
+    @Test
+    void bodyArrivingInPiecesIsReadWhole() throws Exception {
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 10\r\n\r\nhel");
+            Thread.sleep(100);
+            send(socket, "lowo");
+            Thread.sleep(100);
+            send(socket, "rld");
+            
+            Response response = readResponse(socket.getInputStream());
+            assertEquals(200, response.status);
+            assertEquals(":helloworld", response.body);
+        }
+    }
+    
+    @Test
+    void oversizedHeaderIsRejectedWith431() throws IOException {
+        try (Socket socket = connect()) {
+            // Exactly one read buffer with no end of headers in it
+            StringBuilder request = new StringBuilder("GET /echo HTTP/1.1\r\nX-Padding: ");
+            while (request.length() < 16 * 1024) {
+                request.append('a');
+            }
+            send(socket, request.toString());
+            
+            Response response = readResponse(socket.getInputStream());
+            assertEquals(431, response.status);
+            assertEquals("close", response.headers.get("connection"));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+    
+    @Test
+    void connectionCloseEndsTheConnectionAfterTheResponse() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "GET /echo?n=1 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+            
+            Response response = readResponse(socket.getInputStream());
+            assertEquals("n=1:", response.body);
+            assertEquals("close", response.headers.get("connection"));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+    
+    @Test
+    void responseWithoutALengthIsChunked() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "GET /chunked HTTP/1.1\r\nHost: localhost\r\n\r\nGET /echo?n=after HTTP/1.1\r\n\r\n");
+            
+            InputStream in = socket.getInputStream();
+            Response response = readResponse(in);
+            assertEquals("chunked", response.headers.get("transfer-encoding"));
+            assertTrue(response.chunks > 1, "Expected several chunks, got " + response.chunks);
+            assertEquals(CHUNKED_BYTES, response.body.length());
+            assertEquals(new String(digits(0, CHUNKED_BYTES), StandardCharsets.US_ASCII), response.body);
+            
+            // The connection stays usable after the last chunk
+            assertEquals("n=after:", readResponse(in).body);
+        }
+    }
+    
+    @Test
+    void failingHandlerIsLoggedAndLosesTheConnection() throws IOException {
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true));
+        try (Socket socket = connect()) {
+            send(socket, "GET /fail?id=7 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            System.setErr(originalErr);
+        }
+        assertTrue(err.toString().contains("GET /fail?id=7: java.lang.IllegalStateException: handler bug"),
+                   err.toString());
+    }
+    
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", server.getAddress().getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+    
+    private static void send(Socket socket, String data) throws IOException {
+        socket.getOutputStream().write(data.getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+    }
+    
+    // Digits of from, from + 1, ... wrapped to a single character each
+    private static byte[] digits(int from, int count) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) ('0' + (from + i) % 10);
+        }
+        return bytes;
+    }
+    
+    private static final class Response {
+        int status;
+        final Map<String, String> headers = new HashMap<>();
+        String body;
+        int chunks;
+    }
+    
+    // Reads one response with a Content-Length or chunked body; header names are lower-cased
+    private static Response readResponse(InputStream in) throws IOException {
+        Response response = new Response();
+        String statusLine = readLine(in);
+        response.status = Integer.parseInt(statusLine.split(" ")[1]);
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+        
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equals(response.headers.get("transfer-encoding"))) {
+            int size;
+            while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+                body.write(in.readNBytes(size));
+                assertEquals("", readLine(in));
+                response.chunks++;
+            }
+            assertEquals("", readLine(in));
+        } else {
+            body.write(in.readNBytes(Integer.parseInt(response.headers.getOrDefault("content-length", "0"))));
+        }
+        response.body = body.toString(StandardCharsets.UTF_8);
+        return response;
+    }
+    
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Connection closed mid-response after \"" + line + "\"");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,149 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.Naming;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A primary and a backup as separate AuctionServer processes, with the primary
+ * killed and restarted empty on the same ports
+ */
+class ReplicationFailoverTest {
+    
+    @TempDir
+    Path dataDir;
+    
+    private final List<Process> processes = new ArrayList<>();
+    
+    @AfterEach
+    void stopServers() throws InterruptedException {
+        for (Process process : processes) {
+            process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+    
+    @Test
+    void backupKeepsAckedBidsWhenThePrimaryRestartsEmpty() throws Exception {
+        int primaryPort = freePort();
+        int backupPort = freePort();
+        int replicationPort = freePort();
+        String[] primaryArgs = {"-Dauction.replication.port=" + replicationPort, "-Dauction.replication.acks=quorum"};
+        Process primaryProcess = startServer("primary", primaryPort, primaryArgs);
+        startServer("backup", backupPort, "-Dauction.replication.primary=localhost:" + replicationPort);
+        AuctionService primary = lookup(primaryPort, "primary");
+        AuctionService backup = lookup(backupPort, "backup");
+        awaitTrue(() -> status(backup).contains("following") && !status(backup).contains("stale unknown"),
+                  "backup to catch up", "backup");
+        
+        // Quorum writes, so each one has been applied on the backup when it returns
+        long auctionId = primary.createAuction("Lamp", "Brass", "alice", 10, 1, 60);
+        primary.placeBid(auctionId, "bob", 12);
+        primary.placeBid(auctionId, "charlie", 15);
+        
+        primaryProcess.destroyForcibly().waitFor();
+        startServer("primary", primaryPort, primaryArgs);
+        lookup(primaryPort, "primary");
+        awaitTrue(() -> status(backup).contains("DIVERGED"), "backup to refuse the restarted primary", "backup");
+        
+        List<Bid> bids = backup.getBidsForAuction(auctionId);
+        assertEquals(2, bids.size());
+        assertEquals(15.0, backup.getAuction(auctionId).getCurrentHighestBid());
+        assertTrue(backup.getMetrics().contains("auction_service_replication_diverged 1"));
+        RuntimeException rejected = assertThrows(RuntimeException.class, () -> backup.placeBid(auctionId, "bob", 20));
+        assertTrue(rejected.getMessage().contains("diverged"), rejected.getMessage());
+        
+        // An operator promotes the backup, which then takes writes on top of the bids it kept
+        assertTrue(backup.promoteToPrimary());
+        backup.placeBid(auctionId, "bob", 20);
+        assertEquals(3, backup.getBidsForAuction(auctionId).size());
+    }
+    
+    @Test
+    void secondServerOnTheSameDataDirectoriesFailsAtStartup() throws Exception {
+        int port = freePort();
+        startServer("node", port);
+        lookup(port, "node");
+        
+        // Started under the same name, so with the same directories but its own registry port
+        Process second = startServer("node", freePort());
+        assertTrue(second.waitFor(30, TimeUnit.SECONDS), "Second server kept running");
+        assertEquals(1, second.exitValue());
+        assertTrue(log("node").contains("in use by another process"), log("node"));
+    }
+    
+    // Each server keeps its data under dataDir/<name>, so a restart under the same name reuses it
+    private Process startServer(String name, int rmiPort, String... properties) throws IOException {
+        Path home = dataDir.resolve(name);
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dauction.rmi.port=" + rmiPort);
+        command.add("-Dauction.archive.dir=" + home.resolve("archive"));
+        command.add("-Dauction.settlement.dir=" + home.resolve("settlement"));
+        command.add("-Dauction.log.level=WARN");
+        command.addAll(List.of(properties));
+        command.add(AuctionServer.class.getName());
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(dataDir.resolve(name + ".log").toFile()))
+            .start();
+        processes.add(process);
+        return process;
+    }
+    
+    private AuctionService lookup(int rmiPort, String name) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            try {
+                return (AuctionService) Naming.lookup("rmi://localhost:" + rmiPort + "/" + AuctionServer.SERVICE_NAME);
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("Timed out waiting for " + name + " to start:\n" + log(name));
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+    
+    private static String status(AuctionService service) {
+        try {
+            return service.getServerStatus();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+    
+    private void awaitTrue(BooleanSupplier condition, String what, String name) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what + ":\n" + log(name));
+            }
+            Thread.sleep(50);
+        }
+    }
+    
+    private String log(String name) throws IOException {
+        Path file = dataDir.resolve(name + ".log");
+        return Files.exists(file) ? Files.readString(file) : "";
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
\ No newline at end of file
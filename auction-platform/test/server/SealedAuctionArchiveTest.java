@@ -0,0 +1,99 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A cleared sealed-bid auction moved to the archive, read back from the same
+ * service and from one started on the same directories
+ */
+class SealedAuctionArchiveTest {
+    
+    @TempDir
+    Path dataDir;
+    
+    private AuctionServiceImpl service;
+    
+    @BeforeEach
+    void startService() throws Exception {
+        service = newService();
+        service.registerUser("seller", "seller@example.com", true);
+        service.registerUser("bidder", "bidder@example.com", false);
+        service.registerUser("runnerUp", "runnerup@example.com", false);
+    }
+    
+    @AfterEach
+    void stopService() throws Exception {
+        stop(service);
+    }
+    
+    @Test
+    void clearingResultsAreArchivedWithTheAuction() throws Exception {
+        long auctionId = service.createSealedBidAuction("Clock", "Walnut", "seller", 10, 1,
+                                                         PricingRule.SECOND_PRICE, 0, 60);
+        service.placeBid(auctionId, "bidder", 15);
+        service.placeBid(auctionId, "runnerUp", 12);
+        service.closeAuction(auctionId);
+        
+        service.archiveClosedAuctions();
+        assertTrue(service.getServerStatus().contains("Archived Auctions: 1"), service.getServerStatus());
+        assertClearedAtSecondPrice(service, auctionId);
+        
+        // Read from disk rather than the archive's cache
+        stop(service);
+        service = newService();
+        assertClearedAtSecondPrice(service, auctionId);
+        assertEquals("bidder", service.getBidsForAuction(auctionId).get(0).getBidderName());
+        assertThrows(RuntimeException.class, () -> service.getPriceHistory(auctionId, 0));
+    }
+    
+    @Test
+    void englishAuctionIsStillNotSealedOnceArchived() throws Exception {
+        long auctionId = service.createAuction("Lamp", "Brass", "seller", 10, 1, 60);
+        service.placeBid(auctionId, "bidder", 12);
+        service.closeAuction(auctionId);
+        
+        service.archiveClosedAuctions();
+        
+        assertEquals(1, service.getBidsForAuction(auctionId).size());
+        assertThrows(RuntimeException.class, () -> service.getClearingResults(auctionId));
+    }
+    
+    private static void assertClearedAtSecondPrice(AuctionServiceImpl service, long auctionId) throws Exception {
+        List<ClearingResult> results = service.getClearingResults(auctionId);
+        assertEquals(1, results.size());
+        ClearingResult result = results.get(0);
+        assertEquals(PricingRule.SECOND_PRICE, result.getPricingRule());
+        assertEquals(2, result.getBidCount());
+        assertEquals(12.0, result.getClearingPrice());
+        assertEquals(1, result.getWinningBids().size());
+        assertEquals("bidder", result.getWinningBids().get(0).getBidderName());
+        assertEquals(15.0, result.getWinningBids().get(0).getAmount());
+    }
+    
+    // Closed auctions are archived as soon as archiveClosedAuctions runs
+    private AuctionServiceImpl newService() throws Exception {
+        System.setProperty("auction.archive.dir", dataDir.resolve("archive").toString());
+        System.setProperty("auction.settlement.dir", dataDir.resolve("settlement").toString());
+        System.setProperty("auction.log.level", "WARN");
+        System.setProperty("auction.archive.graceMinutes", "0");
+        try {
+            return new AuctionServiceImpl();
+        } finally {
+            System.clearProperty("auction.archive.graceMinutes");
+        }
+    }
+    
+    private static void stop(AuctionServiceImpl service) throws Exception {
+        service.shutdown();
+        UnicastRemoteObject.unexportObject(service, true);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SettlementPipeline's journal directory is owned by one pipeline at a time
+ */
+class SettlementPipelineTest {
+    
+    @TempDir
+    Path directory;
+    
+    private final MetricsRegistry metrics = new MetricsRegistry("test");
+    private final EventLog eventLog = new EventLog(EventLog.Level.WARN, 100, new StringWriter(), false, metrics);
+    
+    private SettlementPipeline open(SettlementPipeline.Settler settler) throws IOException {
+        return new SettlementPipeline(directory, 1, 16, 3, 10, false, settler, eventLog, metrics);
+    }
+    
+    @Test
+    void secondPipelineOnTheSameDirectoryFailsWithoutTouchingTheJournal() throws Exception {
+        CountDownLatch settled = new CountDownLatch(1);
+        SettlementPipeline first = open(settlement -> settled.countDown());
+        
+        assertThrows(IOException.class, () -> open(settlement -> { }));
+        
+        // The first pipeline still journals and settles
+        first.submit(new Settlement(1, 1_000, "seller", "bidder", 1200, 1));
+        assertTrue(settled.await(5, TimeUnit.SECONDS));
+        first.close();
+    }
+    
+    @Test
+    void directoryCanBeReopenedAfterClose() throws Exception {
+        open(settlement -> { }).close();
+        
+        SettlementPipeline reopened = open(settlement -> { });
+        reopened.close();
+    }
+}
\ No newline at end of file
@@ -178,14 +178,14 @@ class AuctionApp {
                 return;
             }
 
-            // Load bid history
-            const bidsResponse = await fetch(`/api/bids?auctionId=${auctionId}`);
-            let bids = [];
-            if (bidsResponse.ok) {
-                bids = await bidsResponse.json();
+            // Load price history; its size does not grow with the number of bids
+            const historyResponse = await fetch(`/api/auctions/${auctionId}/history`);
+            let history = { buckets: [] };
+            if (historyResponse.ok) {
+                history = await historyResponse.json();
             }
 
-            this.displayBidModal(auction, bids);
+            this.displayBidModal(auction, history);
             
         } catch (error) {
             console.error('Error opening bid modal:', error);
@@ -193,7 +193,7 @@ class AuctionApp {
         }
     }
 
-    displayBidModal(auction, bids) {
+    displayBidModal(auction, history) {
         const minimumBid = auction.currentHighestBid + auction.bidIncrement;
         
         // Display auction details
@@ -211,35 +211,58 @@ class AuctionApp {
         document.getElementById('bidAmount').min = minimumBid;
         document.getElementById('bidAmount').value = minimumBid.toFixed(2);
 
-        // Display bid history
-        this.displayBidHistory(bids);
+        // Display price history
+        this.displayPriceHistory(history);
 
         // Show modal
         document.getElementById('bid-modal').style.display = 'block';
     }
 
-    displayBidHistory(bids) {
+    displayPriceHistory(history) {
         const container = document.getElementById('bids-list');
-        
-        if (bids.length === 0) {
+        const buckets = history.buckets || [];
+
+        if (buckets.length === 0) {
             container.innerHTML = '<p class="no-data">No bids yet.</p>';
             return;
         }
 
-        // Sort bids by amount (highest first)
-        bids.sort((a, b) => b.amount - a.amount);
-
-        const bidItems = bids.map(bid => `
+        // One candle per time bucket: a wick from low to high and a body from open to close
+        const width = 460, height = 160, pad = 8;
+        const low = Math.min(...buckets.map(b => b.low));
+        const high = Math.max(...buckets.map(b => b.high));
+        const range = high - low || 1;
+        const step = (width - 2 * pad) / buckets.length;
+        const y = price => pad + (high - price) / range * (height - 2 * pad);
+
+        const candles = buckets.map((b, i) => {
+            const x = pad + i * step + step / 2;
+            const top = y(Math.max(b.open, b.close));
+            const bodyHeight = Math.max(y(Math.min(b.open, b.close)) - top, 1);
+            return `
+                <line class="candle-wick" x1="${x}" y1="${y(b.high)}" x2="${x}" y2="${y(b.low)}"></line>
+                <rect class="candle-body" x="${x - step * 0.3}" y="${top}" width="${step * 0.6}" height="${bodyHeight}">
+                    <title>${this.formatTime(b.start)}: ${b.bids} bid(s), $${b.open.toFixed(2)} to $${b.close.toFixed(2)}</title>
+                </rect>
+            `;
+        }).join('');
+
+        const bidCount = buckets.reduce((sum, b) => sum + b.bids, 0);
+        const first = buckets[0];
+        const last = buckets[buckets.length - 1];
+        const minutes = history.resolutionSeconds / 60;
+        const barLabel = minutes < 60 ? `${minutes} min` : minutes < 1440 ? `${minutes / 60} h` : `${minutes / 1440} day`;
+
+        container.innerHTML = `
+            <svg class="price-chart" viewBox="0 0 ${width} ${height}" preserveAspectRatio="none">${candles}</svg>
             <div class="bid-item">
                 <div class="bid-info-left">
-                    <div class="bid-user">${this.escapeHtml(bid.bidderName)}</div>
-                    <div class="bid-time">${this.formatTime(bid.timestamp)}</div>
+                    <div class="bid-user">${bidCount} bid(s)${history.truncated ? ' in the period shown' : ''}, ${barLabel} per bar</div>
+                    <div class="bid-time">${this.formatTime(first.start)} to ${this.formatTime(last.start)}</div>
                 </div>
-                <div class="bid-amount-display">$${bid.amount.toFixed(2)}</div>
+                <div class="bid-amount-display">$${first.open.toFixed(2)} to $${last.close.toFixed(2)}</div>
             </div>
-        `).join('');
-
-        container.innerHTML = bidItems;
+        `;
     }
 
     closeBidModal() {